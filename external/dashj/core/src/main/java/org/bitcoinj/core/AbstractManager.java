@@ -326,7 +326,12 @@ public abstract class AbstractManager extends Message {
         fileManagerLock.lock();
         try {
             FlatDB<AbstractManager> flatDB = new FlatDB<>(context, temp.getAbsolutePath(), true, magicMessage, getFormatVersion());
-            flatDB.dump(AbstractManager.this);
+            // never replace the previous file with an incomplete one
+            if (!flatDB.dump(AbstractManager.this)) {
+                if (!temp.delete())
+                    log.warn("Failed to delete {}", temp);
+                throw new IOException("Failed to write " + temp);
+            }
 
             if (Utils.isWindows()) {
                 // Work around an issue on Windows whereby you can't rename over existing files.
@@ -61,6 +61,7 @@ public class BitcoinSerializer extends MessageSerializer {
 
     private final NetworkParameters params;
     private final boolean parseRetain;
+    private final int parallelParsingThreshold;
 
     private static final Map<Class<? extends Message>, String> names = new HashMap<>();
 
@@ -123,15 +124,31 @@ public class BitcoinSerializer extends MessageSerializer {
      * @param parseRetain      retain the backing byte array of a message for fast reserialization.
      */
     public BitcoinSerializer(NetworkParameters params, boolean parseRetain) {
-        this.params = params;
-        this.parseRetain = parseRetain;
+        this(params, parseRetain, NetworkParameters.ProtocolVersion.CURRENT.getBitcoinProtocolVersion());
     }
 
     public BitcoinSerializer(NetworkParameters params, boolean parseRetain, int protocolVersion) {
-        this(params, parseRetain);
+        this(params, parseRetain, protocolVersion, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a BitcoinSerializer that parses blocks with at least the given number of transactions in parallel,
+     * see {@link Block#DEFAULT_PARALLEL_PARSING_THRESHOLD}. Pass {@link Integer#MAX_VALUE} to always parse on the
+     * calling thread.
+     */
+    public BitcoinSerializer(NetworkParameters params, boolean parseRetain, int protocolVersion,
+                             int parallelParsingThreshold) {
+        this.params = params;
+        this.parseRetain = parseRetain;
+        this.parallelParsingThreshold = Math.max(1, parallelParsingThreshold);
         setProtocolVersion(protocolVersion);
     }
 
+    /** Returns a copy of this serializer that uses the given parallel parsing threshold. */
+    public BitcoinSerializer withParallelParsingThreshold(int parallelParsingThreshold) {
+        return new BitcoinSerializer(params, parseRetain, getProtocolVersion(), parallelParsingThreshold);
+    }
+
     /**
      * Writes message to to the output stream.
      */
@@ -432,6 +449,11 @@ public class BitcoinSerializer extends MessageSerializer {
         return parseRetain;
     }
 
+    @Override
+    public int getParallelParsingThreshold() {
+        return parallelParsingThreshold;
+    }
+
 
     public static class BitcoinPacketHeader {
         /** The largest number of bytes that a header can represent */
@@ -29,6 +29,8 @@ import javax.annotation.*;
 import java.io.*;
 import java.math.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static com.google.common.base.Preconditions.checkState;
 import static org.bitcoinj.core.Coin.*;
@@ -81,6 +83,16 @@ public class Block extends Message {
     /** A value for difficultyTarget (nBits) that allows half of all possible hash solutions. Used in unit testing. */
     public static final long EASIEST_DIFFICULTY_TARGET = 0x207fFFFFL;
 
+    /**
+     * A reasonable parallel parsing threshold for a {@link BitcoinSerializer}: smaller blocks are parsed faster on the
+     * calling thread than they can be handed out to the pool.
+     */
+    public static final int DEFAULT_PARALLEL_PARSING_THRESHOLD = 64;
+    /** How many transactions a single parsing task handles before it is split further. */
+    private static final int PARALLEL_PARSING_BATCH_SIZE = 16;
+    // Smallest possible transaction: version, two empty varints and lock_time
+    private static final int MIN_TRANSACTION_SIZE = 10;
+
     /** Value to use if the block height is unknown */
     public static final int BLOCK_HEIGHT_UNKNOWN = -1;
     /** Height of the first block */
@@ -292,6 +304,12 @@ public class Block extends Message {
 
         int numTransactions = (int) readVarInt();
         optimalEncodingMessageSize += VarInt.sizeOf(numTransactions);
+        if (numTransactions >= serializer.getParallelParsingThreshold()
+                && numTransactions <= (payload.length - cursor) / MIN_TRANSACTION_SIZE) {
+            parseTransactionsInParallel(numTransactions);
+            transactionBytesValid = serializer.isParseRetainMode();
+            return;
+        }
         transactions = new ArrayList<>(Math.min(numTransactions, Utils.MAX_INITIAL_ARRAY_LENGTH));
         for (int i = 0; i < numTransactions; i++) {
             Transaction tx = new Transaction(params, payload, cursor, this, serializer, UNKNOWN_LENGTH, null);
@@ -304,6 +322,72 @@ public class Block extends Message {
         transactionBytesValid = serializer.isParseRetainMode();
     }
 
+    /**
+     * Finds the transaction boundaries with a cheap sequential scan, then parses the transactions and hashes their
+     * ids from the raw bytes on the common {@link ForkJoinPool}. The merkle root check and every later
+     * {@link Transaction#getTxId()} call use these cached ids.
+     */
+    private void parseTransactionsInParallel(int numTransactions) throws ProtocolException {
+        final int[] offsets = new int[numTransactions + 1];
+        offsets[0] = cursor;
+        try {
+            for (int i = 0; i < numTransactions; i++) {
+                offsets[i + 1] = offsets[i] + Transaction.calcLength(payload, offsets[i]);
+                if (offsets[i + 1] > payload.length || offsets[i + 1] <= offsets[i])
+                    throw new ProtocolException("Transaction " + i + " extends beyond the end of the block");
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new ProtocolException(e);
+        }
+
+        Transaction[] parsed = new Transaction[numTransactions];
+        ForkJoinPool.commonPool().invoke(new ParseTransactionsTask(offsets, parsed, 0, numTransactions));
+
+        transactions = new ArrayList<>(Arrays.asList(parsed));
+        for (Transaction tx : parsed) {
+            // Label the transaction as coming from the P2P network, so code that cares where we first saw it knows.
+            // This touches the confidence table of our Context, so it is not done on the pool threads.
+            tx.getConfidence().setSource(TransactionConfidence.Source.NETWORK);
+            optimalEncodingMessageSize += tx.getOptimalEncodingMessageSize();
+        }
+        cursor = offsets[numTransactions];
+    }
+
+    /** Parses and hashes the transactions in [start, end), splitting the range until it is small enough. */
+    private class ParseTransactionsTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] offsets;
+        private final Transaction[] parsed;
+        private final int start;
+        private final int end;
+
+        ParseTransactionsTask(int[] offsets, Transaction[] parsed, int start, int end) {
+            this.offsets = offsets;
+            this.parsed = parsed;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > PARALLEL_PARSING_BATCH_SIZE) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new ParseTransactionsTask(offsets, parsed, start, middle),
+                        new ParseTransactionsTask(offsets, parsed, middle, end));
+                return;
+            }
+            for (int i = start; i < end; i++) {
+                int txLength = offsets[i + 1] - offsets[i];
+                byte[] txId = Sha256Hash.hashTwice(payload, offsets[i], txLength);
+                Transaction tx = new Transaction(params, payload, offsets[i], Block.this, serializer, txLength, txId);
+                if (tx.getMessageSize() != txLength)
+                    throw new ProtocolException("Transaction " + i + " does not match its scanned length");
+                parsed[i] = tx;
+            }
+        }
+    }
+
     private static final long START_MASTERNODE_PAYMENTS_1 = 1401033600L; //Sun, 25 May 2014 16:00:00 GMT
     private static final long START_MASTERNODE_PAYMENTS_STOP_1 = 1401134533L; // Mon, 26 May 2014 20:02:13 GMT
 
@@ -45,7 +45,11 @@ import static java.lang.Math.*;
  * a useful privacy feature - if you have spare bandwidth the false positive rate can be increased so the remote peer
  * gets a noisy picture of what transactions are relevant to your wallet.</p>
  * 
- * <p>Instances of this class are not safe for use by multiple threads.</p>
+ * <p>Membership queries are lock-free: once the bit array has been read, it is treated as an immutable snapshot
+ * that is replaced (copy-on-write) whenever the filter is updated, so {@link #contains(byte[])} and
+ * {@link #containsAny(List)} may be called from any thread while another thread inserts. Until then, as while
+ * a wallet builds a new filter, inserts update the array in place. Updates are serialized on the filter's
+ * monitor.</p>
  */
 public class BloomFilter extends Message {
     /** The BLOOM_UPDATE_* constants control when the bloom filter is auto-updated by the peer using
@@ -57,7 +61,10 @@ public class BloomFilter extends Message {
         UPDATE_P2PUBKEY_ONLY //2
     }
     
-    private byte[] data;
+    // Never mutated once published; writers copy, modify and swap in a new array
+    private volatile byte[] data;
+    // set when data is first handed out or queried, no initializer as parse() runs before it would
+    private volatile boolean published;
     private long hashFuncs;
     private long nTweak;
     private byte nFlags;
@@ -158,6 +165,7 @@ public class BloomFilter extends Message {
      */
     @Override
     protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
+        final byte[] data = publish();
         stream.write(new VarInt(data.length).encode());
         stream.write(data);
         Utils.uint32ToByteStreamLE(hashFuncs, stream);
@@ -169,23 +177,40 @@ public class BloomFilter extends Message {
         return (x << r) | (x >>> (32 - r));
     }
 
+    private static int readInt32LE(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) |
+                ((bytes[offset + 1] & 0xFF) << 8) |
+                ((bytes[offset + 2] & 0xFF) << 16) |
+                ((bytes[offset + 3] & 0xFF) << 24);
+    }
+
     /**
      * Applies the MurmurHash3 (x86_32) algorithm to the given data.
      * See this <a href="https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp">C++ code for the original.</a>
      */
     public static int murmurHash3(byte[] data, long nTweak, int hashNum, byte[] object) {
+        return bitIndex(murmurHash3(nTweak, hashNum, object), data.length * 8);
+    }
+
+    /** Maps a raw hash onto a bit index of a filter that is {@code numBits} long. */
+    private static int bitIndex(int hash, int numBits) {
+        // Filter sizes are frequently a power of two (including the single byte of a match-all filter)
+        if ((numBits & (numBits - 1)) == 0)
+            return hash & (numBits - 1);
+        return (int)((hash & 0xFFFFFFFFL) % numBits);
+    }
+
+    /** Returns the raw 32 bit MurmurHash3 of the object, before it is reduced to a bit index. */
+    private static int murmurHash3(long nTweak, int hashNum, byte[] object) {
         int h1 = (int)(hashNum * 0xFBA4C795L + nTweak);
         final int c1 = 0xcc9e2d51;
         final int c2 = 0x1b873593;
 
         int numBlocks = (object.length / 4) * 4;
-        // body
+        // body, one little endian word at a time
         for(int i = 0; i < numBlocks; i += 4) {
-            int k1 = (object[i] & 0xFF) |
-                  ((object[i+1] & 0xFF) << 8) |
-                  ((object[i+2] & 0xFF) << 16) |
-                  ((object[i+3] & 0xFF) << 24);
-            
+            int k1 = readInt32LE(object, i);
+
             k1 *= c1;
             k1 = rotateLeft32(k1, 15);
             k1 *= c2;
@@ -220,36 +245,82 @@ public class BloomFilter extends Message {
         h1 ^= h1 >>> 13;
         h1 *= 0xc2b2ae35;
         h1 ^= h1 >>> 16;
-        
-        return (int)((h1&0xFFFFFFFFL) % (data.length * 8));
+
+        return h1;
     }
-    
+
+    private boolean contains(byte[] bits, byte[] object) {
+        final int numBits = bits.length * 8;
+        for (int i = 0; i < hashFuncs; i++) {
+            if (!Utils.checkBitLE(bits, bitIndex(murmurHash3(nTweak, i, object), numBits)))
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Returns true if the given object matches the filter either because it was inserted, or because we have a
      * false-positive.
      */
-    public synchronized boolean contains(byte[] object) {
-        for (int i = 0; i < hashFuncs; i++) {
-            if (!Utils.checkBitLE(data, murmurHash3(data, nTweak, i, object)))
-                return false;
+    public boolean contains(byte[] object) {
+        return contains(publish(), object);
+    }
+
+    /**
+     * Returns true if any of the given objects matches the filter. All objects are tested against the same snapshot
+     * of the filter, so this is cheaper than calling {@link #contains(byte[])} for each of them.
+     */
+    public boolean containsAny(List<byte[]> objects) {
+        final byte[] bits = publish();
+        for (byte[] object : objects) {
+            if (contains(bits, object))
+                return true;
         }
-        return true;
+        return false;
     }
-    
+
+    /** Returns the bit array, which must not be changed in place any more from now on. */
+    private byte[] publish() {
+        if (!published)
+            published = true;
+        return data;
+    }
+
+    /**
+     * Sets the bits of the given objects. A filter that was not read yet is changed in place, otherwise the bits are
+     * set in a copy that is then published. The copy is skipped if every object is already present.
+     */
+    private synchronized void insertAll(byte[]... objects) {
+        final byte[] current = data;
+        final int numBits = current.length * 8;
+        byte[] bits = published ? null : current;
+        for (byte[] object : objects) {
+            for (int i = 0; i < hashFuncs; i++) {
+                int index = bitIndex(murmurHash3(nTweak, i, object), numBits);
+                if (bits == null) {
+                    if (Utils.checkBitLE(current, index))
+                        continue;
+                    bits = current.clone();
+                }
+                Utils.setBitLE(bits, index);
+            }
+        }
+        if (bits != null)
+            data = bits;
+    }
+
     /** Insert the given arbitrary data into the filter */
-    public synchronized void insert(byte[] object) {
-        for (int i = 0; i < hashFuncs; i++)
-            Utils.setBitLE(data, murmurHash3(data, nTweak, i, object));
+    public void insert(byte[] object) {
+        insertAll(object);
     }
 
     /** Inserts the given key and equivalent hashed form (for the address). */
-    public synchronized void insert(IKey key) {
-        insert(key.getPubKey());
-        insert(key.getPubKeyHash());
+    public void insert(IKey key) {
+        insertAll(key.getPubKey(), key.getPubKeyHash());
     }
 
     /** Inserts the given transaction outpoint. */
-    public synchronized void insert(TransactionOutPoint outpoint) {
+    public void insert(TransactionOutPoint outpoint) {
         insert(outpoint.unsafeBitcoinSerialize());
     }
 
@@ -270,11 +341,14 @@ public class BloomFilter extends Message {
      */
     public synchronized void merge(BloomFilter filter) {
         if (!this.matchesAll() && !filter.matchesAll()) {
-            checkArgument(filter.data.length == this.data.length &&
+            final byte[] other = filter.data;
+            checkArgument(other.length == this.data.length &&
                           filter.hashFuncs == this.hashFuncs &&
                           filter.nTweak == this.nTweak);
-            for (int i = 0; i < data.length; i++)
-                this.data[i] |= filter.data[i];
+            byte[] bits = published ? this.data.clone() : this.data;
+            for (int i = 0; i < bits.length; i++)
+                bits[i] |= other[i];
+            this.data = bits;
         } else {
             this.data = new byte[] {(byte) 0xff};
         }
@@ -284,7 +358,7 @@ public class BloomFilter extends Message {
      * Returns true if this filter will match anything. See {@link BloomFilter#setMatchAll()}
      * for when this can be a useful thing to do.
      */
-    public synchronized boolean matchesAll() {
+    public boolean matchesAll() {
         for (byte b : data)
             if (b != (byte) 0xff)
                 return false;
@@ -295,7 +369,7 @@ public class BloomFilter extends Message {
      * The update flag controls how application of the filter to a block modifies the filter. See the enum javadocs
      * for information on what occurs and when.
      */
-    public synchronized BloomUpdate getUpdateFlag() {
+    public BloomUpdate getUpdateFlag() {
         if (nFlags == 0)
             return BloomUpdate.UPDATE_NONE;
         else if (nFlags == 1)
@@ -337,34 +411,36 @@ public class BloomFilter extends Message {
             return true;
         boolean found = false;
         BloomUpdate flag = getUpdateFlag();
+        List<byte[]> candidates = new ArrayList<>();
         for (TransactionOutput output : tx.getOutputs()) {
             Script script = output.getScriptPubKey();
-            for (ScriptChunk chunk : script.getChunks()) {
-                if (!chunk.isPushData())
-                    continue;
-                if (contains(chunk.data)) {
-                    boolean isSendingToPubKeys = ScriptPattern.isP2PK(script) || ScriptPattern.isSentToMultisig(script);
-                    if (flag == BloomUpdate.UPDATE_ALL || (flag == BloomUpdate.UPDATE_P2PUBKEY_ONLY && isSendingToPubKeys))
-                        insert(output.getOutPointFor());
-                    found = true;
-                }
+            candidates.clear();
+            addPushData(candidates, script);
+            if (containsAny(candidates)) {
+                boolean isSendingToPubKeys = ScriptPattern.isP2PK(script) || ScriptPattern.isSentToMultisig(script);
+                if (flag == BloomUpdate.UPDATE_ALL || (flag == BloomUpdate.UPDATE_P2PUBKEY_ONLY && isSendingToPubKeys))
+                    insert(output.getOutPointFor());
+                found = true;
             }
         }
         if (found) return true;
+        candidates.clear();
         for (TransactionInput input : tx.getInputs()) {
-            if (contains(input.getOutpoint().unsafeBitcoinSerialize())) {
-                return true;
-            }
-            for (ScriptChunk chunk : input.getScriptSig().getChunks()) {
-                if (chunk.isPushData() && contains(chunk.data))
-                    return true;
-            }
+            candidates.add(input.getOutpoint().unsafeBitcoinSerialize());
+            addPushData(candidates, input.getScriptSig());
+        }
+        return containsAny(candidates);
+    }
+
+    private static void addPushData(List<byte[]> candidates, Script script) {
+        for (ScriptChunk chunk : script.getChunks()) {
+            if (chunk.isPushData() && chunk.data != null)
+                candidates.add(chunk.data);
         }
-        return false;
     }
     
     @Override
-    public synchronized boolean equals(Object o) {
+    public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         BloomFilter other = (BloomFilter) o;
@@ -372,12 +448,12 @@ public class BloomFilter extends Message {
     }
 
     @Override
-    public synchronized int hashCode() {
+    public int hashCode() {
         return Objects.hashCode(hashFuncs, nTweak, Arrays.hashCode(data));
     }
 
     public final byte[] getData() {
-        return data;
+        return publish();
     }
 
     public byte getFlags() {
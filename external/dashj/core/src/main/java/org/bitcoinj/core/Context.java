@@ -352,6 +352,26 @@ public class Context {
             }
             clh.load(chainLockHandler);
 
+            // Load InstantSend locks and recovered signatures
+            if (instantSendDB instanceof SPVInstantSendDatabase) {
+                FlatDB<SPVInstantSendDatabase> isdb;
+                if (filePrefix != null) {
+                    isdb = new FlatDB<>(Context.this, directory + File.separator + filePrefix + ".islocks", true);
+                } else {
+                    isdb = new FlatDB<>(Context.this, directory, false);
+                }
+                isdb.load((SPVInstantSendDatabase) instantSendDB);
+            }
+            if (recoveredSigsDB instanceof SPVRecoveredSignaturesDatabase) {
+                FlatDB<SPVRecoveredSignaturesDatabase> rsdb;
+                if (filePrefix != null) {
+                    rsdb = new FlatDB<>(Context.this, directory + File.separator + filePrefix + ".recsigs", true);
+                } else {
+                    rsdb = new FlatDB<>(Context.this, directory, false);
+                }
+                rsdb.load((SPVRecoveredSignaturesDatabase) recoveredSigsDB);
+            }
+
             signingManager.initializeSignatureLog(directory);
             initializedFiles = true;
             return true;
@@ -382,6 +402,10 @@ public class Context {
             instantSendManager.close(peerGroup);
             signingManager.close();
             chainLockHandler.close();
+            if (instantSendDB instanceof AbstractManager)
+                ((AbstractManager) instantSendDB).close();
+            if (recoveredSigsDB instanceof AbstractManager)
+                ((AbstractManager) recoveredSigsDB).close();
             quorumManager.close();
             if(masternodeSync.hasSyncFlag(MasternodeSync.SYNC_FLAGS.SYNC_INSTANTSENDLOCKS))
                 llmqBackgroundThread.interrupt();
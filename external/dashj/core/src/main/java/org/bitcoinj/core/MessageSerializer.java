@@ -68,6 +68,14 @@ public abstract class MessageSerializer {
      */
     public abstract boolean isParseRetainMode();
 
+    /**
+     * The minimum number of transactions for which a block is parsed in parallel, see
+     * {@link Block#DEFAULT_PARALLEL_PARSING_THRESHOLD}. By default blocks are always parsed on the calling thread.
+     */
+    public int getParallelParsingThreshold() {
+        return Integer.MAX_VALUE;
+    }
+
     /**
      * Make an address message from the payload. Extension point for alternative
      * serialization format support.
@@ -120,6 +120,7 @@ public class Peer extends PeerSocketHandler {
     private final VersionMessage versionMessage;
     // Maximum depth up to which pending transaction dependencies are downloaded, or 0 for disabled.
     private volatile int vDownloadTxDependencyDepth;
+    private volatile int vParallelParsingThreshold = Integer.MAX_VALUE;
     // How many block messages the peer has announced to us. Peers only announce blocks that attach to their best chain
     // so we can use this to calculate the height of the peers chain, by adding it to the initial height in the version
     // message. This method can go wrong if the peer re-orgs onto a shorter (but harder) chain, however, this is rare.
@@ -451,6 +452,18 @@ public class Peer extends PeerSocketHandler {
         return helper.toString();
     }
 
+    /**
+     * Increases the ban score of this peer in the {@link PeerAddressBook} of the {@link PeerGroup}, if there is one,
+     * because it sent us something invalid. The connection is closed once the peer is banned.
+     */
+    public void misbehaving(int howMuch, String reason) {
+        log.info("{}: Misbehaving by {}: {}", getAddress(), howMuch, reason);
+        PeerGroup peerGroup = context.peerGroup;
+        PeerAddressBook addressBook = peerGroup != null ? peerGroup.getAddressBook() : null;
+        if (addressBook != null && addressBook.misbehaving(getAddress(), howMuch))
+            close();
+    }
+
     @Deprecated
     public String toStringServices(long services) {
         return VersionMessage.toStringServices(services);
@@ -681,7 +694,8 @@ public class Peer extends PeerSocketHandler {
             // In this case, it's a protocol violation.
             throw new ProtocolException("Peer reports invalid best height: " + peerVersionMessage.bestHeight);
         // set the serializer based on the protocol version
-        setMessageSerializer(params.getSerializer(false, vPeerVersionMessage.clientVersion));
+        setMessageSerializer(params.getSerializer(false, vPeerVersionMessage.clientVersion)
+                .withParallelParsingThreshold(vParallelParsingThreshold));
 
         // Now it's our turn ...
         // Send an ACK message stating we accept the peers protocol version.
@@ -822,6 +836,7 @@ public class Peer extends PeerSocketHandler {
                 return;
             } catch (VerificationException e) {
                 log.warn("Block header verification failed", e);
+                misbehaving(20, "invalid block header");
             } catch (PrunedException x) {
                 throw new RuntimeException(x);
             }
@@ -889,6 +904,7 @@ public class Peer extends PeerSocketHandler {
             }
         } catch (VerificationException e) {
             log.warn("Block header verification failed", e);
+            misbehaving(20, "invalid block header");
         } catch (PrunedException e) {
             // Unreachable when in SPV mode.
             throw new RuntimeException(e);
@@ -1205,6 +1221,7 @@ public class Peer extends PeerSocketHandler {
         } catch (VerificationException e) {
             // We don't want verification failures to kill the thread.
             log.warn("{}: Block verification failed", getAddress(), e);
+            misbehaving(20, "invalid block");
         } catch (PrunedException e) {
             // Unreachable when in SPV mode.
             throw new RuntimeException(e);
@@ -1304,6 +1321,7 @@ public class Peer extends PeerSocketHandler {
         } catch (VerificationException e) {
             // We don't want verification failures to kill the thread.
             log.warn("{}: FilteredBlock verification failed", getAddress(), e);
+            misbehaving(20, "invalid filtered block");
         } catch (PrunedException e) {
             // We pruned away some of the data we need to properly handle this block. We need to request the needed
             // data from the remote peer and fix things. Or just give up.
@@ -2287,6 +2305,14 @@ public class Peer extends PeerSocketHandler {
         vDownloadTxDependencyDepth = depth;
     }
 
+    /**
+     * Sets the minimum number of transactions for which blocks from this peer are parsed in parallel, see
+     * {@link Block#DEFAULT_PARALLEL_PARSING_THRESHOLD}. Only takes effect if set before the version handshake.
+     */
+    public void setParallelParsingThreshold(int threshold) {
+        vParallelParsingThreshold = threshold;
+    }
+
     //
     //Dash Specific Code
     //
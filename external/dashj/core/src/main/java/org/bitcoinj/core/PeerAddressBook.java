@@ -0,0 +1,481 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.core;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import org.bitcoinj.utils.Threading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * <p>A persistent record of the peers we have talked to: when we last got a connection to them, how often connecting
+ * failed since, their services, their ping time and a ban score. {@link PeerGroup} loads it on start and connects to
+ * the best known peers right away, in parallel with peer discovery. It saves it shortly after peers connect or
+ * disconnect, every few minutes and when stopped. See {@link PeerGroup#setAddressBook(PeerAddressBook)}.</p>
+ *
+ * <p>Peers are identified by IP and port only, so the book works with the addresses handed out by any
+ * {@link org.bitcoinj.net.discovery.PeerDiscovery}. The file is replaced atomically on save, so a crash leaves either
+ * the previous or the new version behind. A corrupt or unknown file is ignored.</p>
+ */
+public class PeerAddressBook {
+    private static final Logger log = LoggerFactory.getLogger(PeerAddressBook.class);
+
+    private static final int FILE_MAGIC = 0x70656572; // "peer"
+    private static final int FILE_VERSION = 2;
+
+    /** The book never holds more than this many peers, the worst ones are dropped on save. */
+    public static final int MAX_ENTRIES = 1000;
+    /** Peers reaching this ban score are banned for {@link #BAN_DURATION_SECONDS}. */
+    public static final int BAN_THRESHOLD = 100;
+    /** How long a peer stays banned, the default ban time of Dash Core. */
+    public static final long BAN_DURATION_SECONDS = 24 * 60 * 60;
+    /** Peers that failed this many times in a row are no longer considered for a warm start. */
+    public static final int MAX_FAILURES = 3;
+    // Peers that we could not connect to for this long are forgotten.
+    private static final long MAX_AGE_SECONDS = 30 * 24 * 60 * 60;
+    // New peers are only added after pruning once the book holds this many, so that it stays bounded between saves.
+    private static final int PRUNE_THRESHOLD = MAX_ENTRIES + MAX_ENTRIES / 10;
+
+    private final NetworkParameters params;
+    private final File file;
+    private final ReentrantLock lock = Threading.lock("peeraddressbook");
+    private final Map<InetSocketAddress, Entry> entries = new HashMap<>();
+
+    /** What we know about one peer. All times are in seconds since the epoch. */
+    public static class Entry {
+        private final InetSocketAddress address;
+        private long services;
+        private long lastSuccessTime;
+        private long lastAttemptTime;
+        private long pingTime = Long.MAX_VALUE;
+        private int failures;
+        private int banScore;
+        private long bannedUntil;
+
+        private Entry(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        private Entry(Entry other) {
+            this.address = other.address;
+            this.services = other.services;
+            this.lastSuccessTime = other.lastSuccessTime;
+            this.lastAttemptTime = other.lastAttemptTime;
+            this.pingTime = other.pingTime;
+            this.failures = other.failures;
+            this.banScore = other.banScore;
+            this.bannedUntil = other.bannedUntil;
+        }
+
+        public InetSocketAddress getAddress() {
+            return address;
+        }
+
+        public long getServices() {
+            return services;
+        }
+
+        public long getLastSuccessTime() {
+            return lastSuccessTime;
+        }
+
+        public long getLastAttemptTime() {
+            return lastAttemptTime;
+        }
+
+        /** Returns the last known ping time in milliseconds, or {@link Long#MAX_VALUE} if unknown. */
+        public long getPingTime() {
+            return pingTime;
+        }
+
+        /** Returns how often connecting to this peer failed since the last success. */
+        public int getFailures() {
+            return failures;
+        }
+
+        public int getBanScore() {
+            return banScore;
+        }
+
+        /** Returns the time the ban of this peer expires, or 0 if it was never banned. */
+        public long getBannedUntil() {
+            return bannedUntil;
+        }
+
+        public boolean isBanned() {
+            return bannedUntil > Utils.currentTimeSeconds();
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this).omitNullValues()
+                    .add("address", address)
+                    .add("lastSuccess", lastSuccessTime)
+                    .add("ping", pingTime != Long.MAX_VALUE ? pingTime : null)
+                    .add("failures", failures)
+                    .add("banScore", banScore)
+                    .add("bannedUntil", bannedUntil != 0 ? bannedUntil : null)
+                    .toString();
+        }
+    }
+
+    // Best first: fewest failures in a row, then lowest ping, then most recently seen.
+    private static final Comparator<Entry> BEST_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            int result = Ints.compare(a.failures, b.failures);
+            if (result != 0)
+                return result;
+            result = Longs.compare(a.pingTime, b.pingTime);
+            if (result != 0)
+                return result;
+            return Longs.compare(b.lastSuccessTime, a.lastSuccessTime);
+        }
+    };
+
+    private static final Comparator<Entry> LATEST_BAN_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return Longs.compare(b.bannedUntil, a.bannedUntil);
+        }
+    };
+
+    public PeerAddressBook(NetworkParameters params, File file) {
+        this.params = checkNotNull(params);
+        this.file = checkNotNull(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Replaces the contents of this book with what was saved to its file. A missing file results in an empty book.
+     *
+     * @throws IOException if the file can't be read or isn't a valid address book; the book is left empty then
+     */
+    public void load() throws IOException {
+        lock.lock();
+        try {
+            entries.clear();
+            DataInputStream in;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            } catch (FileNotFoundException x) {
+                return;
+            }
+            try {
+                if (in.readInt() != FILE_MAGIC)
+                    throw new IOException("Not a peer address book: " + file);
+                int version = in.readInt();
+                if (version != 1 && version != FILE_VERSION)
+                    throw new IOException("Unsupported peer address book version " + version + ": " + file);
+                int count = in.readInt();
+                if (count < 0 || count > MAX_ENTRIES)
+                    throw new IOException("Invalid number of peers " + count + ": " + file);
+                for (int i = 0; i < count; i++) {
+                    byte[] addr = new byte[in.readUnsignedByte()];
+                    in.readFully(addr);
+                    Entry entry = new Entry(new InetSocketAddress(InetAddress.getByAddress(addr), in.readUnsignedShort()));
+                    entry.services = in.readLong();
+                    entry.lastSuccessTime = in.readLong();
+                    entry.lastAttemptTime = in.readLong();
+                    entry.pingTime = in.readLong();
+                    entry.failures = in.readInt();
+                    entry.banScore = in.readInt();
+                    if (version >= 2)
+                        entry.bannedUntil = in.readLong();
+                    entries.put(entry.address, entry);
+                }
+            } catch (EOFException x) {
+                entries.clear();
+                throw new IOException("Truncated peer address book: " + file, x);
+            } catch (IOException x) {
+                entries.clear();
+                throw x;
+            } finally {
+                in.close();
+            }
+            log.info("Loaded {} peers from {}", entries.size(), file);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes this book to its file, dropping peers that were not reachable for a long time and, beyond
+     * {@link #MAX_ENTRIES}, the worst ones. The data is written to a temporary file first, which then replaces the
+     * previous version.
+     */
+    public void save() throws IOException {
+        List<Entry> toSave;
+        lock.lock();
+        try {
+            prune(Utils.currentTimeSeconds());
+            toSave = new ArrayList<>(entries.size());
+            for (Entry entry : entries.values())
+                toSave.add(new Entry(entry));
+        } finally {
+            lock.unlock();
+        }
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile("peers", null, directory);
+        try {
+            write(temp, toSave);
+            if (Utils.isWindows()) {
+                // Work around an issue on Windows whereby you can't rename over existing files.
+                File canonical = file.getCanonicalFile();
+                if (canonical.exists() && !canonical.delete())
+                    throw new IOException("Failed to delete " + canonical + " for replacement");
+                if (!temp.renameTo(canonical))
+                    throw new IOException("Failed to rename " + temp + " to " + canonical);
+            } else if (!temp.renameTo(file)) {
+                throw new IOException("Failed to rename " + temp + " to " + file);
+            }
+        } finally {
+            // only still there if writing or renaming failed
+            if (temp.exists() && !temp.delete())
+                log.warn("Could not delete {}", temp);
+        }
+    }
+
+    private static void write(File temp, List<Entry> toSave) throws IOException {
+        FileOutputStream stream = new FileOutputStream(temp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeInt(toSave.size());
+            for (Entry entry : toSave) {
+                byte[] addr = entry.address.getAddress().getAddress();
+                out.writeByte(addr.length);
+                out.write(addr);
+                out.writeShort(entry.address.getPort());
+                out.writeLong(entry.services);
+                out.writeLong(entry.lastSuccessTime);
+                out.writeLong(entry.lastAttemptTime);
+                out.writeLong(entry.pingTime);
+                out.writeInt(entry.failures);
+                out.writeInt(entry.banScore);
+                out.writeLong(entry.bannedUntil);
+            }
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+    }
+
+    private void prune(long now) {
+        List<Entry> sorted = new ArrayList<>(entries.size());
+        List<Entry> banned = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            // keep bans until they expire, so that the peer isn't picked up again from discovery
+            if (entry.bannedUntil > now) {
+                banned.add(entry);
+                continue;
+            }
+            if (now - Math.max(entry.lastSuccessTime, entry.lastAttemptTime) > MAX_AGE_SECONDS)
+                continue;
+            if (entry.lastSuccessTime == 0 && entry.failures >= MAX_FAILURES)
+                continue;
+            sorted.add(entry);
+        }
+        int room = Math.max(MAX_ENTRIES - banned.size(), 0);
+        if (sorted.size() > room) {
+            Collections.sort(sorted, BEST_FIRST);
+            sorted = sorted.subList(0, room);
+        }
+        if (banned.size() > MAX_ENTRIES) {
+            Collections.sort(banned, LATEST_BAN_FIRST);
+            banned = banned.subList(0, MAX_ENTRIES);
+        }
+        entries.clear();
+        for (Entry entry : sorted)
+            entries.put(entry.address, entry);
+        for (Entry entry : banned)
+            entries.put(entry.address, entry);
+    }
+
+    // Returns the entry for the peer, or null if it isn't an IP address (e.g. an onion address) we can persist.
+    @Nullable
+    private Entry getOrCreate(PeerAddress peerAddress) {
+        checkNotNull(peerAddress);
+        if (peerAddress.getAddr() == null)
+            return null;
+        InetSocketAddress address = new InetSocketAddress(peerAddress.getAddr(), peerAddress.getPort());
+        Entry entry = entries.get(address);
+        if (entry == null) {
+            if (entries.size() >= PRUNE_THRESHOLD)
+                prune(Utils.currentTimeSeconds());
+            entry = new Entry(address);
+            entries.put(address, entry);
+        }
+        return entry;
+    }
+
+    /** Records that we got a connection to the given peer, which announced the given services. */
+    public void recordSuccess(PeerAddress peerAddress, long services) {
+        lock.lock();
+        try {
+            Entry entry = getOrCreate(peerAddress);
+            if (entry == null)
+                return;
+            entry.lastSuccessTime = entry.lastAttemptTime = Utils.currentTimeSeconds();
+            entry.services = services;
+            entry.failures = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records that we could not connect to the given peer. */
+    public void recordFailure(PeerAddress peerAddress) {
+        lock.lock();
+        try {
+            Entry entry = getOrCreate(peerAddress);
+            if (entry == null)
+                return;
+            entry.lastAttemptTime = Utils.currentTimeSeconds();
+            entry.failures++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records the ping time of the given peer in milliseconds. Unknown ping times ({@link Long#MAX_VALUE}) are ignored. */
+    public void recordPingTime(PeerAddress peerAddress, long pingTime) {
+        if (pingTime == Long.MAX_VALUE)
+            return;
+        lock.lock();
+        try {
+            Entry entry = getOrCreate(peerAddress);
+            if (entry != null)
+                entry.pingTime = pingTime;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Increases the ban score of the given peer, e.g. because it sent us invalid data. Once it reaches
+     * {@link #BAN_THRESHOLD} the peer is banned for {@link #BAN_DURATION_SECONDS} and its ban score starts over.
+     *
+     * @return true if the peer is banned now
+     */
+    public boolean misbehaving(PeerAddress peerAddress, int howMuch) {
+        lock.lock();
+        try {
+            Entry entry = getOrCreate(peerAddress);
+            if (entry == null)
+                return false;
+            entry.banScore += howMuch;
+            if (entry.banScore >= BAN_THRESHOLD) {
+                log.info("{}: Ban score {} reached the threshold, banning for {} seconds", peerAddress,
+                        entry.banScore, BAN_DURATION_SECONDS);
+                entry.banScore = 0;
+                entry.bannedUntil = Utils.currentTimeSeconds() + BAN_DURATION_SECONDS;
+            }
+            return entry.isBanned();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns true if the given peer is banned, see {@link #misbehaving(PeerAddress, int)}. */
+    public boolean isBanned(PeerAddress peerAddress) {
+        if (peerAddress.getAddr() == null)
+            return false;
+        lock.lock();
+        try {
+            Entry entry = entries.get(new InetSocketAddress(peerAddress.getAddr(), peerAddress.getPort()));
+            return entry != null && entry.isBanned();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns a copy of what is known about the given peer, or null if nothing. */
+    @Nullable
+    public Entry get(InetSocketAddress address) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(address);
+            return entry != null ? new Entry(entry) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to the given number of peers that we connected to before, best first: those that did not fail since
+     * come before those that did, then lower ping times before higher ones. Banned peers and peers that failed
+     * {@link #MAX_FAILURES} times in a row are left out.
+     */
+    public List<PeerAddress> getBestPeers(int maxPeers) {
+        List<Entry> candidates = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Entry entry : entries.values()) {
+                if (entry.lastSuccessTime != 0 && entry.failures < MAX_FAILURES && !entry.isBanned())
+                    candidates.add(entry);
+            }
+            Collections.sort(candidates, BEST_FIRST);
+        } finally {
+            lock.unlock();
+        }
+        List<PeerAddress> result = new ArrayList<>(Math.min(maxPeers, candidates.size()));
+        for (Entry entry : candidates) {
+            if (result.size() >= maxPeers)
+                break;
+            result.add(new PeerAddress(params, entry.address));
+        }
+        return result;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -51,6 +51,7 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.*;
 
 import static com.google.common.base.Preconditions.*;
@@ -127,6 +128,15 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
 
     // The peer that has been selected for the purposes of downloading announced data.
     @GuardedBy("lock") private Peer downloadPeer;
+    // Latency and throughput of the currently active peers, used to pick and rotate the download peer.
+    private final Map<Peer, PeerMetrics> peerMetrics = new ConcurrentHashMap<>();
+    /** A download peer is only swapped for one that is expected to deliver at least this many times as much. */
+    public static final double DOWNLOAD_PEER_ROTATION_FACTOR = 2.0;
+    /** How often, in seconds, a syncing PeerGroup checks whether a faster download peer is available. */
+    public static final int DOWNLOAD_PEER_ROTATION_INTERVAL_SECONDS = 30;
+    // Candidates whose ping is within this factor (plus some slack for jitter) of the closest peer count as equally close
+    private static final double PING_TOLERANCE_FACTOR = 1.5;
+    private static final long PING_TOLERANCE_MSEC = 20;
     // Callback for events related to chain download.
     @Nullable @GuardedBy("lock") private PeerDataEventListener downloadListener;
     private final CopyOnWriteArrayList<ListenerRegistration<BlocksDownloadedEventListener>> peersBlocksDownloadedEventListeners
@@ -157,12 +167,23 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
             = new CopyOnWriteArrayList<>();
     protected final CopyOnWriteArrayList<ListenerRegistration<MasternodeListDownloadedListener>> masternodeListDownloadListeners
             = new CopyOnWriteArrayList<>();
+    // Peers we connected to in earlier sessions, used to get connected before discovery returns anything.
+    @Nullable private volatile PeerAddressBook addressBook;
+    /** How long after peers connected or disconnected the address book is saved, in seconds. */
+    public static final int ADDRESS_BOOK_SAVE_DELAY_SECONDS = 10;
+    /** How often the address book is saved while running, to keep the ping times fresh, in seconds. */
+    public static final int ADDRESS_BOOK_SAVE_INTERVAL_SECONDS = 5 * 60;
+    // Set while a save of the address book is scheduled, so that connection changes in a burst cause one save.
+    private final AtomicBoolean addressBookSaveScheduled = new AtomicBoolean();
+    @Nullable private volatile ListenableScheduledFuture<?> vAddressBookSaveTask;
+    @Nullable private volatile ListenableScheduledFuture<?> vPendingAddressBookSave;
     // Peer discovery sources, will be polled occasionally if there aren't enough inactives.
     private final CopyOnWriteArraySet<PeerDiscovery> peerDiscoverers;
     // The version message to use for new connections.
     @GuardedBy("lock") private VersionMessage versionMessage;
     // Maximum depth up to which pending transaction dependencies are downloaded, or 0 for disabled.
     @GuardedBy("lock") private int downloadTxDependencyDepth;
+    @GuardedBy("lock") private int parallelParsingThreshold = Integer.MAX_VALUE;
     // How many connections we want to have open at the current time. If we lose connections, we'll try opening more
     // until we reach this count.
     @GuardedBy("lock") private int maxConnections;
@@ -514,6 +535,19 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
         }
     }
 
+    /**
+     * Sets the minimum number of transactions for which blocks are parsed in parallel, see
+     * {@link Block#DEFAULT_PARALLEL_PARSING_THRESHOLD}. A change of value only takes effect for newly connected peers.
+     */
+    public void setParallelParsingThreshold(int threshold) {
+        lock.lock();
+        try {
+            this.parallelParsingThreshold = threshold;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private Runnable triggerConnectionsJob = new Runnable() {
         private boolean firstRun = true;
         private final static long MIN_PEER_DISCOVERY_INTERVAL = 1000L;
@@ -1064,6 +1098,9 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
             // Deduplicate
             if (backoffMap.containsKey(peerAddress))
                 return false;
+            PeerAddressBook addressBook = this.addressBook;
+            if (addressBook != null && addressBook.isBanned(peerAddress))
+                return false;
             backoffMap.put(peerAddress, new ExponentialBackoff(peerBackoffParams));
             if (priority != 0)
                 priorityMap.put(peerAddress, priority);
@@ -1229,8 +1266,12 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                     log.info("Starting ...");
                     channels.startAsync();
                     channels.awaitRunning();
+                    boolean warmStarted = warmStart();
                     triggerConnections();
+                    if (warmStarted)
+                        discoverPeersInBackground();
                     setupPinging();
+                    setupAddressBookSaving();
                     context.start();
                 } catch (Throwable e) {
                     log.error("Exception when starting up", e);  // The executor swallows exceptions :(
@@ -1239,6 +1280,109 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
         });
     }
 
+    /**
+     * Loads the address book, if one is set, and queues the best peers from earlier sessions for connecting. Returns
+     * true if there were any.
+     */
+    private boolean warmStart() {
+        PeerAddressBook addressBook = this.addressBook;
+        if (addressBook == null)
+            return false;
+        try {
+            addressBook.load();
+        } catch (IOException x) {
+            log.warn("Could not load address book, starting without it", x);
+        }
+        // Queue some more than we need, so failing peers can be replaced without waiting for discovery.
+        List<PeerAddress> best = addressBook.getBestPeers(Math.max(getMaxConnections(), 1) * 2);
+        for (PeerAddress address : best)
+            addInactive(address, 0);
+        log.info("Warm start with {} peers from the address book", best.size());
+        return !best.isEmpty();
+    }
+
+    // Runs peer discovery on a pool thread, so the peers of a warm start are connected in the meantime.
+    private void discoverPeersInBackground() {
+        if (peerDiscoverers.isEmpty())
+            return;
+        Threading.THREAD_POOL.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    discoverPeers();
+                    if (vRunning && countConnectedAndPendingPeers() < getMaxConnections())
+                        triggerConnections();
+                } catch (Throwable e) {
+                    log.error("Exception during peer discovery", e);
+                }
+            }
+        });
+    }
+
+    // Saves the address book regularly, so that it survives the process being killed without a stop.
+    private void setupAddressBookSaving() {
+        if (addressBook == null)
+            return;
+        vAddressBookSaveTask = executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (vRunning)
+                    saveAddressBook();
+            }
+        }, ADDRESS_BOOK_SAVE_INTERVAL_SECONDS, ADDRESS_BOOK_SAVE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Saves the address book soon, after a peer connected or disconnected.
+    private void scheduleAddressBookSave() {
+        if (addressBook == null || !vRunning || !addressBookSaveScheduled.compareAndSet(false, true))
+            return;
+        try {
+            vPendingAddressBookSave = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    addressBookSaveScheduled.set(false);
+                    if (vRunning)
+                        saveAddressBook();
+                }
+            }, ADDRESS_BOOK_SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException x) {
+            // Stopping, which saves the book anyway.
+        }
+    }
+
+    private static void cancel(@Nullable ListenableScheduledFuture<?> task) {
+        if (task != null)
+            task.cancel(false);
+    }
+
+    private void saveAddressBook() {
+        PeerAddressBook addressBook = this.addressBook;
+        if (addressBook == null)
+            return;
+        for (Peer peer : peers)
+            addressBook.recordPingTime(peer.getAddress(), peer.getPingTime());
+        try {
+            addressBook.save();
+        } catch (IOException x) {
+            log.warn("Could not save address book", x);
+        }
+    }
+
+    /**
+     * Sets the book in which connection successes, failures and ping times of peers are recorded. It is loaded when
+     * this group is started, and the best peers in it are connected to right away while peer discovery runs. It is
+     * saved shortly after peers connect or disconnect, every {@link #ADDRESS_BOOK_SAVE_INTERVAL_SECONDS} and when this
+     * group stops. Must be called before {@link #start()}.
+     */
+    public void setAddressBook(@Nullable PeerAddressBook addressBook) {
+        this.addressBook = addressBook;
+    }
+
+    @Nullable
+    public PeerAddressBook getAddressBook() {
+        return addressBook;
+    }
+
     /** Does a blocking startup. */
     public void start() {
         Futures.getUnchecked(startAsync());
@@ -1258,6 +1402,10 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                     // Blocking close of all sockets.
                     channels.stopAsync();
                     channels.awaitTerminated();
+                    // saved right here, the scheduled saves would only hold up the shutdown of the executor
+                    cancel(vAddressBookSaveTask);
+                    cancel(vPendingAddressBookSave);
+                    saveAddressBook();
                     for (PeerDiscovery peerDiscovery : peerDiscoverers) {
                         peerDiscovery.shutdown();
                     }
@@ -1571,6 +1719,7 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
         peer.addConnectedEventListener(Threading.SAME_THREAD, startupListener);
         peer.addDisconnectedEventListener(Threading.SAME_THREAD, startupListener);
         peer.setMinProtocolVersion(vMinRequiredProtocolVersion);
+        peer.setParallelParsingThreshold(parallelParsingThreshold);
         pendingPeers.add(peer);
 
         try {
@@ -1690,6 +1839,11 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
             // Sets up the newly connected peer so it can do everything it needs to.
             pendingPeers.remove(peer);
             peers.add(peer);
+            peerMetrics.put(peer, new PeerMetrics(peer));
+            if (addressBook != null) {
+                addressBook.recordSuccess(peer.getAddress(), peer.getPeerVersionMessage().localServices);
+                scheduleAddressBookSave();
+            }
             newSize = peers.size();
             log.info("{}: New peer      ({} connected, {} pending, {} max)", peer, newSize, pendingPeers.size(), maxConnections);
             // Give the peer a filter that can be used to probabilistically drop transactions that
@@ -1859,9 +2013,18 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
         lock.lock();
         try {
             pendingPeers.remove(peer);
-            peers.remove(peer);
+            boolean wasConnected = peers.remove(peer);
+            peerMetrics.remove(peer);
 
             PeerAddress address = peer.getAddress();
+            PeerAddressBook addressBook = this.addressBook;
+            if (addressBook != null) {
+                if (wasConnected)
+                    addressBook.recordPingTime(address, peer.getPingTime());
+                else
+                    addressBook.recordFailure(address);
+                scheduleAddressBookSave();
+            }
 
             log.info("{}: Peer died      ({} connected, {} pending, {} max)", address, peers.size(), pendingPeers.size(), maxConnections);
             if (peer == downloadPeer) {
@@ -1886,6 +2049,11 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                     ipv6Unreachable = true;
                     log.warn("IPv6 peer connect failed due to routing failure, ignoring IPv6 addresses from now on");
                 }
+            } else if (addressBook != null && addressBook.isBanned(address)) {
+                // Forget it, so discovery can offer it again once the ban expired
+                log.info("{}: Not reconnecting to banned peer", address);
+                backoffMap.remove(address);
+                priorityMap.remove(address);
             } else {
                 backoffMap.get(address).trackFailure();
                 // Put back on inactive list
@@ -2002,23 +2170,73 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
             return transactions.size();
         }
 
+        // Seconds until we next look for a faster download peer.
+        private int secondsUntilRotationCheck = DOWNLOAD_PEER_ROTATION_INTERVAL_SECONDS;
+
         @Override
         public void run() {
             try {
-                calculate();
+                if (calculate())
+                    rotateDownloadPeerIfFaster();
             } catch (Throwable e) {
                 log.error("Error in speed calculator", e);
             }
         }
 
-        private void calculate() {
+        /**
+         * Switches block download to another peer if that one is expected to be at least
+         * {@link #DOWNLOAD_PEER_ROTATION_FACTOR} times faster than the current download peer. The peers are chosen
+         * and switched under the PeerGroup lock, so the download peer can't die or change in between.
+         */
+        private void rotateDownloadPeerIfFaster() {
+            boolean rotated = false;
+            lock.lock();
+            try {
+                Peer current = downloadPeer;
+                if (current == null || downloadListener == null || syncStage != SyncStage.BLOCKS)
+                    return;
+                PeerMetrics currentMetrics = peerMetrics.get(current);
+                if (currentMetrics == null || !currentMetrics.hasThroughput())
+                    return;
+                Peer candidate = selectDownloadPeer(peers);
+                if (candidate == null || candidate == current)
+                    return;
+                double expected = expectedBytesPerSecond(peerMetrics.get(candidate), currentMetrics);
+                if (expected < currentMetrics.getBytesPerSecond() * DOWNLOAD_PEER_ROTATION_FACTOR)
+                    return;
+                log.info("Rotating download peer, expecting {} bytes/sec instead of {}: {} -> {}", (long) expected,
+                        (long) currentMetrics.getBytesPerSecond(), currentMetrics, peerMetrics.get(candidate));
+                current.removeBlocksDownloadedEventListener(this);
+                current.removeHeadersDownloadedEventListener(this);
+                startBlockChainDownloadFromPeer(candidate);
+                rotated = true;
+            } finally {
+                lock.unlock();
+            }
+            if (rotated) {
+                synchronized (this) {
+                    // Give the new peer time to get going before judging it.
+                    samples = null;
+                }
+            }
+        }
+
+        /** Returns true if it is time to look for a faster download peer. */
+        private boolean calculate() {
+            boolean checkRotation = false;
             int minSpeedBytesPerSec;
             int period;
+            int mostCommonChainHeight;
+            Peer downloadPeer;
 
+            // Everything guarded by the PeerGroup lock is read up front, so that lock is never taken while holding
+            // this monitor.
             lock.lock();
             try {
                 minSpeedBytesPerSec = stallMinSpeedBytesSec;
                 period = stallPeriodSeconds;
+                mostCommonChainHeight = getMostCommonChainHeight(peers);
+                downloadPeer = PeerGroup.this.downloadPeer;
             } finally {
                 lock.unlock();
             }
@@ -2032,7 +2250,6 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                 }
 
                 int chainHeight = chain != null ? chain.getBestChainHeight() : -1;
-                int mostCommonChainHeight = getMostCommonChainHeight();
                 if (!syncDone && mostCommonChainHeight > 0 && chainHeight >= mostCommonChainHeight) {
                     log.info("End of sync detected at height {}.", chainHeight);
                     syncDone = true;
@@ -2073,12 +2290,11 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                             // deal.
                             log.warn("This network seems to be slower than the requested stall threshold - won't do stall disconnects any more.");
                         } else {
-                            Peer peer = getDownloadPeer();
                             log.warn(String.format(Locale.US,
                                     "Chain download stalled: received %.2f KB/sec for %d seconds, require average of %.2f KB/sec, disconnecting %s, %d stalls left",
-                                    average / 1024.0, samples.length, minSpeedBytesPerSec / 1024.0, peer, maxStalls));
-                            if (peer != null) {
-                                peer.close();
+                                    average / 1024.0, samples.length, minSpeedBytesPerSec / 1024.0, downloadPeer, maxStalls));
+                            if (downloadPeer != null) {
+                                downloadPeer.close();
                             }
                             // Reset the sample buffer and give the next peer time to get going.
                             samples = null;
@@ -2087,6 +2303,16 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                     } else {
                         log.info(statsString + ", not stalled " + thresholdString);
                     }
+
+                    if (warmupSeconds <= 0) {
+                        PeerMetrics metrics = downloadPeer != null ? peerMetrics.get(downloadPeer) : null;
+                        if (metrics != null)
+                            metrics.addThroughputSample(bytesInLastSecond, headersInLastSecond);
+                        if (--secondsUntilRotationCheck <= 0) {
+                            secondsUntilRotationCheck = DOWNLOAD_PEER_ROTATION_INTERVAL_SECONDS;
+                            checkRotation = true;
+                        }
+                    }
                 }
                 blocksInLastSecond = 0;
                 txnsInLastSecond = 0;
@@ -2095,6 +2321,7 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                 headersInLastSecond = 0;
                 masternodeListsInLastSecond = 0;
             }
+            return checkRotation;
         }
 
         @Override
@@ -2737,9 +2964,69 @@ public class PeerGroup implements TransactionBroadcaster, GovernanceVoteBroadcas
                 i.remove();
         }
 
-        // Random poll.
-        int index = (int) (Math.random() * candidates.size());
-        return candidates.get(index);
+        // Prefer the peers we expect to serve the chain fastest, then poll randomly to try and spread the load.
+        List<Peer> fastest = selectFastestPeers(candidates);
+        int index = (int) (Math.random() * fastest.size());
+        return fastest.get(index);
+    }
+
+    /**
+     * Narrows the candidates down to those that are close to the lowest ping time and, if they served us before, were
+     * not much slower than the fastest peer we measured. Returns all candidates if none qualify.
+     */
+    private List<Peer> selectFastestPeers(List<Peer> candidates) {
+        long lowestPing = Long.MAX_VALUE;
+        double bestThroughput = 0;
+        for (Peer peer : candidates) {
+            PeerMetrics metrics = peerMetrics.get(peer);
+            if (metrics == null)
+                continue;
+            lowestPing = Math.min(lowestPing, metrics.getPingTimeMsec());
+            if (metrics.hasThroughput())
+                bestThroughput = Math.max(bestThroughput, metrics.getBytesPerSecond());
+        }
+        List<Peer> fastest = new ArrayList<>(candidates.size());
+        for (Peer peer : candidates) {
+            PeerMetrics metrics = peerMetrics.get(peer);
+            if (lowestPing != Long.MAX_VALUE) {
+                if (metrics == null || !metrics.hasPingTime() ||
+                        metrics.getPingTimeMsec() > lowestPing * PING_TOLERANCE_FACTOR + PING_TOLERANCE_MSEC)
+                    continue;
+            }
+            if (metrics != null && metrics.hasThroughput() &&
+                    metrics.getBytesPerSecond() * DOWNLOAD_PEER_ROTATION_FACTOR < bestThroughput)
+                continue;
+            fastest.add(peer);
+        }
+        return fastest.isEmpty() ? candidates : fastest;
+    }
+
+    /**
+     * Estimates how many bytes per second the candidate would deliver. Its own measurement is used if it served us
+     * before, otherwise the current throughput is scaled by the ratio of ping times, as chain download is bound by
+     * round trips. Returns 0 if there is nothing to base an estimate on.
+     */
+    private static double expectedBytesPerSecond(@Nullable PeerMetrics candidate, PeerMetrics current) {
+        if (candidate == null)
+            return 0;
+        if (candidate.hasThroughput())
+            return candidate.getBytesPerSecond();
+        if (!candidate.hasPingTime() || !current.hasPingTime())
+            return 0;
+        return current.getBytesPerSecond() * current.getPingTimeMsec() / Math.max(1, candidate.getPingTimeMsec());
+    }
+
+    /**
+     * Returns a snapshot of the latency and throughput of every connected peer, as used to choose the download peer.
+     */
+    public Map<Peer, PeerMetrics> getPeerMetrics() {
+        return ImmutableMap.copyOf(peerMetrics);
+    }
+
+    /** Returns the latency and throughput of the given peer, or null if it isn't connected. */
+    @Nullable
+    public PeerMetrics getPeerMetrics(Peer peer) {
+        return peerMetrics.get(peer);
     }
 
     /**
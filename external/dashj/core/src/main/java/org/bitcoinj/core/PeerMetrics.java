@@ -0,0 +1,101 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.core;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * <p>How responsive and how fast a connected {@link Peer} has been. {@link PeerGroup} keeps one of these per peer and
+ * uses them to choose and rotate the download peer, see {@link PeerGroup#getPeerMetrics()}.</p>
+ *
+ * <p>The ping time is the moving average maintained by {@link Peer#getPingTime()}. Throughput is an exponential
+ * moving average of one second samples, and is only sampled while the peer is the download peer. A peer that never
+ * served us the chain has no throughput measurement, which {@link #hasThroughput()} tells apart from a slow peer.</p>
+ */
+public class PeerMetrics {
+    /** Number of one second samples needed before the throughput averages are trusted. */
+    public static final int MIN_THROUGHPUT_SAMPLES = 5;
+    // Weight of the newest sample in the moving averages
+    private static final double ALPHA = 0.2;
+
+    private final Peer peer;
+    private double bytesPerSecond;
+    private double headersPerSecond;
+    private int throughputSamples;
+
+    PeerMetrics(Peer peer) {
+        this.peer = peer;
+    }
+
+    /** Adds what the peer delivered in the last second while it was the download peer. */
+    synchronized void addThroughputSample(long bytes, long headers) {
+        if (throughputSamples == 0) {
+            bytesPerSecond = bytes;
+            headersPerSecond = headers;
+        } else {
+            bytesPerSecond += ALPHA * (bytes - bytesPerSecond);
+            headersPerSecond += ALPHA * (headers - headersPerSecond);
+        }
+        throughputSamples++;
+    }
+
+    public PeerAddress getAddress() {
+        return peer.getAddress();
+    }
+
+    /**
+     * Returns the moving average of the ping time in milliseconds, or {@link Long#MAX_VALUE} if the peer never
+     * answered a ping.
+     */
+    public long getPingTimeMsec() {
+        return peer.getPingTime();
+    }
+
+    public boolean hasPingTime() {
+        return getPingTimeMsec() != Long.MAX_VALUE;
+    }
+
+    /** Returns the moving average of bytes per second received while this peer was the download peer. */
+    public synchronized double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /** Returns the moving average of headers per second received while this peer was the download peer. */
+    public synchronized double getHeadersPerSecond() {
+        return headersPerSecond;
+    }
+
+    public synchronized int getThroughputSamples() {
+        return throughputSamples;
+    }
+
+    /** Returns true once enough throughput samples were taken for the averages to mean something. */
+    public synchronized boolean hasThroughput() {
+        return throughputSamples >= MIN_THROUGHPUT_SAMPLES;
+    }
+
+    @Override
+    public String toString() {
+        final MoreObjects.ToStringHelper helper = MoreObjects.toStringHelper(this);
+        helper.add("address", getAddress());
+        helper.add("ping", hasPingTime() ? getPingTimeMsec() + " ms" : "unknown");
+        synchronized (this) {
+            helper.add("bytesPerSecond", (long) bytesPerSecond);
+            helper.add("headersPerSecond", (long) headersPerSecond);
+            helper.add("samples", throughputSamples);
+        }
+        return helper.toString();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.core;
+
+import org.bitcoinj.script.Script;
+import org.bitcoinj.script.Script.VerifyFlag;
+import org.bitcoinj.utils.LatencyHistogram;
+import org.bitcoinj.utils.Threading;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * <p>Verifies the input scripts of blocks on a long lived, work stealing {@link ForkJoinPool}. The work of a block
+ * is split per input, and the inputs of the largest transactions are verified first: checking a signature hashes a
+ * copy of the whole transaction, so those inputs take the longest and should not be left until the end.</p>
+ *
+ * <p>Each block gets a {@link Batch}. When one of its inputs fails, or the batch is cancelled, the inputs that were
+ * not started yet are dropped while the pool keeps running for the next block.</p>
+ */
+public class ScriptVerificationService {
+    private static final Logger log = LoggerFactory.getLogger(ScriptVerificationService.class);
+
+    private final ForkJoinPool pool;
+    // the time from creating a batch until all of its inputs were verified
+    private final LatencyHistogram blockLatency = new LatencyHistogram();
+
+    public ScriptVerificationService(Context context) {
+        this(context, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ScriptVerificationService(final Context context, int parallelism) {
+        checkArgument(parallelism > 0);
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                    @Override
+                    protected void onStart() {
+                        super.onStart();
+                        Context.propagate(context);
+                    }
+                };
+                thread.setName("Script verification");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.pool = new ForkJoinPool(parallelism, factory, Threading.uncaughtExceptionHandler, false);
+    }
+
+    /** Starts the verification of a block. */
+    public Batch newBatch() {
+        return new Batch();
+    }
+
+    /** Returns the time that blocks took to verify, from the start of their batch. */
+    public LatencyHistogram getBlockLatency() {
+        return blockLatency;
+    }
+
+    /** Stops the threads of the pool. Batches that are started after this are verified on the calling thread. */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /** The input scripts of one block, which are verified while more are added. */
+    public class Batch {
+        private final long startTime = System.nanoTime();
+        private final PriorityBlockingQueue<InputJob> pending = new PriorityBlockingQueue<>();
+        private final Object lock = new Object();
+        // the inputs that were added and not finished or dropped yet
+        private int outstanding;
+        private int inputCount;
+        private long sequence;
+        private volatile VerificationException failure;
+        private boolean finished;
+
+        private Batch() {
+        }
+
+        /**
+         * Adds the inputs of a transaction, which start to be verified right away. The transaction must not be
+         * changed while it is verified.
+         */
+        public void add(Transaction tx, List<Script> prevOutScripts, Set<VerifyFlag> verifyFlags) {
+            checkArgument(prevOutScripts.size() == tx.getInputs().size());
+            synchronized (lock) {
+                checkState(!finished, "batch is finished");
+                if (failure != null)
+                    return;
+                outstanding += prevOutScripts.size();
+            }
+            int cost = tx.getMessageSize();
+            for (int index = 0; index < prevOutScripts.size(); index++) {
+                pending.add(new InputJob(tx, index, prevOutScripts.get(index), verifyFlags, cost, sequence++));
+                inputCount++;
+                try {
+                    pool.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            InputJob job = pending.poll();
+                            if (job != null)
+                                Batch.this.run(job);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // the service was shut down, verify() runs the job
+                }
+            }
+        }
+
+        /**
+         * Waits until all inputs are verified, verifying inputs on the calling thread as well.
+         *
+         * @throws VerificationException if an input failed, the first failure is thrown
+         */
+        public void verify() throws VerificationException {
+            InputJob job;
+            while (failure == null && (job = pending.poll()) != null)
+                run(job);
+            synchronized (lock) {
+                finished = true;
+                try {
+                    while (outstanding > 0 && failure == null)
+                        lock.wait();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e); // Shouldn't happen
+                }
+            }
+            long elapsed = System.nanoTime() - startTime;
+            if (failure != null)
+                throw failure;
+            blockLatency.record(elapsed, TimeUnit.NANOSECONDS);
+            log.debug("verified {} inputs in {} ms", inputCount, TimeUnit.NANOSECONDS.toMillis(elapsed));
+        }
+
+        /** Drops the inputs that were not started yet, because the block failed for another reason. */
+        public void cancel() {
+            fail(new VerificationException("Script verification was cancelled"));
+        }
+
+        private void run(InputJob job) {
+            try {
+                if (failure == null)
+                    job.verify();
+            } catch (VerificationException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                log.error("Script.correctlySpends threw a non-normal exception: " + e);
+                fail(new VerificationException("Bug in Script.correctlySpends, likely script malformed in some new and interesting way.", e));
+            } finally {
+                synchronized (lock) {
+                    if (--outstanding == 0)
+                        lock.notifyAll();
+                }
+            }
+        }
+
+        private void fail(VerificationException e) {
+            List<InputJob> dropped = new ArrayList<>();
+            synchronized (lock) {
+                if (failure == null)
+                    failure = e;
+                pending.drainTo(dropped);
+                outstanding -= dropped.size();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static class InputJob implements Comparable<InputJob> {
+        final Transaction tx;
+        final int index;
+        final Script prevOutScript;
+        final Set<VerifyFlag> verifyFlags;
+        final int cost;
+        final long sequence;
+
+        InputJob(Transaction tx, int index, Script prevOutScript, Set<VerifyFlag> verifyFlags, int cost, long sequence) {
+            this.tx = tx;
+            this.index = index;
+            this.prevOutScript = prevOutScript;
+            this.verifyFlags = verifyFlags;
+            this.cost = cost;
+            this.sequence = sequence;
+        }
+
+        void verify() throws VerificationException {
+            tx.getInputs().get(index).getScriptSig().correctlySpends(tx, index, prevOutScript, verifyFlags);
+        }
+
+        // the largest transactions first, then in the order they were added
+        @Override
+        public int compareTo(InputJob other) {
+            if (cost != other.cost)
+                return cost > other.cost ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * <p>The parts of a transaction that the legacy signature hashes of its inputs have in common, serialized once.</p>
+ *
+ * <p>For {@link Transaction.SigHash#ALL} the signed form of the transaction is the transaction with all input scripts
+ * emptied, except that of the signed input which is replaced by the connected script. Instead of copying and
+ * serializing the transaction for every input, the hash of an input streams these pieces and the connected script
+ * into a single digest. The other types are rare and left to {@link Transaction#hashForSignature}.</p>
+ */
+final class SigHashContext {
+    // outpoint, an empty script and the sequence number
+    private static final int INPUT_LENGTH = TransactionOutPoint.MESSAGE_LENGTH + 1 + 4;
+
+    // the version and number of inputs
+    private final byte[] prefix;
+    // every input with an empty script
+    private final byte[] inputs;
+    // the outputs, lock time and special transaction payload
+    private final byte[] suffix;
+    private final int inputCount;
+
+    SigHashContext(Transaction tx) {
+        try {
+            inputCount = tx.getInputs().size();
+            ByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(4 + VarInt.sizeOf(inputCount));
+            Utils.uint32ToByteStreamLE(tx.getVersion(), bos);
+            bos.write(new VarInt(inputCount).encode());
+            prefix = bos.toByteArray();
+
+            bos = new UnsafeByteArrayOutputStream(inputCount * INPUT_LENGTH);
+            for (TransactionInput input : tx.getInputs()) {
+                input.getOutpoint().bitcoinSerialize(bos);
+                bos.write(0);
+                Utils.uint32ToByteStreamLE(input.getSequenceNumber(), bos);
+            }
+            inputs = bos.toByteArray();
+
+            bos = new UnsafeByteArrayOutputStream(256);
+            bos.write(new VarInt(tx.getOutputs().size()).encode());
+            for (TransactionOutput output : tx.getOutputs())
+                output.bitcoinSerialize(bos);
+            Utils.uint32ToByteStreamLE(tx.getLockTime(), bos);
+            if (tx.getVersionShort() >= Transaction.SPECIAL_VERSION && tx.getType() != Transaction.Type.TRANSACTION_NORMAL) {
+                bos.write(new VarInt(tx.getExtraPayload().length).encode());
+                bos.write(tx.getExtraPayload());
+            }
+            suffix = bos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);  // Cannot happen.
+        }
+    }
+
+    /** Returns true if this context can compute hashes of the given type. */
+    static boolean supports(byte sigHashType) {
+        int type = sigHashType & 0x1f;
+        return type != Transaction.SigHash.NONE.value && type != Transaction.SigHash.SINGLE.value;
+    }
+
+    /**
+     * Computes the signature hash of an input, which must be of a type that is {@link #supports(byte) supported}.
+     *
+     * @param connectedScript the script with any OP_CODESEPARATOR already removed
+     */
+    Sha256Hash hashForSignature(int inputIndex, byte[] connectedScript, byte sigHashType) {
+        checkElementIndex(inputIndex, inputCount);
+        int start = inputIndex * INPUT_LENGTH;
+        int scriptOffset = start + TransactionOutPoint.MESSAGE_LENGTH;
+        MessageDigest digest = Sha256Hash.newDigest();
+        if ((sigHashType & Transaction.SigHash.ANYONECANPAY.value) == Transaction.SigHash.ANYONECANPAY.value) {
+            // only the signed input
+            digest.update(prefix, 0, 4);
+            digest.update((byte) 1);
+            digest.update(inputs, start, TransactionOutPoint.MESSAGE_LENGTH);
+            updateScript(digest, connectedScript);
+            digest.update(inputs, scriptOffset + 1, 4);
+        } else {
+            digest.update(prefix);
+            digest.update(inputs, 0, scriptOffset);
+            updateScript(digest, connectedScript);
+            digest.update(inputs, scriptOffset + 1, inputs.length - scriptOffset - 1);
+        }
+        digest.update(suffix);
+        // the hash type is serialized as an uint32, even though it is an unsigned char
+        digest.update(sigHashType);
+        digest.update((byte) 0);
+        digest.update((byte) 0);
+        digest.update((byte) 0);
+        return Sha256Hash.wrap(Sha256Hash.hash(digest.digest()));
+    }
+
+    private static void updateScript(MessageDigest digest, byte[] script) {
+        digest.update(new VarInt(script.length).encode());
+        digest.update(script);
+    }
+}
@@ -207,6 +207,11 @@ public class Transaction extends ChildMessage {
     // This is an in memory helpers only. It contains the transaction hash.
     private Sha256Hash cachedTxId;
 
+    // The serialized parts shared by the signature hashes of the inputs, built on first use. Must be cleared together
+    // with cachedTxId.
+    @Nullable
+    private transient volatile SigHashContext sigHashContext;
+
     // Data about how confirmed this tx is. Serialized, may be null.
     @Nullable private TransactionConfidence confidence;
 
@@ -602,6 +607,7 @@ public class Transaction extends ChildMessage {
     protected void unCache() {
         super.unCache();
         cachedTxId = null;
+        sigHashContext = null;
     }
 
     protected static int calcLength(byte[] buf, int offset) {
@@ -637,7 +643,15 @@ public class Transaction extends ChildMessage {
             cursor += (int)scriptLen + varint.getOriginalSizeInBytes();
         }
         // 4 = length of lock_time field (uint32)
-        return cursor - offset + 4;
+        cursor += 4;
+
+        // special transactions carry an extra payload after lock_time
+        long version = Utils.readUint32(buf, offset);
+        if (versionFromLegacyVersion(version) >= SPECIAL_VERSION && typeFromLegacyVersion(version) != 0) {
+            varint = new VarInt(buf, cursor);
+            cursor += (int)varint.value + varint.getOriginalSizeInBytes();
+        }
+        return cursor - offset;
     }
 
     /**
@@ -1168,6 +1182,15 @@ public class Transaction extends ChildMessage {
         //
         //   https://en.bitcoin.it/wiki/Contracts
 
+        if (SigHashContext.supports(sigHashType)) {
+            // The usual case: hash the serialized parts kept for all inputs instead of copying the transaction.
+            SigHashContext context = sigHashContext;
+            if (context == null)
+                sigHashContext = context = new SigHashContext(this);
+            byte[] script = Script.removeAllInstancesOfOp(connectedScript, ScriptOpCodes.OP_CODESEPARATOR);
+            return context.hashForSignature(inputIndex, script, sigHashType);
+        }
+
         try {
             // Create a copy of this transaction to operate upon because we need make changes to the inputs and outputs.
             // It would not be thread-safe to change the attributes of the transaction object itself.
@@ -1304,14 +1327,17 @@ public class Transaction extends ChildMessage {
     public void setVersion(long version) {
         this.version = version;
         cachedTxId = null;
+        sigHashContext = null;
     }
 
     public void setVersionAndType(int versionShort, int type) {
         version = versionShort | type << 16;
+        cachedTxId = null;
+        sigHashContext = null;
     }
 
     public void setVersionAndType(int versionShort, Type type) {
-        version = versionShort | type.getValue() << 16;
+        setVersionAndType(versionShort, type.getValue());
     }
 
     public int getVersionShort() {
@@ -1335,6 +1361,7 @@ public class Transaction extends ChildMessage {
     public void setType(int type) {
         version = versionFromLegacyVersion(version) | type << 16;
         cachedTxId = null;
+        sigHashContext = null;
     }
 
     public void setType(Type type) {
@@ -1375,6 +1402,7 @@ public class Transaction extends ChildMessage {
 
     /** Randomly re-orders the transaction outputs: good for privacy */
     public void shuffleOutputs() {
+        unCache();
         Collections.shuffle(outputs);
     }
 
@@ -1405,10 +1433,12 @@ public class Transaction extends ChildMessage {
 
     /** Sorts transaction outputs according to BIP69 first by amount, then by scriptPubKey **/
     public void sortOutputs() {
+        unCache();
         Collections.sort(outputs, compareTransactionOutputs);
     }
 
     public void sortInputs() {
+        unCache();
         Collections.sort(inputs, compareTransactionInputs);
     }
 
@@ -1665,6 +1695,7 @@ public class Transaction extends ChildMessage {
     }
 
     public void setExtraPayload(byte [] extraPayload) {
+        unCache();
         this.extraPayload = extraPayload;
         setExtraPayloadObject();
     }
@@ -161,6 +161,9 @@ public class TransactionConfidence {
     }
     private Source source = Source.UNKNOWN;
 
+    // The table that created this confidence, told when it starts building so it can index it by height
+    @Nullable TxConfidenceTable confidenceTable;
+
     public TransactionConfidence(Sha256Hash hash) {
         // Assume a default number of peers for our set.
         broadcastBy = new CopyOnWriteArrayList<>();
@@ -287,12 +290,17 @@ public class TransactionConfidence {
      * The chain height at which the transaction appeared, if it has been seen in the best chain. Automatically sets
      * the current type to {@link ConfidenceType#BUILDING} and depth to one.
      */
-    public synchronized void setAppearedAtChainHeight(int appearedAtChainHeight) {
+    public void setAppearedAtChainHeight(int appearedAtChainHeight) {
         if (appearedAtChainHeight < 0)
             throw new IllegalArgumentException("appearedAtChainHeight out of range");
-        this.appearedAtChainHeight = appearedAtChainHeight;
-        this.depth = 1;
+        synchronized (this) {
+            this.appearedAtChainHeight = appearedAtChainHeight;
+            this.depth = 1;
             setConfidenceType(ConfidenceType.BUILDING);
+        }
+        // the table takes its own lock, which must not be taken while holding ours
+        if (confidenceTable != null)
+            confidenceTable.onAppearedAtChainHeight(hash, appearedAtChainHeight);
     }
 
     /**
@@ -36,10 +36,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  * <p>It is <b>not</b> at this time directly equivalent to the Dash Core memory pool, which tracks
  * all transactions not currently included in the best chain - it's simply a cache.</p>
+ *
+ * <p>The table is split into independently locked segments selected by transaction hash, so peers announcing
+ * different transactions don't contend with each other. Each segment evicts its least recently inserted entries once
+ * it holds its share of {@link #getMaxSize()}. Confidences that are {@link TransactionConfidence.ConfidenceType#BUILDING}
+ * are also indexed by the height they appeared at, which is what {@link #get(StoredBlock)} walks.</p>
  */
 public class TxConfidenceTable {
-    protected ReentrantLock lock = Threading.lock("txconfidencetable");
-
     private static class WeakConfidenceReference extends WeakReference<TransactionConfidence> {
         public Sha256Hash hash;
         public WeakConfidenceReference(TransactionConfidence confidence, ReferenceQueue<TransactionConfidence> queue) {
@@ -47,8 +50,33 @@ public class TxConfidenceTable {
             hash = confidence.getTransactionHash();
         }
     }
-    private final Map<Sha256Hash, WeakConfidenceReference> table;
+
+    private class Segment {
+        private final ReentrantLock lock;
+        private final Map<Sha256Hash, WeakConfidenceReference> table;
+
+        Segment(int index) {
+            lock = Threading.lock("txconfidencetable-" + index);
+            table = new LinkedHashMap<Sha256Hash, WeakConfidenceReference>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Sha256Hash, WeakConfidenceReference> entry) {
+                    // An arbitrary choice to stop the memory used by tracked transactions getting too huge in the event
+                    // of some kind of DoS attack.
+                    return size() > segmentCapacity;
+                }
+            };
+        }
+    }
+
+    private final Segment[] segments;
     private final TransactionConfidence.Factory confidenceFactory;
+    private volatile int maxSize;
+    private volatile int segmentCapacity;
+
+    // Hashes of BUILDING confidences by the height they appeared at. Entries are not removed when a confidence
+    // changes height or leaves the table; get(StoredBlock) drops them when it comes across them.
+    private final TreeMap<Integer, Set<Sha256Hash>> buildingByHeight = new TreeMap<>();
+    private final ReentrantLock buildingLock = Threading.lock("txconfidencetable-building");
 
     // This ReferenceQueue gets entries added to it when they are only weakly reachable, ie, the TxConfidenceTable is the
     // only thing that is tracking the confidence data anymore. We check it from time to time and delete table entries
@@ -60,6 +88,10 @@ public class TxConfidenceTable {
     /** The max size of a table created with the no-args constructor. */
     public static final int MAX_SIZE = 1000;
 
+    // Upper bound for the number of segments, and the smallest share of the max size that a segment gets
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_SIZE = 64;
+
     /**
      * Creates a table that will track at most the given number of transactions (allowing you to bound memory
      * usage).
@@ -70,14 +102,11 @@ public class TxConfidenceTable {
     }
 
     TxConfidenceTable(final int size, TransactionConfidence.Factory confidenceFactory){
-        table = new LinkedHashMap<Sha256Hash, WeakConfidenceReference>() {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<Sha256Hash, WeakConfidenceReference> entry) {
-                // An arbitrary choice to stop the memory used by tracked transactions getting too huge in the event
-                // of some kind of DoS attack.
-                return size() > size;
-            }
-        };
+        int numSegments = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, size / MIN_SEGMENT_SIZE)));
+        segments = new Segment[numSegments];
+        for (int i = 0; i < numSegments; i++)
+            segments[i] = new Segment(i);
+        setMaxSize(size);
         referenceQueue = new ReferenceQueue<>();
         this.confidenceFactory = confidenceFactory;
     }
@@ -90,6 +119,40 @@ public class TxConfidenceTable {
         this(MAX_SIZE);
     }
 
+    /**
+     * Changes the number of transactions this table tracks. A busy mempool can announce more transactions than
+     * {@link #MAX_SIZE} between two blocks, which evicts entries that are still relevant. A smaller size takes effect
+     * as new transactions are inserted.
+     */
+    public void setMaxSize(int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("size must be positive: " + size);
+        maxSize = size;
+        segmentCapacity = (size + segments.length - 1) / segments.length;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /** Returns the number of transactions currently tracked, including ones that have not been cleaned up yet. */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.table.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(Sha256Hash hash) {
+        return segments[hash.hashCode() & (segments.length - 1)];
+    }
+
     /**
      * If any transactions have expired due to being only weakly reachable through us, go ahead and delete their
      * table entries - it means we downloaded the transaction and sent it to various event listeners, none of
@@ -97,17 +160,19 @@ public class TxConfidenceTable {
      * are relevant to any of our wallets.
      */
     private void cleanTable() {
-        lock.lock();
-        try {
-            Reference<? extends TransactionConfidence> ref;
-            while ((ref = referenceQueue.poll()) != null) {
-                // Find which transaction got deleted by the GC.
-                WeakConfidenceReference txRef = (WeakConfidenceReference) ref;
-                // And remove the associated map entry so the other bits of memory can also be reclaimed.
-                table.remove(txRef.hash);
+        Reference<? extends TransactionConfidence> ref;
+        while ((ref = referenceQueue.poll()) != null) {
+            // Find which transaction got deleted by the GC.
+            WeakConfidenceReference txRef = (WeakConfidenceReference) ref;
+            // And remove the associated map entry so the other bits of memory can also be reclaimed, unless the hash
+            // has been tracked again in the meantime.
+            Segment segment = segmentFor(txRef.hash);
+            segment.lock.lock();
+            try {
+                segment.table.remove(txRef.hash, txRef);
+            } finally {
+                segment.lock.unlock();
             }
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -115,24 +180,25 @@ public class TxConfidenceTable {
      * Returns the number of peers that have seen the given hash recently.
      */
     public int numBroadcastPeers(Sha256Hash txHash) {
-        lock.lock();
+        cleanTable();
+        Segment segment = segmentFor(txHash);
+        segment.lock.lock();
         try {
-            cleanTable();
-            WeakConfidenceReference entry = table.get(txHash);
+            WeakConfidenceReference entry = segment.table.get(txHash);
             if (entry == null) {
                 return 0;  // No such TX known.
             } else {
                 TransactionConfidence confidence = entry.get();
                 if (confidence == null) {
                     // Such a TX hash was seen, but nothing seemed to care so we ended up throwing away the data.
-                    table.remove(txHash);
+                    segment.table.remove(txHash);
                     return 0;
                 } else {
                     return confidence.numBroadcastPeers();
                 }
             }
         } finally {
-            lock.unlock();
+            segment.lock.unlock();
         }
     }
 
@@ -145,13 +211,14 @@ public class TxConfidenceTable {
     public TransactionConfidence seen(Sha256Hash hash, PeerAddress byPeer) {
         TransactionConfidence confidence;
         boolean fresh = false;
-        lock.lock();
+        cleanTable();
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
         try {
-            cleanTable();
             confidence = getOrCreate(hash);
             fresh = confidence.markBroadcastBy(byPeer);
         } finally {
-            lock.unlock();
+            segment.lock.unlock();
         }
         if (fresh)
             confidence.queueListeners(TransactionConfidence.Listener.ChangeReason.SEEN_PEERS);
@@ -164,19 +231,21 @@ public class TxConfidenceTable {
      */
     public TransactionConfidence getOrCreate(Sha256Hash hash) {
         checkNotNull(hash);
-        lock.lock();
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
         try {
-            WeakConfidenceReference reference = table.get(hash);
+            WeakConfidenceReference reference = segment.table.get(hash);
             if (reference != null) {
                 TransactionConfidence confidence = reference.get();
                 if (confidence != null)
                     return confidence;
             }
             TransactionConfidence newConfidence = confidenceFactory.createConfidence(hash);
-            table.put(hash, new WeakConfidenceReference(newConfidence, referenceQueue));
+            newConfidence.confidenceTable = this;
+            segment.table.put(hash, new WeakConfidenceReference(newConfidence, referenceQueue));
             return newConfidence;
         } finally {
-            lock.unlock();
+            segment.lock.unlock();
         }
     }
 
@@ -186,9 +255,10 @@ public class TxConfidenceTable {
      */
     @Nullable
     public TransactionConfidence get(Sha256Hash hash) {
-        lock.lock();
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
         try {
-            WeakConfidenceReference ref = table.get(hash);
+            WeakConfidenceReference ref = segment.table.get(hash);
             if (ref == null)
                 return null;
             TransactionConfidence confidence = ref.get();
@@ -197,19 +267,85 @@ public class TxConfidenceTable {
             else
                 return null;
         } finally {
-            lock.unlock();
+            segment.lock.unlock();
+        }
+    }
+
+    /** Called by a {@link TransactionConfidence} created by this table when it starts building at the given height. */
+    void onAppearedAtChainHeight(Sha256Hash hash, int height) {
+        buildingLock.lock();
+        try {
+            Set<Sha256Hash> hashes = buildingByHeight.get(height);
+            if (hashes == null) {
+                hashes = new HashSet<>();
+                buildingByHeight.put(height, hashes);
+            }
+            hashes.add(hash);
+        } finally {
+            buildingLock.unlock();
         }
     }
 
+    /**
+     * Returns the tracked confidences that are {@link TransactionConfidence.ConfidenceType#BUILDING} and appeared at
+     * or below the height of the given block. Only the height index is walked, not the whole table.
+     */
     public ArrayList<TransactionConfidence> get(StoredBlock block) {
+        cleanTable();
+        List<Map.Entry<Integer, Sha256Hash>> candidates = Lists.newArrayList();
+        buildingLock.lock();
+        try {
+            for (Map.Entry<Integer, Set<Sha256Hash>> entry : buildingByHeight.headMap(block.getHeight(), true).entrySet()) {
+                for (Sha256Hash hash : entry.getValue())
+                    candidates.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), hash));
+            }
+        } finally {
+            buildingLock.unlock();
+        }
+
         ArrayList<TransactionConfidence> results = Lists.newArrayList();
-        for (Map.Entry<Sha256Hash, WeakConfidenceReference> entry: table.entrySet()) {
-            TransactionConfidence confidence = entry.getValue().get();
-            if (confidence != null && confidence.getConfidenceType() == TransactionConfidence.ConfidenceType.BUILDING &&
-                    confidence.getAppearedAtChainHeight() <= block.getHeight()) {
+        List<Map.Entry<Integer, Sha256Hash>> stale = Lists.newArrayList();
+        for (Map.Entry<Integer, Sha256Hash> candidate : candidates) {
+            TransactionConfidence confidence = get(candidate.getValue());
+            if (isBuildingAt(confidence, candidate.getKey())) {
                 results.add(confidence);
+            } else {
+                stale.add(candidate);
+            }
+        }
+
+        if (!stale.isEmpty()) {
+            // Confidences are not looked at while holding the lock, as they call into this table while holding
+            // their own monitor.
+            buildingLock.lock();
+            try {
+                for (Map.Entry<Integer, Sha256Hash> entry : stale) {
+                    Set<Sha256Hash> hashes = buildingByHeight.get(entry.getKey());
+                    if (hashes == null)
+                        continue;
+                    hashes.remove(entry.getValue());
+                    if (hashes.isEmpty())
+                        buildingByHeight.remove(entry.getKey());
+                }
+            } finally {
+                buildingLock.unlock();
+            }
+            // an entry may have been re-added since we looked, put those back
+            for (Map.Entry<Integer, Sha256Hash> entry : stale) {
+                TransactionConfidence confidence = get(entry.getValue());
+                if (isBuildingAt(confidence, entry.getKey()))
+                    onAppearedAtChainHeight(entry.getValue(), entry.getKey());
             }
         }
         return results;
     }
+
+    private static boolean isBuildingAt(@Nullable TransactionConfidence confidence, int height) {
+        if (confidence == null)
+            return false;
+        synchronized (confidence) {
+            return confidence.getConfidenceType() == TransactionConfidence.ConfidenceType.BUILDING &&
+                    confidence.getAppearedAtChainHeight() == height;
+        }
+    }
 }
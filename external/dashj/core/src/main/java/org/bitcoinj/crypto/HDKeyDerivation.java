@@ -17,6 +17,9 @@
 package org.bitcoinj.crypto;
 
 import com.google.common.collect.*;
+import org.bitcoin.NativeSecp256k1;
+import org.bitcoin.NativeSecp256k1Util;
+import org.bitcoin.Secp256k1Context;
 import org.bitcoinj.core.*;
 import org.bouncycastle.math.ec.*;
 
@@ -209,6 +212,15 @@ public final class HDKeyDerivation {
         BigInteger ilInt = new BigInteger(1, il);
         assertLessThanN(ilInt, "Illegal derived key: I_L >= n");
 
+        if (mode == PublicDeriveMode.NORMAL && Secp256k1Context.isEnabled()) {
+            try {
+                byte[] childPublicKey = NativeSecp256k1.pubKeyTweakAdd(parentPublicKey, il);
+                return new RawKeyBytes(ECKey.CURVE.getCurve().decodePoint(childPublicKey).getEncoded(true), chainCode);
+            } catch (NativeSecp256k1Util.AssertFailException e) {
+                // The derived key is illegal, fall through so the error is reported like without the library.
+            }
+        }
+
         final BigInteger N = ECKey.CURVE.getN();
         ECPoint Ki;
         switch (mode) {
@@ -20,6 +20,7 @@ package org.bitcoinj.crypto;
 import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
 import com.google.protobuf.ByteString;
+import com.lambdaworks.crypto.PBKDF;
 import com.lambdaworks.crypto.SCrypt;
 import org.bitcoinj.core.Utils;
 import org.bitcoinj.wallet.Protos;
@@ -35,9 +36,16 @@ import org.bouncycastle.crypto.paddings.PaddedBufferedBlockCipher;
 import org.bouncycastle.crypto.params.KeyParameter;
 import org.bouncycastle.crypto.params.ParametersWithIV;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -53,6 +61,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
  *
  * <p>2) Using the AES Key generated above, you then can encrypt and decrypt any bytes using
  * the AES symmetric cipher. Eight bytes of salt is used to prevent dictionary attacks.</p>
+ *
+ * <p>The p independent lanes of scrypt are mixed in parallel, as many at a time as there are processors and as fit
+ * into a quarter of the heap. {@link #calibrate(int, long)} creates parameters that make use of this.</p>
  */
 public class KeyCrypterScrypt implements KeyCrypter {
 
@@ -74,6 +85,14 @@ public class KeyCrypterScrypt implements KeyCrypter {
      */
     public static final int SALT_LENGTH = 8;
 
+    /**
+     * The largest number of iterations {@link #calibrate(int, long)} picks, which needs 1 GB per lane at r = 8.
+     */
+    public static final int MAX_CALIBRATED_ITERATIONS = 1 << 20;
+
+    // the number of iterations of the lane that is timed by calibrate()
+    private static final int CALIBRATION_ITERATIONS = 4096;
+
     static {
         // Init proper random number generator, as some old Android installations have bugs that make it unsecure.
         if (Utils.isAndroidRuntime())
@@ -157,7 +176,7 @@ public class KeyCrypterScrypt implements KeyCrypter {
             }
 
             final Stopwatch watch = Stopwatch.createStarted();
-            byte[] keyBytes = SCrypt.scrypt(passwordBytes, salt, (int) scryptParameters.getN(), scryptParameters.getR(), scryptParameters.getP(), KEY_LENGTH);
+            byte[] keyBytes = scrypt(passwordBytes, salt, (int) scryptParameters.getN(), scryptParameters.getR(), scryptParameters.getP(), KEY_LENGTH);
             watch.stop();
             log.info("Deriving key took {} for {}.", watch, scryptParametersString());
             return new KeyParameter(keyBytes);
@@ -171,6 +190,122 @@ public class KeyCrypterScrypt implements KeyCrypter {
         }
     }
 
+    /**
+     * Creates an encrypter with a random salt whose key derivation takes about the given time on this device. The
+     * parallelization parameter p is the number of lanes the device can mix at the same time, so they cost no more
+     * time than one. Starting at the given minimum, the number of iterations is then doubled for as long as the
+     * derivation is estimated to stay within the time.
+     *
+     * @param minIterations the smallest number of iterations to use, a power of two
+     * @param targetMillis  the time a key derivation should take at most, unless minIterations takes longer
+     */
+    public static KeyCrypterScrypt calibrate(int minIterations, long targetMillis) {
+        checkArgument(minIterations > 1 && Integer.bitCount(minIterations) == 1, "minIterations must be a power of two");
+        int r = ScryptParameters.getDefaultInstance().getR();
+        int p = parallelLanes(minIterations, r, Runtime.getRuntime().availableProcessors());
+
+        // a lane takes time in proportion to its iterations
+        byte[] block = new byte[128 * r];
+        final Stopwatch watch = Stopwatch.createStarted();
+        SCrypt.smix(block, 0, r, CALIBRATION_ITERATIONS, new byte[128 * r * CALIBRATION_ITERATIONS], new byte[256 * r]);
+        double nanosPerIteration = (double) watch.elapsed(TimeUnit.NANOSECONDS) / CALIBRATION_ITERATIONS;
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+
+        int n = minIterations;
+        while (n < MAX_CALIBRATED_ITERATIONS && 128L * r * n * 2 <= memoryBudget()) {
+            // lanes that do not fit into memory together are mixed in several rounds
+            int lanes = parallelLanes(n * 2, r, p);
+            int rounds = (p + lanes - 1) / lanes;
+            if (nanosPerIteration * n * 2 * rounds > targetNanos)
+                break;
+            n *= 2;
+        }
+        ScryptParameters parameters = ScryptParameters.newBuilder().setSalt(ByteString.copyFrom(randomSalt()))
+                .setN(n).setR(r).setP(p).build();
+        log.info("Calibrated scrypt to N={}, r={}, p={} for {} ms", n, r, p, targetMillis);
+        return new KeyCrypterScrypt(parameters);
+    }
+
+    /**
+     * Derives a key like {@link SCrypt#scrypt(byte[], byte[], int, int, int, int)}, mixing the p lanes in parallel
+     * where the processors and the heap allow for it.
+     */
+    static byte[] scrypt(byte[] password, byte[] salt, int n, int r, int p, int keyLength)
+            throws GeneralSecurityException {
+        int lanes = parallelLanes(n, r, p);
+        if (lanes == 1)
+            return SCrypt.scrypt(password, salt, n, r, p, keyLength);
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(password, "HmacSHA256"));
+        byte[] blocks = new byte[128 * r * p];
+        PBKDF.pbkdf2(mac, salt, 1, blocks, blocks.length);
+        ForkJoinPool.commonPool().invoke(new MixLanesTask(blocks, n, r, p, lanes, 0, lanes));
+        byte[] key = new byte[keyLength];
+        PBKDF.pbkdf2(mac, blocks, 1, key, keyLength);
+        return key;
+    }
+
+    /**
+     * Returns true if one lane of the derivation fits into the memory that lanes may use on this device. Parameters
+     * from {@link #calibrate(int, long)} do, unless even the minimum number of iterations did not fit.
+     */
+    public boolean fitsMemoryBudget() {
+        return 128L * scryptParameters.getR() * scryptParameters.getN() <= memoryBudget();
+    }
+
+    /** Returns how many of the p lanes can be mixed at the same time, at least 1. */
+    private static int parallelLanes(int n, int r, int p) {
+        long byMemory = memoryBudget() / (128L * r * n);
+        int byProcessors = Runtime.getRuntime().availableProcessors();
+        return (int) Math.max(1, Math.min(p, Math.min(byProcessors, byMemory)));
+    }
+
+    // the memory that the lanes of a derivation may use at the same time
+    private static long memoryBudget() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * Mixes the lanes of the workers in [start, end). Each of the workers owns a scratch area and mixes every
+     * workers-th lane, so there are never more scratch areas than workers.
+     */
+    private static class MixLanesTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final byte[] blocks;
+        private final int n;
+        private final int r;
+        private final int p;
+        private final int workers;
+        private final int start;
+        private final int end;
+
+        MixLanesTask(byte[] blocks, int n, int r, int p, int workers, int start, int end) {
+            this.blocks = blocks;
+            this.n = n;
+            this.r = r;
+            this.p = p;
+            this.workers = workers;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new MixLanesTask(blocks, n, r, p, workers, start, middle),
+                        new MixLanesTask(blocks, n, r, p, workers, middle, end));
+                return;
+            }
+            byte[] v = new byte[128 * r * n];
+            byte[] xy = new byte[256 * r];
+            for (int i = start; i < p; i += workers)
+                SCrypt.smix(blocks, i * 128 * r, r, n, v, xy);
+        }
+    }
+
     /**
      * Password based encryption using AES - CBC 256 bits.
      */
@@ -14,6 +14,9 @@
 
 package org.bitcoinj.crypto;
 
+import org.bitcoin.NativeSecp256k1;
+import org.bitcoin.NativeSecp256k1Util;
+import org.bitcoin.Secp256k1Context;
 import org.bitcoinj.core.ECKey;
 import org.bouncycastle.math.ec.ECCurve;
 import org.bouncycastle.math.ec.ECFieldElement;
@@ -57,10 +60,22 @@ public class LazyECPoint {
 
     public ECPoint get() {
         if (point == null)
-            point = curve.decodePoint(bits);
+            point = decode();
         return point;
     }
 
+    private ECPoint decode() {
+        // Decompressing takes a square root, which libsecp256k1 does much faster when it is loaded.
+        if (compressed && Secp256k1Context.isEnabled() && curve == ECKey.CURVE.getCurve() && bits.length == 33) {
+            try {
+                return curve.decodePoint(NativeSecp256k1.parsePubkey(bits));
+            } catch (NativeSecp256k1Util.AssertFailException e) {
+                // Not a valid point, let Bouncy Castle throw its usual exception.
+            }
+        }
+        return curve.decodePoint(bits);
+    }
+
     public byte[] getEncoded() {
         if (bits != null)
             return Arrays.copyOf(bits, bits.length);
@@ -23,12 +23,8 @@
 
 package org.bitcoinj.crypto;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
+import org.bouncycastle.crypto.macs.HMac;
 
-import java.io.ByteArrayOutputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 
 /**
@@ -40,75 +36,48 @@ import java.nio.charset.StandardCharsets;
  *
  * <p>http://cryptofreek.org/2012/11/29/pbkdf2-pure-java-implementation/<br>
  * Modified to use SHA-512 - Ken Sedgwick ken@bonsai.com</p>
+ *
+ * <p>The HMAC is keyed once per derivation, which hashes the inner and outer pads of the password a single time, and
+ * every round then works on the same buffers.</p>
  */
 public class PBKDF2SHA512 {
-    public static byte[] derive(String P, String S, int c, int dkLen) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        try {
-            int hLen = 20;
+    // the length of an HMAC-SHA512 output
+    private static final int H_LEN = 64;
 
-            if (dkLen > ((Math.pow(2, 32)) - 1) * hLen) {
-                throw new IllegalArgumentException("derived key too long");
-            } else {
-                int l = (int) Math.ceil((double) dkLen / (double) hLen);
-                // int r = dkLen - (l-1)*hLen;
-
-                for (int i = 1; i <= l; i++) {
-                    byte[] T = F(P, S, c, i);
-                    baos.write(T);
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    public static byte[] derive(String P, String S, int c, int dkLen) {
+        if (dkLen > ((Math.pow(2, 32)) - 1) * H_LEN)
+            throw new IllegalArgumentException("derived key too long");
+
+        HMac mac = HDUtils.createHmacSha512Digest(P.getBytes(StandardCharsets.UTF_8));
+        byte[] salt = S.getBytes(StandardCharsets.UTF_8);
+        byte[] u = new byte[H_LEN];
+        byte[] t = new byte[H_LEN];
+
+        byte[] derived = new byte[dkLen];
+        int l = (dkLen + H_LEN - 1) / H_LEN;
+        for (int i = 1; i <= l; i++) {
+            F(mac, salt, c, i, u, t);
+            int offset = (i - 1) * H_LEN;
+            System.arraycopy(t, 0, derived, offset, Math.min(H_LEN, dkLen - offset));
         }
-
-        byte[] baDerived = new byte[dkLen];
-        System.arraycopy(baos.toByteArray(), 0, baDerived, 0, baDerived.length);
-
-        return baDerived;
+        return derived;
     }
 
-    private static byte[] F(String P, String S, int c, int i) throws Exception {
-        byte[] U_LAST = null;
-        byte[] U_XOR = null;
-
-        SecretKeySpec key = new SecretKeySpec(P.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-        Mac mac = Mac.getInstance(key.getAlgorithm());
-        mac.init(key);
-
-        for (int j = 0; j < c; j++) {
-            if (j == 0) {
-                byte[] baS = S.getBytes(StandardCharsets.UTF_8);
-                byte[] baI = INT(i);
-                byte[] baU = new byte[baS.length + baI.length];
-
-                System.arraycopy(baS, 0, baU, 0, baS.length);
-                System.arraycopy(baI, 0, baU, baS.length, baI.length);
-
-                U_XOR = mac.doFinal(baU);
-                U_LAST = U_XOR;
-                mac.reset();
-            } else {
-                byte[] baU = mac.doFinal(U_LAST);
-                mac.reset();
-
-                for (int k = 0; k < U_XOR.length; k++) {
-                    U_XOR[k] = (byte) (U_XOR[k] ^ baU[k]);
-                }
-
-                U_LAST = baU;
-            }
+    // computes block i into t, using u for the intermediate values
+    private static void F(HMac mac, byte[] salt, int c, int i, byte[] u, byte[] t) {
+        mac.update(salt, 0, salt.length);
+        mac.update((byte) (i >>> 24));
+        mac.update((byte) (i >>> 16));
+        mac.update((byte) (i >>> 8));
+        mac.update((byte) i);
+        mac.doFinal(u, 0);
+        System.arraycopy(u, 0, t, 0, H_LEN);
+
+        for (int j = 1; j < c; j++) {
+            mac.update(u, 0, H_LEN);
+            mac.doFinal(u, 0);
+            for (int k = 0; k < H_LEN; k++)
+                t[k] ^= u[k];
         }
-
-        return U_XOR;
-    }
-
-    private static byte[] INT(int i) {
-        ByteBuffer bb = ByteBuffer.allocate(4);
-        bb.order(ByteOrder.BIG_ENDIAN);
-        bb.putInt(i);
-
-        return bb.array();
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.crypto;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.Sha256Hash;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * <p>A bounded cache of ECDSA signatures that were found to be valid, so that a transaction that is verified when it
+ * is first seen and again when its block is connected only pays for the elliptic curve math once. The
+ * {@link org.bitcoinj.script.Script} interpreter consults the {@link #getDefault() default} cache for OP_CHECKSIG and
+ * OP_CHECKMULTISIG.</p>
+ *
+ * <p>An entry is the salted hash of the signature hash, the public key and the signature, so only valid signatures
+ * are remembered and an entry cannot be matched by a different signature. This class is thread safe.</p>
+ */
+public class SignatureCache {
+    public static final int DEFAULT_MAX_SIZE = 100000;
+
+    private static volatile SignatureCache defaultCache = new SignatureCache(DEFAULT_MAX_SIZE);
+
+    private final Cache<Sha256Hash, Boolean> entries;
+    private final byte[] salt = new byte[32];
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SignatureCache(int maxSize) {
+        checkArgument(maxSize >= 0);
+        entries = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /** Returns the cache that is used by the script interpreter. */
+    public static SignatureCache getDefault() {
+        return defaultCache;
+    }
+
+    /** Replaces the cache that is used by the script interpreter, a maximum size of 0 disables caching. */
+    public static void setDefault(SignatureCache cache) {
+        defaultCache = cache;
+    }
+
+    /**
+     * Verifies the signature of the hash with the public key, unless the same signature was verified before.
+     *
+     * @see ECKey#verify(byte[], ECKey.ECDSASignature, byte[])
+     */
+    public boolean verify(Sha256Hash sigHash, ECKey.ECDSASignature signature, byte[] pubKey) {
+        Sha256Hash key = entryOf(sigHash, signature, pubKey);
+        if (entries.getIfPresent(key) != null) {
+            hits.incrementAndGet();
+            return true;
+        }
+        misses.incrementAndGet();
+        boolean valid = ECKey.verify(sigHash.getBytes(), signature, pubKey);
+        // signatures are not checked at all with fake signatures, so do not remember them
+        if (valid && !ECKey.FAKE_SIGNATURES)
+            entries.put(key, Boolean.TRUE);
+        return valid;
+    }
+
+    private Sha256Hash entryOf(Sha256Hash sigHash, ECKey.ECDSASignature signature, byte[] pubKey) {
+        MessageDigest digest = Sha256Hash.newDigest();
+        digest.update(salt);
+        digest.update(sigHash.getBytes());
+        digest.update(pubKey);
+        digest.update(signature.encodeToDER());
+        return Sha256Hash.wrap(digest.digest());
+    }
+
+    /** Returns the number of signatures that were found in the cache. */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /** Returns the number of signatures that had to be verified. */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /** Returns the share of signatures that were found in the cache, or 0 if none were looked up. */
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /** Returns the number of signatures in the cache. */
+    public long size() {
+        return entries.size();
+    }
+
+    /** Removes all signatures and resets the counters. */
+    public void clear() {
+        entries.invalidateAll();
+        hits.set(0);
+        misses.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SignatureCache(%d signatures, %d hits, %d misses)", size(), getHits(), getMisses());
+    }
+}
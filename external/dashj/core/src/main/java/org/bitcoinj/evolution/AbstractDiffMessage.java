@@ -20,6 +20,7 @@ package org.bitcoinj.evolution;
 import org.bitcoinj.core.Context;
 import org.bitcoinj.core.Message;
 import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.ProtocolException;
 import org.bitcoinj.core.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,17 +29,31 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
  * Base class for all masternode/quorum list difference messages
  *
  * Used by {@link AbstractQuorumState}
+ *
+ * Difference messages can be parsed from a stream, which keeps only a window of the serialized message in memory
+ * rather than all of it. The entries, quorums and nested messages are read from the window one at a time with
+ * {@link #readMessage(MessageReader)} and {@link #readMasternodeListDiff()}.
  */
 
 public abstract class AbstractDiffMessage extends Message {
     private static final Logger log = LoggerFactory.getLogger(AbstractDiffMessage.class);
 
+    // the size of the window that is read before each entry, larger entries make the window grow
+    static final int WINDOW_SIZE = 256 * 1024;
+    private static final int ENTRY_SIZE = 16 * 1024;
+
+    // set while this message is parsed from a stream
+    private PayloadWindow window;
+    // the value of window.shifted that cursor and offset refer to
+    private long windowShifted;
+
     public AbstractDiffMessage(NetworkParameters params) {
         super(params);
     }
@@ -47,6 +62,168 @@ public abstract class AbstractDiffMessage extends Message {
         super(params, payload, offset, protocolVersion);
     }
 
+    /**
+     * Parses the message from the stream. The stream is read as far as the end of the message, but may be read
+     * further than that.
+     */
+    public AbstractDiffMessage(NetworkParameters params, InputStream stream, int protocolVersion) throws ProtocolException {
+        this(params, new PayloadWindow(stream, WINDOW_SIZE), protocolVersion);
+    }
+
+    AbstractDiffMessage(NetworkParameters params, PayloadWindow window, int protocolVersion) throws ProtocolException {
+        super(params);
+        this.protocolVersion = protocolVersion;
+        this.window = window;
+        windowShifted = window.shifted;
+        payload = window.buffer;
+        cursor = offset = window.position;
+
+        parse();
+
+        // the buffer may hold stale bytes after the end of a truncated stream
+        if (cursor > window.limit)
+            throw new ProtocolException("unexpected end of " + getShortName());
+        window.position = cursor;
+        this.window = null;
+        payload = null;
+    }
+
+    /** Reads a part of a difference message, such as an entry or a commitment. */
+    protected interface MessageReader<T extends Message> {
+        T read(byte[] payload, int offset) throws ProtocolException;
+    }
+
+    protected <T extends Message> T readMessage(MessageReader<T> reader) throws ProtocolException {
+        if (window == null) {
+            T message = reader.read(payload, cursor);
+            cursor += message.getMessageSize();
+            return message;
+        }
+
+        int required = ENTRY_SIZE;
+        while (true) {
+            require(required);
+            try {
+                T message = reader.read(payload, cursor);
+                // reading past the end of the buffer fails, so the message is complete unless the stream ended
+                if (cursor + message.getMessageSize() <= window.limit) {
+                    cursor += message.getMessageSize();
+                    return message;
+                }
+            } catch (ProtocolException | IndexOutOfBoundsException x) {
+                if (window.endOfStream)
+                    throw x instanceof ProtocolException ? (ProtocolException) x : new ProtocolException(x);
+            }
+            if (window.endOfStream)
+                throw new ProtocolException("unexpected end of " + getShortName());
+            // the message is larger than the window
+            required = (window.limit - cursor) * 2;
+        }
+    }
+
+    protected SimplifiedMasternodeListDiff readMasternodeListDiff() throws ProtocolException {
+        if (window == null) {
+            return readMessage((bytes, start) -> new SimplifiedMasternodeListDiff(params, bytes, start, protocolVersion));
+        }
+        window.position = cursor;
+        SimplifiedMasternodeListDiff mnlistdiff = new SimplifiedMasternodeListDiff(params, window, protocolVersion);
+        follow();
+        return mnlistdiff;
+    }
+
+    // makes sure that count bytes can be read unless the stream ends first
+    private void require(int count) throws ProtocolException {
+        if (window == null)
+            return;
+        window.position = cursor;
+        try {
+            window.require(count);
+        } catch (IOException x) {
+            throw new ProtocolException(x);
+        }
+        follow();
+    }
+
+    // moves the cursor and the offset along with the bytes that the window dropped
+    private void follow() {
+        offset -= window.shifted - windowShifted;
+        windowShifted = window.shifted;
+        cursor = window.position;
+        payload = window.buffer;
+    }
+
+    @Override
+    protected int readUint16() throws ProtocolException {
+        require(2);
+        return super.readUint16();
+    }
+
+    @Override
+    protected long readUint32() throws ProtocolException {
+        require(4);
+        return super.readUint32();
+    }
+
+    @Override
+    protected long readInt64() throws ProtocolException {
+        require(8);
+        return super.readInt64();
+    }
+
+    @Override
+    protected long readVarInt(int offset) throws ProtocolException {
+        require(offset + 9);
+        return super.readVarInt(offset);
+    }
+
+    @Override
+    protected byte[] readBytes(int length) throws ProtocolException {
+        if (length <= MAX_SIZE)
+            require(length);
+        return super.readBytes(length);
+    }
+
+    /** The part of a stream that was read but not parsed yet. */
+    static class PayloadWindow {
+        private final InputStream stream;
+        byte[] buffer;
+        // the next byte to parse
+        int position;
+        // the end of the bytes that were read
+        int limit;
+        // the number of bytes that were dropped from the start of the buffer
+        long shifted;
+        boolean endOfStream;
+
+        PayloadWindow(InputStream stream, int size) {
+            this.stream = stream;
+            this.buffer = new byte[size];
+        }
+
+        void require(int count) throws IOException {
+            if (limit - position >= count || endOfStream)
+                return;
+            if (position + count > buffer.length) {
+                // drop the bytes that were parsed and grow the buffer if that is not enough
+                byte[] target = count > buffer.length ? new byte[Math.max(count, buffer.length * 2)] : buffer;
+                System.arraycopy(buffer, position, target, 0, limit - position);
+                buffer = target;
+                shifted += position;
+                limit -= position;
+                position = 0;
+            }
+            // keep the buffer full, so that parsing past the end of the stream is the only way to read stale bytes
+            while (limit < buffer.length) {
+                int read = stream.read(buffer, limit, buffer.length - limit);
+                if (read < 0) {
+                    endOfStream = true;
+                    break;
+                }
+                limit += read;
+            }
+        }
+    }
+
     protected abstract String getShortName();
 
     public void dump(long startHeight, long endHeight) {
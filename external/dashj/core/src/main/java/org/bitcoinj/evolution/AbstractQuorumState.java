@@ -753,7 +753,8 @@ public abstract class AbstractQuorumState<Request extends AbstractQuorumRequest,
         return bootstrapFilePath == null && bootstrapStream == null;
     }
 
-    abstract DiffMessage loadDiffMessageFromBuffer(byte [] buffer, int protocolVersion);
+    // parses the message from the stream without reading all of it into memory first
+    abstract DiffMessage loadDiffMessageFromStream(InputStream stream, int protocolVersion);
 
     public void setLoadingBootstrap() {
         isLoadingBootstrap = true;
@@ -780,17 +781,9 @@ public abstract class AbstractQuorumState<Request extends AbstractQuorumRequest,
             else if (bootstrapFilePath != null) {
                 stream = Files.newInputStream(Paths.get(bootstrapFilePath));
             }
-            byte[] buffer = null;
-
-            if (stream != null) {
-                buffer = new byte[(int) stream.available()];
-                //noinspection ResultOfMethodCallIgnored
-                stream.read(buffer);
-            }
-
             isLoadingBootstrap = true;
-            if (buffer != null) {
-                DiffMessage mnlistdiff = loadDiffMessageFromBuffer(buffer, protocolVersion);
+            if (stream != null) {
+                DiffMessage mnlistdiff = loadDiffMessageFromStream(stream, protocolVersion);
                 if (mnlistdiff instanceof SimplifiedMasternodeListDiff) {
                     stateManager.processDiffMessage(null, (SimplifiedMasternodeListDiff) mnlistdiff, true);
                 } else if (mnlistdiff instanceof QuorumRotationInfo) {
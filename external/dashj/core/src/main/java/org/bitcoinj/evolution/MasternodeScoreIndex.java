@@ -0,0 +1,145 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.evolution;
+
+import org.bitcoinj.core.Sha256Hash;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+import static java.lang.Math.min;
+
+/**
+ * <p>The masternodes of a {@link SimplifiedMasternodeList} ranked by their score for a modifier, which is
+ * <code>sha256(confirmedHashWithProRegTxHash, modifier)</code>, highest score first. Only confirmed masternodes are
+ * ranked, because that keeps anyone from grinding a ProRegTx hash to get into a future quorum.</p>
+ *
+ * <p>Each score is computed once and kept as four longs that compare like {@link Sha256Hash#compareTo}, so sorting
+ * compares primitives rather than hashing or allocating. Instances are immutable and are cached by
+ * {@link SimplifiedMasternodeList#getScoreIndex(Sha256Hash, boolean)}.</p>
+ */
+public class MasternodeScoreIndex {
+    private static final int WORDS = Sha256Hash.LENGTH / 8;
+
+    private final Sha256Hash modifier;
+    // by rank, highest score first
+    private final SimplifiedMasternodeListEntry[] ranked;
+    // rank of each masternode by proTxHash, built when it is first needed
+    private volatile HashMap<Sha256Hash, Integer> ranks;
+
+    private MasternodeScoreIndex(Sha256Hash modifier, SimplifiedMasternodeListEntry[] ranked) {
+        this.modifier = modifier;
+        this.ranked = ranked;
+    }
+
+    static MasternodeScoreIndex build(List<SimplifiedMasternodeListEntry> validMns, Sha256Hash modifier, boolean hpmnOnly) {
+        ArrayList<SimplifiedMasternodeListEntry> entries = new ArrayList<>(validMns.size());
+        for (SimplifiedMasternodeListEntry mn : validMns) {
+            if (mn.getConfirmedHash().isZero())
+                continue;
+            if (hpmnOnly && mn.type != MasternodeType.HIGHPERFORMANCE.index)
+                continue;
+            entries.add(mn);
+        }
+
+        // calculate sha256(sha256(proTxHash, confirmedHash), modifier) per MN
+        // Please note that this is not a double-sha256 but a single-sha256
+        // The first part is already precalculated (confirmedHashWithProRegTxHash)
+        final long[] scores = new long[entries.size() * WORDS];
+        MessageDigest digest = Sha256Hash.newDigest();
+        byte[] modifierBytes = modifier.getReversedBytes();
+        for (int i = 0; i < entries.size(); i++) {
+            digest.update(entries.get(i).getConfirmedHashWithProRegTxHash().getReversedBytes());
+            digest.update(modifierBytes);
+            packScore(digest.digest(), scores, i * WORDS);
+        }
+
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        // descending by score, the sort is stable so ties keep the order of the list
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareScores(scores, b * WORDS, a * WORDS);
+            }
+        });
+
+        SimplifiedMasternodeListEntry[] ranked = new SimplifiedMasternodeListEntry[order.length];
+        for (int i = 0; i < order.length; i++)
+            ranked[i] = entries.get(order[i]);
+        return new MasternodeScoreIndex(modifier, ranked);
+    }
+
+    // Sha256Hash.compareTo compares from the last byte to the first as unsigned values. The words hold the bytes in
+    // that order with the sign bit flipped, so that comparing them as signed longs gives the same result.
+    private static void packScore(byte[] hash, long[] scores, int offset) {
+        for (int word = 0; word < WORDS; word++) {
+            long value = 0;
+            for (int i = 0; i < 8; i++)
+                value = (value << 8) | (hash[Sha256Hash.LENGTH - 1 - word * 8 - i] & 0xff);
+            scores[offset + word] = value ^ Long.MIN_VALUE;
+        }
+    }
+
+    private static int compareScores(long[] scores, int offsetA, int offsetB) {
+        for (int word = 0; word < WORDS; word++) {
+            int result = Long.compare(scores[offsetA + word], scores[offsetB + word]);
+            if (result != 0)
+                return result;
+        }
+        return 0;
+    }
+
+    public Sha256Hash getModifier() {
+        return modifier;
+    }
+
+    /** Returns the number of ranked masternodes. */
+    public int size() {
+        return ranked.length;
+    }
+
+    /** Returns the masternode with the given rank, starting at 0 for the highest score. */
+    public SimplifiedMasternodeListEntry get(int index) {
+        return ranked[index];
+    }
+
+    /** Returns the rank of the given masternode starting at 1 for the highest score, or -1 if it is not ranked. */
+    public int getRank(Sha256Hash proTxHash) {
+        HashMap<Sha256Hash, Integer> ranks = this.ranks;
+        if (ranks == null) {
+            ranks = new HashMap<>(ranked.length * 2);
+            for (int i = 0; i < ranked.length; i++)
+                ranks.put(ranked[i].getProTxHash(), i + 1);
+            this.ranks = ranks;
+        }
+        Integer rank = ranks.get(proTxHash);
+        return rank != null ? rank : -1;
+    }
+
+    /** Returns up to <code>maxSize</code> masternodes with the highest scores, highest first. */
+    public ArrayList<Masternode> getTop(int maxSize) {
+        int size = min(ranked.length, maxSize);
+        ArrayList<Masternode> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            result.add(ranked[i]);
+        return result;
+    }
+}
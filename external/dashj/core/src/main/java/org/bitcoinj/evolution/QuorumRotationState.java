@@ -40,6 +40,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -87,15 +88,28 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
 
     LinkedHashMap<Sha256Hash, SimplifiedMasternodeList> mnListsCache;
     LinkedHashMap<Sha256Hash, SimplifiedQuorumList> quorumsCache;
-    LinkedHashMap<Sha256Hash, QuorumSnapshot> quorumSnapshotCache = new LinkedHashMap<>();
-
-    private ReentrantLock memberLock = Threading.lock("memberLock");
+    // assigned by init() or parse(), a field initializer would run after parse() and replace what it read
+    LinkedHashMap<Sha256Hash, QuorumSnapshot> quorumSnapshotCache;
+
+    /** Number of DKG cycles per quorum type whose members are kept in memory and saved with this state. */
+    static final int MAX_CACHED_CYCLES = 4;
+    private static final int MAX_SORTED_LISTS = 8;
+
+    /*
+     * Quorum members are cached by quorum hash, and by the hash of the cycle quorum base block for all quorum indexes
+     * of a cycle, since the hashes of the later quorums of a cycle are not known yet when it is computed. The cycles
+     * are saved with this state, so that InstantSend locks can be verified right after a restart. Like
+     * quorumSnapshotCache, both maps are assigned by init() or parse().
+     */
+    private final ReentrantLock memberLock = Threading.lock("memberLock");
+    @GuardedBy("memberLock")
+    HashMap<LLMQParameters.LLMQType, LinkedHashMap<Sha256Hash, ArrayList<Masternode>>> mapQuorumMembers;
     @GuardedBy("memberLock")
-    HashMap<LLMQParameters.LLMQType, HashMap<Sha256Hash, ArrayList<Masternode>>> mapQuorumMembers = new HashMap<>();
+    HashMap<LLMQParameters.LLMQType, LinkedHashMap<Sha256Hash, ArrayList<ArrayList<Masternode>>>> mapCycleQuorumMembers;
 
-    private ReentrantLock indexedMemberLock = Threading.lock("indexedMemberLock");
-    @GuardedBy("indexedMemberLock")
-    HashMap<LLMQParameters.LLMQType, HashMap<Pair<Sha256Hash, Integer>, ArrayList<Masternode>>> mapIndexedQuorumMembers = new HashMap<>();
+    // masternode lists sorted by score, keyed by list block hash and modifier, see getSortedByScore
+    @GuardedBy("lock")
+    private final LinkedHashMap<Pair<Sha256Hash, Sha256Hash>, ArrayList<Masternode>> sortedMnsCache = newLruMap(MAX_SORTED_LISTS);
 
     public QuorumRotationState(Context context) {
         super(context);
@@ -123,6 +137,15 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
         // add genesis block quorums
         quorumsCache = new LinkedHashMap<>(10);
         quorumsCache.put(quorumListAtH.getBlockHash(), quorumListAtH);
+        quorumSnapshotCache = new LinkedHashMap<>();
+
+        memberLock.lock();
+        try {
+            mapQuorumMembers = new HashMap<>();
+            mapCycleQuorumMembers = new HashMap<>();
+        } finally {
+            memberLock.unlock();
+        }
 
         quorumSnapshotAtHMinusC = new QuorumSnapshot(0);
         quorumSnapshotAtHMinus2C = new QuorumSnapshot(0);
@@ -148,8 +171,8 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
     }
 
     @Override
-    QuorumRotationInfo loadDiffMessageFromBuffer(byte[] buffer, int protocolVersion) {
-        return new QuorumRotationInfo(params, buffer, protocolVersion);
+    QuorumRotationInfo loadDiffMessageFromStream(InputStream stream, int protocolVersion) {
+        return new QuorumRotationInfo(params, stream, protocolVersion);
     }
 
     public QuorumRotationState(Context context, byte[] payload, int offset, int protocolVersion) {
@@ -482,23 +505,12 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
     public ArrayList<Masternode> getAllQuorumMembers(LLMQParameters.LLMQType llmqType, Sha256Hash blockHash) {
         lock.lock();
         try {
-            ArrayList<Masternode> quorumMembers;
-            if (mapQuorumMembers.isEmpty()) {
-                initQuorumsCache(mapQuorumMembers);
-            }
-            HashMap<Sha256Hash, ArrayList<Masternode>> mapByType = mapQuorumMembers.get(llmqType);
-            if (mapByType != null) {
-                quorumMembers = mapByType.get(blockHash);
-                if (quorumMembers != null)
-                    return quorumMembers;
-            }
+            ArrayList<Masternode> quorumMembers = getCachedQuorumMembers(llmqType, blockHash);
+            if (quorumMembers != null)
+                return quorumMembers;
 
             StoredBlock quorumBaseBlock = blockChain.getBlock(blockHash);
 
-            if (mapIndexedQuorumMembers.isEmpty()) {
-                initIndexedQuorumsCache(mapIndexedQuorumMembers);
-            }
-
             /*
              * Quorums created with rotation are now created in a different way. All signingActiveQuorumCount are created during the period of dkgInterval.
              * But they are not created exactly in the same block, they are spread overtime: one quorum in each block until all signingActiveQuorumCount are created.
@@ -511,34 +523,21 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
             int quorumIndex = quorumBaseBlock.getHeight() % LLMQParameters.fromType(llmqType).getDkgInterval();
             int cycleQuorumBaseHeight = quorumBaseBlock.getHeight() - quorumIndex;
             StoredBlock cycleQuorumBaseBlock = blockChain.getBlock(cycleQuorumBaseHeight);
+            Sha256Hash cycleQuorumBaseBlockHash = cycleQuorumBaseBlock.getHeader().getHash();
 
             /*
              * Since mapQuorumMembers stores Quorum members per block hash, and we don't know yet the block hashes of blocks for all quorumIndexes (since these blocks are not created yet)
-             * We store them in a second cache mapIndexedQuorumMembers which stores them by {CycleQuorumBaseBlockHash, quorumIndex}
+             * We store them in a second cache mapCycleQuorumMembers which stores them by CycleQuorumBaseBlockHash and quorumIndex
              */
 
-            HashMap<Pair<Sha256Hash, Integer>, ArrayList<Masternode>> mapByTypeIndexed = mapIndexedQuorumMembers.get(llmqType);
-            if (mapByType != null) {
-                quorumMembers = mapByTypeIndexed.get(new Pair<>(cycleQuorumBaseBlock.getHeader().getHash(), quorumIndex));
-                if (quorumMembers != null) {
-                    mapQuorumMembers.get(llmqType).put(quorumBaseBlock.getHeader().getHash(), quorumMembers);
-                    /*
-                     * We also need to store which quorum block hash corresponds to which quorumIndex
-                     */
-                    //quorumManager.setQuorumIndexQuorumHash(llmqType, quorumBaseBlock.getHeader().getHash(), quorumIndex);
-                    return quorumMembers;
-                }
-            }
-
-            ArrayList<ArrayList<Masternode>> q = computeQuorumMembersByQuarterRotation(llmqType, cycleQuorumBaseBlock);
-            for (int i = 0; i < q.size(); ++i) {
-                mapIndexedQuorumMembers.get(llmqType).put(new Pair<>(cycleQuorumBaseBlock.getHeader().getHash(), i), q.get(i));
+            ArrayList<ArrayList<Masternode>> cycleMembers = getCachedCycleMembers(llmqType, cycleQuorumBaseBlockHash);
+            if (cycleMembers == null) {
+                cycleMembers = computeQuorumMembersByQuarterRotation(llmqType, cycleQuorumBaseBlock);
+                putCycleMembers(llmqType, cycleQuorumBaseBlockHash, cycleMembers);
             }
 
-            quorumMembers = q.get(quorumIndex);
-
-            mapQuorumMembers.get(llmqType).put(quorumBaseBlock.getHeader().getHash(), quorumMembers);
-
+            quorumMembers = cycleMembers.get(quorumIndex);
+            putQuorumMembers(llmqType, blockHash, quorumMembers);
             return quorumMembers;
 
         } catch (BlockStoreException x) {
@@ -555,6 +554,87 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
         }
     }
 
+    @Nullable
+    private ArrayList<Masternode> getCachedQuorumMembers(LLMQParameters.LLMQType llmqType, Sha256Hash quorumHash) {
+        memberLock.lock();
+        try {
+            LinkedHashMap<Sha256Hash, ArrayList<Masternode>> mapByType = mapQuorumMembers.get(llmqType);
+            return mapByType != null ? mapByType.get(quorumHash) : null;
+        } finally {
+            memberLock.unlock();
+        }
+    }
+
+    private void putQuorumMembers(LLMQParameters.LLMQType llmqType, Sha256Hash quorumHash, ArrayList<Masternode> members) {
+        memberLock.lock();
+        try {
+            LinkedHashMap<Sha256Hash, ArrayList<Masternode>> mapByType = mapQuorumMembers.get(llmqType);
+            if (mapByType == null) {
+                mapByType = newLruMap(MAX_CACHED_CYCLES * LLMQParameters.fromType(llmqType).getSigningActiveQuorumCount());
+                mapQuorumMembers.put(llmqType, mapByType);
+            }
+            mapByType.put(quorumHash, members);
+        } finally {
+            memberLock.unlock();
+        }
+    }
+
+    @Nullable
+    private ArrayList<ArrayList<Masternode>> getCachedCycleMembers(LLMQParameters.LLMQType llmqType, Sha256Hash cycleQuorumBaseBlockHash) {
+        memberLock.lock();
+        try {
+            LinkedHashMap<Sha256Hash, ArrayList<ArrayList<Masternode>>> mapByType = mapCycleQuorumMembers.get(llmqType);
+            return mapByType != null ? mapByType.get(cycleQuorumBaseBlockHash) : null;
+        } finally {
+            memberLock.unlock();
+        }
+    }
+
+    private void putCycleMembers(LLMQParameters.LLMQType llmqType, Sha256Hash cycleQuorumBaseBlockHash, ArrayList<ArrayList<Masternode>> members) {
+        memberLock.lock();
+        try {
+            getCycleMembersByType(llmqType).put(cycleQuorumBaseBlockHash, members);
+        } finally {
+            memberLock.unlock();
+        }
+    }
+
+    // the caller holds memberLock, or is parse()
+    private LinkedHashMap<Sha256Hash, ArrayList<ArrayList<Masternode>>> getCycleMembersByType(LLMQParameters.LLMQType llmqType) {
+        LinkedHashMap<Sha256Hash, ArrayList<ArrayList<Masternode>>> mapByType = mapCycleQuorumMembers.get(llmqType);
+        if (mapByType == null) {
+            mapByType = newLruMap(MAX_CACHED_CYCLES);
+            mapCycleQuorumMembers.put(llmqType, mapByType);
+        }
+        return mapByType;
+    }
+
+    // a map in access order that drops the least recently used entries beyond maxSize
+    private static <K, V> LinkedHashMap<K, V> newLruMap(final int maxSize) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the valid masternodes of the list sorted by their score for the modifier, like
+     * {@link SimplifiedMasternodeList#calculateQuorum(int, Sha256Hash)}. Computing the members of a cycle sorts the
+     * same lists with the same modifiers several times, so the result is kept. The result must not be modified.
+     */
+    @GuardedBy("lock")
+    private ArrayList<Masternode> getSortedByScore(SimplifiedMasternodeList mnList, Sha256Hash modifier) {
+        Pair<Sha256Hash, Sha256Hash> key = new Pair<>(mnList.getBlockHash(), modifier);
+        ArrayList<Masternode> sorted = sortedMnsCache.get(key);
+        if (sorted == null) {
+            sorted = mnList.calculateQuorum(mnList.getValidMNsCount(), modifier);
+            sortedMnsCache.put(key, sorted);
+        }
+        return sorted;
+    }
+
     private ArrayList<ArrayList<Masternode>> computeQuorumMembersByQuarterRotation(LLMQParameters.LLMQType llmqType, StoredBlock quorumBaseBlock) throws BlockStoreException {
         final LLMQParameters llmqParameters = LLMQParameters.fromType(llmqType);
 
@@ -687,7 +767,6 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
             return quarterQuorumMembers;
 
         SimplifiedMasternodeList MnsUsedAtH = new SimplifiedMasternodeList(params);
-        SimplifiedMasternodeList MnsNotUsedAtH = new SimplifiedMasternodeList(params);
         ArrayList<SimplifiedMasternodeList> MnsUsedAtHIndex = Lists.newArrayListWithCapacity(llmqParameters.getSigningActiveQuorumCount());
 
         boolean skipRemovedMNs = params.isV19Active(cycleQuorumBaseBlock) || params.getId().equals(NetworkParameters.ID_TESTNET);
@@ -720,20 +799,20 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
             }
         }
 
-        allMns.forEachMN(true, mn -> {
-            if (mn.isValid() && !MnsUsedAtH.containsMN(mn.getProTxHash())) {
-                MnsNotUsedAtH.addMN(mn);
+        // filtering the sorted list of all masternodes keeps the order by score
+        ArrayList<Masternode> sortedMnsNotUsedAtH = Lists.newArrayList();
+        for (Masternode mn : getSortedByScore(allMns, modifier)) {
+            if (!MnsUsedAtH.containsMN(mn.getProTxHash())) {
+                sortedMnsNotUsedAtH.add(mn);
             }
-        });
+        }
 
         if (context.isDebugMode()) {
             log.info("modifier: {}", modifier);
             printList(MnsUsedAtH, "MnsUsedAtH");
-            printList(MnsNotUsedAtH, "MnsNotUsedAtH");
         }
         ArrayList<Masternode> sortedMnsUsedAtH = MnsUsedAtH.calculateQuorum(MnsUsedAtH.getAllMNsCount(), modifier);
         if (context.isDebugMode()) printList(sortedMnsUsedAtH, "sortedMnsUsedAtH");
-        ArrayList<Masternode> sortedMnsNotUsedAtH = MnsNotUsedAtH.calculateQuorum(MnsNotUsedAtH.getAllMNsCount(), modifier);
         if (context.isDebugMode()) printList(sortedMnsNotUsedAtH, "sortedMnsNotUsedAtH");
         ArrayList<Masternode> sortedCombinedMnsList = new ArrayList<>(sortedMnsNotUsedAtH);
         sortedCombinedMnsList.addAll(sortedMnsUsedAtH);
@@ -897,22 +976,10 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
                 quarterQuorumMembers.add(Lists.newArrayList());
             }
 
-            Sha256Hash modifier = getHashModifier(llmqParameters, cycleQuorumBaseBlock);
-
-            Pair<SimplifiedMasternodeList, SimplifiedMasternodeList> result = getMNUsageBySnapshot(llmqParameters, cycleQuorumBaseBlock, snapshot, height);
-            SimplifiedMasternodeList mnsUsedAtH = result.getFirst();
-            SimplifiedMasternodeList mnsNotUsedAtH = result.getSecond();
-            ArrayList<Masternode> sortedMnsUsedAtH = mnsUsedAtH.calculateQuorum(mnsUsedAtH.getAllMNsCount(), modifier);
-            ArrayList<Masternode> sortedMnsNotUsedAtH = mnsNotUsedAtH.calculateQuorum(mnsNotUsedAtH.getAllMNsCount(), modifier);
+            Pair<ArrayList<Masternode>, ArrayList<Masternode>> result = getMNUsageBySnapshot(llmqParameters, cycleQuorumBaseBlock, snapshot, height);
+            ArrayList<Masternode> sortedMnsUsedAtH = result.getFirst();
+            ArrayList<Masternode> sortedMnsNotUsedAtH = result.getSecond();
             ArrayList<Masternode> sortedCombinedMnsList = new ArrayList<>(sortedMnsNotUsedAtH);
-
-            for (Masternode m1 : sortedMnsUsedAtH) {
-                for (Masternode m2 : sortedMnsNotUsedAtH) {
-                    if (m1.equals(m2)) {
-                        log.info("{} is in both lists", m1);
-                    }
-                }
-            }
             sortedCombinedMnsList.addAll(sortedMnsUsedAtH);
 
             //Mode 0: No skipping
@@ -970,12 +1037,16 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
         }*/
     }
 
-    Pair<SimplifiedMasternodeList, SimplifiedMasternodeList> getMNUsageBySnapshot(LLMQParameters llmqParameters,
-                                                                                  StoredBlock cycleQuorumBaseBlock,
-                                                                                  QuorumSnapshot snapshot,
-                                                                                  int height) {
-            SimplifiedMasternodeList usedMNs = new SimplifiedMasternodeList(params);
-            SimplifiedMasternodeList nonUsedMNs = new SimplifiedMasternodeList(params);
+    /**
+     * Splits the masternodes at the cycle into the ones used and not used by the snapshot. Both lists are in the order
+     * by score, so they need not be sorted again.
+     */
+    Pair<ArrayList<Masternode>, ArrayList<Masternode>> getMNUsageBySnapshot(LLMQParameters llmqParameters,
+                                                                            StoredBlock cycleQuorumBaseBlock,
+                                                                            QuorumSnapshot snapshot,
+                                                                            int height) {
+            ArrayList<Masternode> usedMNs = Lists.newArrayList();
+            ArrayList<Masternode> nonUsedMNs = Lists.newArrayList();
 
             //final BlockStore store = headerStore != null && headerStore.getChainHead().getHeight() > blockStore.getChainHead().getHeight() ? headerStore : blockStore;
             final StoredBlock workBlock = blockChain.getBlockAncestor(cycleQuorumBaseBlock, cycleQuorumBaseBlock.getHeight() - 8);
@@ -986,32 +1057,20 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
                 throw new NullPointerException(String.format("missing masternode list for height: %d / -8:%d", cycleQuorumBaseBlock.getHeight(), workBlock.getHeight()));
             }
 
-            ArrayList<Masternode> list = allMns.calculateQuorum(allMns.getValidMNsCount(), modifier);
+            ArrayList<Masternode> list = getSortedByScore(allMns, modifier);
             AtomicInteger i = new AtomicInteger();
 
             for (Masternode mn : list) {
                 if (snapshot.getActiveQuorumMembers().get(i.get())) {
-                    usedMNs.addMN((SimplifiedMasternodeListEntry) mn);
+                    usedMNs.add(mn);
                 } else {
-                    nonUsedMNs.addMN((SimplifiedMasternodeListEntry) mn);
+                    nonUsedMNs.add(mn);
                 }
                 i.getAndIncrement();
             }
             return new Pair<>(usedMNs, nonUsedMNs);
     }
 
-    void initIndexedQuorumsCache(HashMap<LLMQParameters.LLMQType, HashMap<Pair<Sha256Hash, Integer>, ArrayList<Masternode>>> cache) {
-        for (Map.Entry<LLMQParameters.LLMQType, LLMQParameters> llmq : params.getLlmqs().entrySet()) {
-            cache.put(llmq.getKey(), new HashMap<>(llmq.getValue().getSigningActiveQuorumCount() + 1));
-        }
-    }
-
-    void initQuorumsCache(HashMap<LLMQParameters.LLMQType, HashMap<Sha256Hash, ArrayList<Masternode>>> cache) {
-        for (Map.Entry<LLMQParameters.LLMQType, LLMQParameters> llmq : params.getLlmqs().entrySet()) {
-            cache.put(llmq.getKey(), new HashMap<>(llmq.getValue().getSigningActiveQuorumCount() + 1));
-        }
-    }
-
     public SimplifiedMasternodeList getListForBlock(Sha256Hash blockHash) {
         return mnListsCache.get(blockHash);
     }
@@ -1083,9 +1142,90 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
             activeQuorumLists.put((int)activeQuorum.getHeight(), activeQuorum);
         }
         log.info("after loading, activeQuorumLists has {} lists", activeQuorumLists.size());
+
+        mapQuorumMembers = new HashMap<>();
+        mapCycleQuorumMembers = new HashMap<>();
+        // older files end before the quorum members
+        if (cursor < payload.length)
+            parseQuorumMembers();
         length = cursor - offset;
     }
 
+    // The masternode entries are saved once, with their own protocol version, and the members refer to them by index
+    private void parseQuorumMembers() {
+        int entryProtocolVersion = (int) readUint32();
+        int size = (int) readVarInt();
+        ArrayList<SimplifiedMasternodeListEntry> entries = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; ++i) {
+            SimplifiedMasternodeListEntry entry = new SimplifiedMasternodeListEntry(params, payload, cursor, entryProtocolVersion);
+            cursor += entry.getMessageSize();
+            entries.add(entry);
+        }
+        int cycleCount = (int) readVarInt();
+        for (int i = 0; i < cycleCount; ++i) {
+            LLMQParameters.LLMQType type = LLMQParameters.LLMQType.fromValue(readBytes(1)[0]);
+            Sha256Hash cycleQuorumBaseBlockHash = readHash();
+            int quorumCount = (int) readVarInt();
+            ArrayList<ArrayList<Masternode>> cycleMembers = Lists.newArrayListWithCapacity(quorumCount);
+            for (int j = 0; j < quorumCount; ++j) {
+                int memberCount = (int) readVarInt();
+                ArrayList<Masternode> members = Lists.newArrayListWithCapacity(memberCount);
+                for (int k = 0; k < memberCount; ++k) {
+                    members.add(entries.get((int) readVarInt()));
+                }
+                cycleMembers.add(members);
+            }
+            getCycleMembersByType(type).put(cycleQuorumBaseBlockHash, cycleMembers);
+        }
+        log.info("after loading, the members of {} quorum cycles are known", cycleCount);
+    }
+
+    private void serializeQuorumMembers(OutputStream stream) throws IOException {
+        memberLock.lock();
+        try {
+            IdentityHashMap<Masternode, Integer> entryIndexes = new IdentityHashMap<>();
+            ArrayList<SimplifiedMasternodeListEntry> entries = Lists.newArrayList();
+            int cycleCount = 0;
+            for (LinkedHashMap<Sha256Hash, ArrayList<ArrayList<Masternode>>> mapByType : mapCycleQuorumMembers.values()) {
+                cycleCount += mapByType.size();
+                for (ArrayList<ArrayList<Masternode>> cycleMembers : mapByType.values()) {
+                    for (ArrayList<Masternode> members : cycleMembers) {
+                        for (Masternode mn : members) {
+                            if (!entryIndexes.containsKey(mn)) {
+                                entryIndexes.put(mn, entries.size());
+                                entries.add((SimplifiedMasternodeListEntry) mn);
+                            }
+                        }
+                    }
+                }
+            }
+
+            int entryProtocolVersion = params.getProtocolVersionNum(NetworkParameters.ProtocolVersion.CURRENT);
+            Utils.uint32ToByteStreamLE(entryProtocolVersion, stream);
+            stream.write(new VarInt(entries.size()).encode());
+            for (SimplifiedMasternodeListEntry entry : entries) {
+                entry.setProtocolVersion(entryProtocolVersion);
+                entry.bitcoinSerializeToStream(stream);
+            }
+            stream.write(new VarInt(cycleCount).encode());
+            for (Map.Entry<LLMQParameters.LLMQType, LinkedHashMap<Sha256Hash, ArrayList<ArrayList<Masternode>>>> mapByType : mapCycleQuorumMembers.entrySet()) {
+                for (Map.Entry<Sha256Hash, ArrayList<ArrayList<Masternode>>> cycle : mapByType.getValue().entrySet()) {
+                    stream.write(mapByType.getKey().getValue());
+                    stream.write(cycle.getKey().getReversedBytes());
+                    stream.write(new VarInt(cycle.getValue().size()).encode());
+                    for (ArrayList<Masternode> members : cycle.getValue()) {
+                        stream.write(new VarInt(members.size()).encode());
+                        for (Masternode mn : members) {
+                            stream.write(new VarInt(entryIndexes.get(mn)).encode());
+                        }
+                    }
+                }
+            }
+        } finally {
+            memberLock.unlock();
+        }
+    }
+
     @Override
     protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
         mnListTip.bitcoinSerialize(stream);
@@ -1136,6 +1276,8 @@ public class QuorumRotationState extends AbstractQuorumState<GetQuorumRotationIn
         for (SimplifiedQuorumList listToSave : listsToSave) {
             listToSave.bitcoinSerialize(stream);
         }
+
+        serializeQuorumMembers(stream);
     }
 
     public SimplifiedMasternodeList getMnListAtH() {
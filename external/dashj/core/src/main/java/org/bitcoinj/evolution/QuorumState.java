@@ -37,6 +37,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -98,8 +99,8 @@ public class QuorumState extends AbstractQuorumState<GetSimplifiedMasternodeList
     }
 
     @Override
-    SimplifiedMasternodeListDiff loadDiffMessageFromBuffer(byte[] buffer, int protocolVersion) {
-        return new SimplifiedMasternodeListDiff(params, buffer, protocolVersion);
+    SimplifiedMasternodeListDiff loadDiffMessageFromStream(InputStream stream, int protocolVersion) {
+        return new SimplifiedMasternodeListDiff(params, stream, protocolVersion);
     }
 
     @Override
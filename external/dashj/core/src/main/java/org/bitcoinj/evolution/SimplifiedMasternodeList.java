@@ -5,10 +5,12 @@ import com.google.common.collect.Lists;
 import org.bitcoinj.core.*;
 import org.bitcoinj.quorums.LLMQUtils;
 import org.bitcoinj.utils.Pair;
+import org.bitcoinj.utils.PersistentSha256HashMap;
 import org.bitcoinj.utils.Threading;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.math.BigInteger;
@@ -29,17 +31,41 @@ public class SimplifiedMasternodeList extends Message {
     private long height;
     private StoredBlock storedBlock;
     private boolean storedBlockMatchesRequest;
-    HashMap<Sha256Hash, SimplifiedMasternodeListEntry> mnMap;
+    // Shared with the lists this one was derived from and the lists derived from it, see applyDiff. Iteration order
+    // is the order of the leaves of the merkle tree.
+    PersistentSha256HashMap<SimplifiedMasternodeListEntry> mnMap;
+    // The merkle tree, shared with the list this one was derived from and the lists derived from it, so a chain of
+    // lists holds a single tree. Whichever of them calculates its root updates the tree in place for itself. The
+    // others notice by the version and build their own tree the next time they need their root.
+    @Nullable private MerkleTree merkleTree;
+    // The version of merkleTree that merkleDirtyFrom and merkleChangedLeaves are relative to
+    private int merkleTreeVersion;
+    // Leaves from this index on were inserted, removed or moved since the merkle tree was built
+    private int merkleDirtyFrom;
+    // Leaves before merkleDirtyFrom that were replaced since the merkle tree was built
+    private BitSet merkleChangedLeaves;
     @Deprecated
     HashMap<Sha256Hash, Pair<Sha256Hash, Integer>> mnUniquePropertyMap = new HashMap<>();
 
     private CoinbaseTx coinbaseTxPayload;
 
+    // score indexes by modifier and hpmnOnly, they are valid for the entries in scoreIndexMnMap
+    private static final int MAX_SCORE_INDEXES = 8;
+    private final LinkedHashMap<Pair<Sha256Hash, Boolean>, MasternodeScoreIndex> scoreIndexes =
+            new LinkedHashMap<Pair<Sha256Hash, Boolean>, MasternodeScoreIndex>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Pair<Sha256Hash, Boolean>, MasternodeScoreIndex> eldest) {
+                    return size() > MAX_SCORE_INDEXES;
+                }
+            };
+    private PersistentSha256HashMap<SimplifiedMasternodeListEntry> scoreIndexMnMap;
+
     public SimplifiedMasternodeList(NetworkParameters params) {
         super(params);
         blockHash = params.getGenesisBlock().getHash();
         height = -1;
-        mnMap = new HashMap<Sha256Hash, SimplifiedMasternodeListEntry>(5000);
+        mnMap = PersistentSha256HashMap.empty();
+        resetMerkleTree();
         storedBlock = new StoredBlock(params.getGenesisBlock(), BigInteger.ZERO, 0);
         initProtocolVersion();
     }
@@ -57,7 +83,16 @@ public class SimplifiedMasternodeList extends Message {
         this.version = version;
         this.blockHash = other.blockHash;
         this.height = other.height;
-        mnMap = new HashMap<Sha256Hash, SimplifiedMasternodeListEntry>(other.mnMap);
+        other.lock.lock();
+        try {
+            mnMap = other.mnMap;
+            merkleTree = other.merkleTree;
+            merkleTreeVersion = other.merkleTreeVersion;
+            merkleDirtyFrom = other.merkleDirtyFrom;
+            merkleChangedLeaves = (BitSet) other.merkleChangedLeaves.clone();
+        } finally {
+            other.lock.unlock();
+        }
         this.storedBlock = other.storedBlock;
         initProtocolVersion();
     }
@@ -68,7 +103,8 @@ public class SimplifiedMasternodeList extends Message {
         this.version = SimplifiedMasternodeListDiff.CURRENT_VERSION;
         this.blockHash = params.getGenesisBlock().getHash();
         this.height = -1;
-        mnMap = new HashMap<Sha256Hash, SimplifiedMasternodeListEntry>(entries.size());
+        mnMap = PersistentSha256HashMap.empty();
+        resetMerkleTree();
         for(SimplifiedMasternodeListEntry entry : entries)
             addMN(entry);
         storedBlock = new StoredBlock(params.getGenesisBlock(), BigInteger.ZERO, 0);
@@ -85,14 +121,16 @@ public class SimplifiedMasternodeList extends Message {
         blockHash = readHash();
         height = (int)readUint32();
         int size = (int)readVarInt();
-        mnMap = new HashMap<>(size);
+        HashMap<Sha256Hash, SimplifiedMasternodeListEntry> entries = new HashMap<>(size);
         for(int i = 0; i < size; ++i)
         {
             Sha256Hash hash = readHash();
             SimplifiedMasternodeListEntry mn = new SimplifiedMasternodeListEntry(params, payload, cursor, protocolVersion);
             cursor += mn.getMessageSize();
-            mnMap.put(hash, mn);
+            entries.put(hash, mn);
         }
+        mnMap = PersistentSha256HashMap.copyOf(entries);
+        resetMerkleTree();
 
         // read the number of properties, which should be zero
         size = (int)readVarInt();
@@ -119,7 +157,7 @@ public class SimplifiedMasternodeList extends Message {
         Utils.uint32ToByteStreamLE(height, stream);
 
         stream.write(new VarInt(mnMap.size()).encode());
-        for(Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap.entrySet()) {
+        for(Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap) {
             stream.write(entry.getKey().getReversedBytes());
             entry.getValue().setProtocolVersion(protocolVersion);
             entry.getValue().bitcoinSerializeToStream(stream);
@@ -179,7 +217,13 @@ public class SimplifiedMasternodeList extends Message {
     {
         lock.lock();
         try {
-            mnMap.put(dmn.proRegTxHash, dmn);
+            SimplifiedMasternodeListEntry oldDmn = mnMap.get(dmn.proRegTxHash);
+            mnMap = mnMap.plus(dmn.proRegTxHash, dmn);
+            int index = mnMap.indexOf(dmn.proRegTxHash);
+            if (oldDmn == null)
+                merkleDirtyFrom = min(merkleDirtyFrom, index);
+            else if (oldDmn != dmn && index < merkleDirtyFrom)
+                merkleChangedLeaves.set(index);
         } finally {
             lock.unlock();
         }
@@ -190,7 +234,8 @@ public class SimplifiedMasternodeList extends Message {
         try {
             SimplifiedMasternodeListEntry dmn = getMN(proTxHash);
             if (dmn != null) {
-                mnMap.remove(proTxHash);
+                merkleDirtyFrom = min(merkleDirtyFrom, mnMap.indexOf(proTxHash));
+                mnMap = mnMap.minus(proTxHash);
             }
         } finally {
             lock.unlock();
@@ -266,26 +311,10 @@ public class SimplifiedMasternodeList extends Message {
 
         lock.lock();
         try {
-            ArrayList<Sha256Hash> proTxHashes = new ArrayList<Sha256Hash>(mnMap.size());
-            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap.entrySet()) {
-                proTxHashes.add(entry.getValue().proRegTxHash);
-            }
-            Collections.sort(proTxHashes, new Comparator<Sha256Hash>() {
-                @Override
-                public int compare(Sha256Hash o1, Sha256Hash o2) {
-                    return o1.compareTo(o2);
-                }
-            });
-
-            ArrayList<Sha256Hash> smnlHashes = new ArrayList<Sha256Hash>(mnMap.size());
-            for (Sha256Hash hash : proTxHashes) {
-                smnlHashes.add(mnMap.get(hash).getHash());
-            }
-
-            if (smnlHashes.size() == 0)
+            if (mnMap.isEmpty())
                 return true;
 
-            if (!cbtx.getMerkleRootMasternodeList().equals(calculateMerkleRoot(smnlHashes)))
+            if (!cbtx.getMerkleRootMasternodeList().equals(calculateMerkleRoot()))
                 throw new MasternodeListDiffException("MerkleRoot of masternode list does not match coinbaseTx", true, false, false, true);
             return true;
         } finally {
@@ -293,61 +322,56 @@ public class SimplifiedMasternodeList extends Message {
         }
     }
 
+    /**
+     * Returns the merkle root of the hashes of all entries, sorted by proRegTxHash, as committed to by the coinbase
+     * transaction. Only the parts of the tree that changed since the last call are hashed again. The root of an empty
+     * list is zero.
+     */
     public Sha256Hash calculateMerkleRoot() {
         lock.lock();
         try {
-            ArrayList<Sha256Hash> proTxHashes = new ArrayList<Sha256Hash>(mnMap.size());
-            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap.entrySet()) {
-                proTxHashes.add(entry.getValue().proRegTxHash);
-            }
-
-            Collections.sort(proTxHashes, new Comparator<Sha256Hash>() {
-                @Override
-                public int compare(Sha256Hash o1, Sha256Hash o2) {
-                    return o1.compareTo(o2);
-                }
-            });
-            ArrayList<Sha256Hash> smnlHashes = new ArrayList<Sha256Hash>(mnMap.size());
-            for (Sha256Hash hash : proTxHashes) {
-                for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap.entrySet())
-                    if (entry.getValue().proRegTxHash.equals(hash))
-                        smnlHashes.add(entry.getValue().getHash());
-            }
-
-            return calculateMerkleRoot(smnlHashes);
+            if (mnMap.isEmpty())
+                return Sha256Hash.ZERO_HASH;
+            return Sha256Hash.wrapReversed(updateMerkleTree());
         } finally {
             lock.unlock();
         }
     }
 
-    private Sha256Hash calculateMerkleRoot(List<Sha256Hash> hashes) {
-        List<byte[]> tree = buildMerkleTree(hashes);
-        return Sha256Hash.wrap(tree.get(tree.size() - 1));
+    private void resetMerkleTree() {
+        merkleTree = null;
+        merkleTreeVersion = 0;
+        merkleDirtyFrom = 0;
+        merkleChangedLeaves = new BitSet();
     }
 
-    private List<byte[]> buildMerkleTree(List<Sha256Hash> hashes) {
-        // The Merkle root is based on a tree of hashes calculated from the masternode list proRegHash:
-        //
-        //     root
-        //      / \
-        //   A      B
-        //  / \    / \
-        // t1 t2 t3 t4
-        //
-        // The tree is represented as a list: t1,t2,t3,t4,A,B,root where each
-        // entry is a hash.
-        //
-        // The hashing algorithm is double SHA-256. The leaves are a hash of the serialized contents of the transaction.
-        // The interior nodes are hashes of the concenation of the two child hashes.
-        //
-        // This structure allows the creation of proof that a transaction was included into a block without having to
-        // provide the full block contents. Instead, you can provide only a Merkle branch. For example to prove tx2 was
-        // in a block you can just provide tx2, the hash(tx1) and B. Now the other party has everything they need to
-        // derive the root, which can be checked against the block header. These proofs aren't used right now but
-        // will be helpful later when we want to download partial block contents.
-        //
-        // Note that if the number of transactions is not even the last tx is repeated to make it so (see
-        // tx3 above). A tree with 5 transactions would look like this:
+    /** The levels of the merkle tree from the leaves up to the root, 32 bytes per node in internal byte order. */
+    private static final class MerkleTree {
+        byte[][] levels;
+        int version;
+    }
+
+    // Brings the tree up to date with the entries and returns the root.
+    private byte[] updateMerkleTree() {
+        MerkleTree tree = merkleTree;
+        if (tree != null) {
+            synchronized (tree) {
+                if (tree.version == merkleTreeVersion)
+                    return updateMerkleTree(tree);
+            }
+        }
+        // the tree now belongs to another list, or there is none yet
+        resetMerkleTree();
+        tree = new MerkleTree();
+        merkleTree = tree;
+        synchronized (tree) {
+            return updateMerkleTree(tree);
+        }
+    }
+
+    // Called while holding the monitor of the tree
+    private byte[] updateMerkleTree(MerkleTree tree) {
+        // The tree is built like the merkle tree of the transactions in a block, with the entry hashes as leaves:
         //
         //         root
         //        /     \
@@ -356,36 +380,75 @@ public class SimplifiedMasternodeList extends Message {
         //    2     3    4  4
         //  / \   / \   / \
         // t1 t2 t3 t4 t5 t5
-        ArrayList<byte[]> tree = new ArrayList<byte[]>();
-        // Start by adding all the hashes of the transactions as leaves of the tree.
-        for (Sha256Hash hash : hashes) {
-            tree.add(hash.getBytes());
+        //
+        // If a level has an odd number of nodes the last one is paired with itself. Nodes left of the first leaf that
+        // moved keep their position and therefore their hash, unless a leaf below them was replaced.
+        int size = mnMap.size();
+        byte[][] old = tree.levels;
+        if (old != null && old[0].length == size * 32 && merkleDirtyFrom >= size && merkleChangedLeaves.isEmpty())
+            return old[old.length - 1].clone();
+        int dirtyFrom = old != null ? merkleDirtyFrom : 0;
+        BitSet changed = merkleChangedLeaves;
+
+        int levels = 1;
+        for (int levelSize = size; levelSize > 1; levelSize = (levelSize + 1) / 2)
+            levels++;
+        byte[][] updated = new byte[levels][];
+
+        byte[] leaves = copyMerkleTreeLevel(old, 0, size);
+        for (int i = changed.nextSetBit(0); i >= 0 && i < dirtyFrom; i = changed.nextSetBit(i + 1))
+            System.arraycopy(mnMap.valueAt(i).getHash().getReversedBytes(), 0, leaves, i * 32, 32);
+        if (dirtyFrom < size) {
+            Iterator<Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry>> iterator = mnMap.iterator(dirtyFrom);
+            for (int i = dirtyFrom; i < size; i++)
+                System.arraycopy(iterator.next().getValue().getHash().getReversedBytes(), 0, leaves, i * 32, 32);
         }
-        int levelOffset = 0; // Offset in the list where the currently processed level starts.
-        // Step through each level, stopping when we reach the root (levelSize == 1).
-        for (int levelSize = hashes.size(); levelSize > 1; levelSize = (levelSize + 1) / 2) {
-            // For each pair of nodes on that level:
-            for (int left = 0; left < levelSize; left += 2) {
-                // The right hand node can be the same as the left hand, in the case where we don't have enough
-                // transactions.
-                int right = min(left + 1, levelSize - 1);
-                byte[] leftBytes = Utils.reverseBytes(tree.get(levelOffset + left));
-                byte[] rightBytes = Utils.reverseBytes(tree.get(levelOffset + right));
-                tree.add(Utils.reverseBytes(hashTwice(leftBytes, 0, 32, rightBytes, 0, 32)));
+        updated[0] = leaves;
+
+        for (int level = 0, levelSize = size; levelSize > 1; level++, levelSize = (levelSize + 1) / 2) {
+            int parentSize = (levelSize + 1) / 2;
+            int parentDirtyFrom = dirtyFrom / 2;
+            BitSet parentChanged = new BitSet();
+            for (int i = changed.nextSetBit(0); i >= 0 && i < dirtyFrom; i = changed.nextSetBit(i + 1)) {
+                if (i / 2 < parentDirtyFrom)
+                    parentChanged.set(i / 2);
             }
-            // Move to the next level.
-            levelOffset += levelSize;
+            byte[] children = updated[level];
+            byte[] parents = copyMerkleTreeLevel(old, level + 1, parentSize);
+            for (int i = parentChanged.nextSetBit(0); i >= 0; i = parentChanged.nextSetBit(i + 1))
+                hashMerkleTreeNode(children, levelSize, parents, i);
+            for (int i = parentDirtyFrom; i < parentSize; i++)
+                hashMerkleTreeNode(children, levelSize, parents, i);
+            updated[level + 1] = parents;
+            dirtyFrom = parentDirtyFrom;
+            changed = parentChanged;
         }
-        return tree;
+
+        tree.levels = updated;
+        tree.version++;
+        merkleTreeVersion = tree.version;
+        merkleDirtyFrom = Integer.MAX_VALUE;
+        merkleChangedLeaves = new BitSet();
+        return updated[levels - 1].clone();
+    }
+
+    // Returns the given level of the old tree resized to the given number of nodes, or a new level. Levels that keep
+    // their size are updated in place, the lists that shared them rebuild their own tree when they need it.
+    private static byte[] copyMerkleTreeLevel(@Nullable byte[][] tree, int level, int size) {
+        if (tree != null && level < tree.length)
+            return tree[level].length == size * 32 ? tree[level] : Arrays.copyOf(tree[level], size * 32);
+        return new byte[size * 32];
+    }
+
+    private static void hashMerkleTreeNode(byte[] children, int childCount, byte[] parents, int index) {
+        int left = index * 2;
+        int right = min(left + 1, childCount - 1);
+        byte[] hash = hashTwice(children, left * 32, 32, children, right * 32, 32);
+        System.arraycopy(hash, 0, parents, index * 32, 32);
     }
 
     public boolean containsMN(Sha256Hash proTxHash) {
-        for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap.entrySet()) {
-            if (entry.getValue().getProTxHash().equals(proTxHash)) {
-                return true;
-            }
-        }
-        return false;
+        return mnMap.containsKey(proTxHash);
     }
 
     public boolean isValid(Sha256Hash proRegTxHash) {
@@ -409,7 +472,7 @@ public class SimplifiedMasternodeList extends Message {
     public void forEachMN(boolean onlyValid, ForeachMNCallback callback) {
         lock.lock();
         try {
-            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap.entrySet()) {
+            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap) {
                 if (!onlyValid || isMNValid(entry.getValue())) {
                     callback.processMN(entry.getValue());
                 }
@@ -422,12 +485,16 @@ public class SimplifiedMasternodeList extends Message {
     public void forEachMN(boolean onlyValid, ForeachMNCallback callback, Comparator<SimplifiedMasternodeListEntry> comparator) {
         lock.lock();
         try {
-            // TODO: need to sort by comparator
-            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap.entrySet()) {
+            ArrayList<SimplifiedMasternodeListEntry> sorted = new ArrayList<>(mnMap.size());
+            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> entry : mnMap) {
                 if (!onlyValid || isMNValid(entry.getValue())) {
-                    callback.processMN(entry.getValue());
+                    sorted.add(entry.getValue());
                 }
             }
+            Collections.sort(sorted, comparator);
+            for (SimplifiedMasternodeListEntry mn : sorted) {
+                callback.processMN(mn);
+            }
         } finally {
             lock.unlock();
         }
@@ -443,7 +510,7 @@ public class SimplifiedMasternodeList extends Message {
         lock.lock();
         try {
             int count = 0;
-            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> p : mnMap.entrySet()) {
+            for (Map.Entry<Sha256Hash, SimplifiedMasternodeListEntry> p : mnMap) {
                 if (isMNValid(p.getValue())) {
                     count++;
                 }
@@ -458,85 +525,39 @@ public class SimplifiedMasternodeList extends Message {
         return entry.isValid;
     }
 
-    ArrayList<Pair<Sha256Hash, Masternode>> calculateScores(final Sha256Hash modifier, boolean hpmnOnly)
-    {
-        final ArrayList<Pair<Sha256Hash, Masternode>> scores = new ArrayList<Pair<Sha256Hash, Masternode>>(getAllMNsCount());
-
-        forEachMN(true, new ForeachMNCallback() {
-            @Override
-            public void processMN(SimplifiedMasternodeListEntry mn) {
-                if(mn.getConfirmedHash().isZero()) {
-                    // we only take confirmed MNs into account to avoid hash grinding on the ProRegTxHash to sneak MNs into a
-                    // future quorums
-                    return;
-                }
-                if (hpmnOnly) {
-                    if (mn.type != MasternodeType.HIGHPERFORMANCE.index)
-                        return;
-                }
-
-                // calculate sha256(sha256(proTxHash, confirmedHash), modifier) per MN
-                // Please note that this is not a double-sha256 but a single-sha256
-                // The first part is already precalculated (confirmedHashWithProRegTxHash)
-                // TODO When https://github.com/bitcoin/bitcoin/pull/13191 gets backported, implement something that is similar but for single-sha256
-                try {
-                    UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(64);
-                    bos.write(mn.getConfirmedHashWithProRegTxHash().getReversedBytes());
-                    bos.write(modifier.getReversedBytes());
-                    scores.add(new Pair<>(Sha256Hash.of(bos.toByteArray()), mn)); //we don't reverse this, it is not for a wire message
-                } catch (IOException x) {
-                    throw new RuntimeException(x);
-                }
+    /**
+     * Returns the valid masternodes ranked by their score for <code>modifier</code>. The index is cached, so asking
+     * for the rank of every masternode or for several quorums with the same modifier only computes the scores once.
+     */
+    public MasternodeScoreIndex getScoreIndex(Sha256Hash modifier, boolean hpmnOnly) {
+        lock.lock();
+        try {
+            if (scoreIndexMnMap != mnMap) {
+                scoreIndexes.clear();
+                scoreIndexMnMap = mnMap;
             }
-        });
-
-        return scores;
-    }
-
-    static class CompareScoreMN<Object> implements Comparator<Object>
-    {
-        public int compare(Object t1, Object t2) {
-            Pair<Sha256Hash, SimplifiedMasternodeListEntry> p1 = (Pair<Sha256Hash, SimplifiedMasternodeListEntry>)t1;
-            Pair<Sha256Hash, SimplifiedMasternodeListEntry> p2 = (Pair<Sha256Hash, SimplifiedMasternodeListEntry>)t2;
-
-            if(p1.getFirst().compareTo(p2.getFirst()) < 0)
-                return -1;
-            if(p1.getFirst().equals(p2.getFirst()))
-                return 0;
-            else return 1;
+            Pair<Sha256Hash, Boolean> key = new Pair<>(modifier, hpmnOnly);
+            MasternodeScoreIndex index = scoreIndexes.get(key);
+            if (index == null) {
+                final ArrayList<SimplifiedMasternodeListEntry> validMns = new ArrayList<>(getAllMNsCount());
+                forEachMN(true, validMns::add);
+                index = MasternodeScoreIndex.build(validMns, modifier, hpmnOnly);
+                scoreIndexes.put(key, index);
+            }
+            return index;
+        } finally {
+            lock.unlock();
         }
     }
 
     public int getMasternodeRank(Sha256Hash proTxHash, Sha256Hash quorumModifierHash, boolean hpmnOnly)
     {
-        int rank = -1;
         //Added to speed things up
-
         SimplifiedMasternodeListEntry mnExisting = getMN(proTxHash);
         if (mnExisting == null)
             return -1;
 
-        lock.lock();
-        try {
-
-            ArrayList<Pair<Sha256Hash, Masternode>> vecMasternodeScores = calculateScores(quorumModifierHash, hpmnOnly);
-            if (vecMasternodeScores.isEmpty())
-                return -1;
-
-            Collections.sort(vecMasternodeScores, Collections.reverseOrder(new CompareScoreMN()));
-
-
-            rank = 0;
-            for (Pair<Sha256Hash, Masternode> scorePair : vecMasternodeScores) {
-                rank++;
-                if (scorePair.getSecond().getProRegTxHash().equals(proTxHash)) {
-                    return rank;
-                }
-            }
-            return -1;
-        } finally {
-            lock.unlock();
-        }
+        return getScoreIndex(quorumModifierHash, hpmnOnly).getRank(proTxHash);
     }
 
     public long getHeight() {
@@ -557,20 +578,8 @@ public class SimplifiedMasternodeList extends Message {
 
     ArrayList<Masternode> calculateQuorum(int maxSize, Sha256Hash modifier, boolean hpmnOnly)
     {
-        ArrayList<Pair<Sha256Hash, Masternode>> scores = calculateScores(modifier, hpmnOnly);
-
-        // sort is descending order
-        Collections.sort(scores, Collections.reverseOrder(new CompareScoreMN()));
-
-        // take top maxSize entries and return it
-        int size = min(scores.size(), maxSize);
-        ArrayList<Masternode> result = new ArrayList<Masternode>(size);
-        if (scores.size() > 0) {
-            for (int i = 0; i < size; i++) {
-                result.add(scores.get(i).getSecond());
-            }
-        }
-        return result;
+        // take top maxSize entries in descending order of score
+        return getScoreIndex(modifier, hpmnOnly).getTop(maxSize);
     }
 
     public void setBlock(StoredBlock storedblock, boolean storedBlockMatchesRequest) {
@@ -617,6 +626,24 @@ public class SimplifiedMasternodeList extends Message {
     }
 
     public Collection<SimplifiedMasternodeListEntry> getListSortedByModifier(Block dkgBlockHash) {
-        return getSortedList(new CompareMNProTxWithModifier<>(dkgBlockHash.getHash()));
+        // hash every proTxHash once, rather than twice per comparison as CompareMNProTxWithModifier does
+        final Sha256Hash modifier = dkgBlockHash.getHash();
+        final ArrayList<Pair<Sha256Hash, SimplifiedMasternodeListEntry>> keyed = Lists.newArrayList();
+        forEachMN(true, new ForeachMNCallback() {
+            @Override
+            public void processMN(SimplifiedMasternodeListEntry mn) {
+                keyed.add(new Pair<>(LLMQUtils.buildProTxDkgBlockHash(mn.proRegTxHash, modifier), mn));
+            }
+        });
+        Collections.sort(keyed, new Comparator<Pair<Sha256Hash, SimplifiedMasternodeListEntry>>() {
+            @Override
+            public int compare(Pair<Sha256Hash, SimplifiedMasternodeListEntry> p1, Pair<Sha256Hash, SimplifiedMasternodeListEntry> p2) {
+                return p1.getFirst().compareTo(p2.getFirst());
+            }
+        });
+        ArrayList<SimplifiedMasternodeListEntry> list = Lists.newArrayListWithCapacity(keyed.size());
+        for (Pair<Sha256Hash, SimplifiedMasternodeListEntry> pair : keyed)
+            list.add(pair.getSecond());
+        return list;
     }
 }
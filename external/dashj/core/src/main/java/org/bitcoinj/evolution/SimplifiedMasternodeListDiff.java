@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.*;
 
@@ -44,6 +45,14 @@ public class SimplifiedMasternodeListDiff extends AbstractDiffMessage {
         super(params, payload, offset, protocolVersion);
     }
 
+    public SimplifiedMasternodeListDiff(NetworkParameters params, InputStream stream, int protocolVersion) {
+        super(params, stream, protocolVersion);
+    }
+
+    SimplifiedMasternodeListDiff(NetworkParameters params, PayloadWindow window, int protocolVersion) {
+        super(params, window, protocolVersion);
+    }
+
     @Override
     protected String getShortName() {
         return SHORT_NAME;
@@ -75,11 +84,8 @@ public class SimplifiedMasternodeListDiff extends AbstractDiffMessage {
         prevBlockHash = readHash();
         blockHash = readHash();
 
-        cbTxMerkleTree = new PartialMerkleTree(params, payload, cursor);
-        cursor += cbTxMerkleTree.getMessageSize();
-
-        coinBaseTx = new Transaction(params, payload, cursor);
-        cursor += coinBaseTx.getMessageSize();
+        cbTxMerkleTree = readMessage((bytes, start) -> new PartialMerkleTree(params, bytes, start));
+        coinBaseTx = readMessage((bytes, start) -> new Transaction(params, bytes, start));
         if (protocolVersion >= NetworkParameters.ProtocolVersion.BLS_SCHEME.getBitcoinProtocolVersion() &&
             protocolVersion < NetworkParameters.ProtocolVersion.MNLISTDIFF_VERSION_ORDER.getBitcoinProtocolVersion()) {
             version = (short) readUint16();
@@ -96,9 +102,7 @@ public class SimplifiedMasternodeListDiff extends AbstractDiffMessage {
         size = (int)readVarInt();
         mnList = new ArrayList<>(size);
         for (int i = 0; i < size; ++i) {
-            SimplifiedMasternodeListEntry mn = new SimplifiedMasternodeListEntry(params, payload, cursor, protocolVersion);
-            cursor += mn.getMessageSize();
-            mnList.add(mn);
+            mnList.add(readMessage((bytes, start) -> new SimplifiedMasternodeListEntry(params, bytes, start, protocolVersion)));
         }
 
         // process quorum changes
@@ -111,9 +115,7 @@ public class SimplifiedMasternodeListDiff extends AbstractDiffMessage {
         size = (int)readVarInt();
         newQuorums = new ArrayList<>(size);
         for(int i = 0; i < size; ++i) {
-            FinalCommitment commitment = new FinalCommitment(params, payload, cursor);
-            cursor += commitment.getMessageSize();
-            newQuorums.add(commitment);
+            newQuorums.add(readMessage((bytes, start) -> new FinalCommitment(params, bytes, start)));
         }
 
         // process quorum ChainlockSignatures
@@ -121,8 +123,7 @@ public class SimplifiedMasternodeListDiff extends AbstractDiffMessage {
             size = (int)readVarInt();
             quorumsCLSigs = new HashMap<>(size);
             for (int i = 0; i < size; ++i) {
-                BLSSignature signature = new BLSSignature(params, payload, cursor);
-                cursor += signature.getMessageSize();
+                BLSSignature signature = readMessage((bytes, start) -> new BLSSignature(params, bytes, start));
 
                 int setSize = (int)readVarInt();
                 HashSet<Integer> heightSet = new HashSet<>(setSize);
@@ -23,6 +23,18 @@ public class SimplifiedMasternodeListEntry extends Masternode {
     static int MESSAGE_SIZE = 151;
     //In Memory
     Sha256Hash confirmedHashWithProRegTxHash;
+    // the hash and the protocol version it was calculated for, read and written together
+    private volatile ProtocolVersionHash hash;
+
+    private static final class ProtocolVersionHash {
+        final int protocolVersion;
+        final Sha256Hash hash;
+
+        ProtocolVersionHash(int protocolVersion, Sha256Hash hash) {
+            this.protocolVersion = protocolVersion;
+            this.hash = hash;
+        }
+    }
 
     public SimplifiedMasternodeListEntry(NetworkParameters params, short version) {
         super(params);
@@ -149,15 +161,22 @@ public class SimplifiedMasternodeListEntry extends Masternode {
     }
 
     /**
-     * The hash value doesn't include the version
+     * The hash value doesn't include the version. It is calculated once per protocol version, as entries don't change
+     * after they were created.
      * @return
      */
     @Override
     public Sha256Hash getHash() {
+        int protocolVersion = this.protocolVersion;
+        ProtocolVersionHash hash = this.hash;
+        if (hash != null && hash.protocolVersion == protocolVersion)
+            return hash.hash;
         try {
             UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream(getMessageSize());
             serializeWithoutVersionToStream(bos);
-            return Sha256Hash.wrapReversed(Sha256Hash.hashTwice(bos.toByteArray()));
+            hash = new ProtocolVersionHash(protocolVersion, Sha256Hash.wrapReversed(Sha256Hash.hashTwice(bos.toByteArray())));
+            this.hash = hash;
+            return hash.hash;
         } catch (IOException x) {
             throw new RuntimeException(x);
         }
@@ -78,6 +78,21 @@ public class SimplifiedMasternodeListManager extends AbstractManager implements
     public static int MAX_CACHE_SIZE = 10;
     public static int MIN_CACHE_SIZE = 1;
     private ExecutorService threadPool = Executors.newFixedThreadPool(1, new ContextPropagatingThreadFactory("process-qrinfo"));
+    private volatile ExecutorService commitmentVerificationPool = newCommitmentVerificationPool();
+
+    private static ExecutorService newCommitmentVerificationPool() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                new ContextPropagatingThreadFactory("quorum commitment verification"));
+    }
+
+    /**
+     * Returns the pool that checks the signatures of quorum commitments, or null once this manager is closed.
+     */
+    @Nullable
+    public ExecutorService getCommitmentVerificationPool() {
+        ExecutorService pool = commitmentVerificationPool;
+        return pool.isShutdown() ? null : pool;
+    }
 
     public List<Quorum> getAllQuorums(LLMQParameters.LLMQType llmqType) {
         ArrayList<Quorum> list = Lists.newArrayList();
@@ -402,6 +417,9 @@ public class SimplifiedMasternodeListManager extends AbstractManager implements
         if (threadPool.isShutdown()) {
             threadPool = Executors.newFixedThreadPool(1, new ContextPropagatingThreadFactory("process-qrinfo"));
         }
+        if (commitmentVerificationPool.isShutdown()) {
+            commitmentVerificationPool = newCommitmentVerificationPool();
+        }
     }
 
     @Override
@@ -424,6 +442,7 @@ public class SimplifiedMasternodeListManager extends AbstractManager implements
             super.close();
 
         }
+        commitmentVerificationPool.shutdown();
     }
 
     @Override
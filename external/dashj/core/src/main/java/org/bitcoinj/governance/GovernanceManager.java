@@ -951,7 +951,7 @@ public class GovernanceManager extends AbstractManager {
                         context.masternodeMetaDataManager.removeGovernanceObject(pObj.getHash());
 
                         // Remove vote references
-                        final LinkedList<CacheItem<Sha256Hash, GovernanceObject>> listItems = mapVoteToObject.getItemList();
+                        final Collection<CacheItem<Sha256Hash, GovernanceObject>> listItems = mapVoteToObject.getItemList();
                         Iterator<CacheItem<Sha256Hash, GovernanceObject>> lit = listItems.iterator();
                         while (lit.hasNext()) {
                             CacheItem<Sha256Hash, GovernanceObject> item = lit.next();
@@ -1087,7 +1087,7 @@ public class GovernanceManager extends AbstractManager {
 
         lock.lock();
         try {
-            final LinkedList<CacheItem<Sha256Hash, Pair<GovernanceVote, Long>>> items = mapOrphanVotes.getItemList();
+            final Collection<CacheItem<Sha256Hash, Pair<GovernanceVote, Long>>> items = mapOrphanVotes.getItemList();
 
             long nNow = Utils.currentTimeSeconds();
 
@@ -1097,7 +1097,7 @@ public class GovernanceManager extends AbstractManager {
 
                 final Pair<GovernanceVote, Long> pairVote = item.value;
                 if (pairVote.getSecond() < nNow) {
-                    mapOrphanVotes.erase(item.key, item.value);
+                    it.remove();
                 }
             }
         } finally {
@@ -1126,10 +1126,10 @@ public class GovernanceManager extends AbstractManager {
 
                 if (pObj != null) {
                     filter = new BloomFilter(params.getGovernanceFilterElements(), GOVERNANCE_FILTER_FP_RATE, new Random().nextInt(999999), BloomFilter.BloomUpdate.UPDATE_ALL);
-                    ArrayList<GovernanceVote> vecVotes = pObj.getVoteFile().getVotes();
-                    nVoteCount = vecVotes.size();
-                    for (int i = 0; i < vecVotes.size(); ++i) {
-                        filter.insert(vecVotes.get(i).getHash().getReversedBytes());
+                    ArrayList<Sha256Hash> vecVoteHashes = pObj.getVoteFile().getVoteHashes();
+                    nVoteCount = vecVoteHashes.size();
+                    for (int i = 0; i < vecVoteHashes.size(); ++i) {
+                        filter.insert(vecVoteHashes.get(i).getReversedBytes());
                     }
                 }
             } finally {
@@ -8,136 +8,335 @@ import java.util.*;
 
 /**
  * Represents the collection of votes associated with a given CGovernanceObject
- * Recently received votes are held in memory until a maximum size is reached after
- * which older votes a flushed to a disk file.
  *
- * Note: This is a stub implementation that doesn't limit the number of votes held
- * in memory and doesn't flush to disk.
+ * The votes are kept in columns of primitive arrays rather than as {@link GovernanceVote} objects: the masternode
+ * outpoint and the parent hash as an index into a table of the distinct values, the signal, the outcome and the
+ * time. The hashes and the signatures are packed into one array each. A {@link GovernanceVote} is only created
+ * when a vote is requested, such as to relay or to verify it again.
+ *
+ * The serialized form is the number of votes followed by the votes, most recently added first.
  */
 public class GovernanceObjectVoteFile extends Message {
 
-	private static final int MAX_MEMORY_VOTES = -1;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final int HASH_LENGTH = Sha256Hash.LENGTH;
+	private static final int OUTPOINT_LENGTH = 36;
+	// the outpoint, parent hash, outcome, signal, time and an empty signature
+	private static final int MIN_VOTE_LENGTH = OUTPOINT_LENGTH + HASH_LENGTH + 4 + 4 + 8 + 1;
+	// the expected size of a signature, which is used to size the signature array
+	private static final int SIGNATURE_LENGTH = 96;
 
+	// the number of votes, which are stored from the oldest to the most recent
 	private int nMemoryVotes;
 
-	private LinkedList<GovernanceVote> listVotes;
+	// the distinct masternode outpoints and parent hashes of the votes
+	private ArrayList<TransactionOutPoint> outpoints;
+	private HashMap<TransactionOutPoint, Integer> outpointIndex;
+	private ArrayList<Sha256Hash> parentHashes;
+	private HashMap<Sha256Hash, Integer> parentHashIndex;
+
+	private int[] voteOutpoints;
+	private int[] voteParentHashes;
+	private byte[] voteSignals;
+	private byte[] voteOutcomes;
+	private long[] voteTimes;
+	// the vote hashes, HASH_LENGTH bytes each
+	private byte[] voteHashes;
+	// the signatures, where the signature of vote i is in [signatureOffsets[i], signatureOffsets[i + 1])
+	private byte[] signatures;
+	private int[] signatureOffsets;
 
-	private HashMap<Sha256Hash, GovernanceVote> mapVoteIndex;
+	// open addressing table of vote hashes, each slot holds the position of a vote plus one or zero when empty
+	private int[] hashTable;
 
 	public GovernanceObjectVoteFile() {
-		this.nMemoryVotes = 0;
-		this.listVotes =  new LinkedList<GovernanceVote>();
-		this.mapVoteIndex = new HashMap<Sha256Hash, GovernanceVote>();
+		init(INITIAL_CAPACITY);
 	}
 
 	public GovernanceObjectVoteFile(GovernanceObjectVoteFile other) {
-		this.nMemoryVotes = other.nMemoryVotes;
-		this.listVotes = other.listVotes;
-		this.mapVoteIndex = new HashMap<Sha256Hash, GovernanceVote>();
-		rebuildIndex();
+		init(Math.max(other.nMemoryVotes, INITIAL_CAPACITY));
+		for (int i = 0; i < other.nMemoryVotes; ++i) {
+			other.copyVoteTo(i, this);
+		}
 	}
 
 	public GovernanceObjectVoteFile(NetworkParameters params, byte [] payload, int offset) {
 		super(params, payload, offset);
-		rebuildIndex();
+	}
+
+	private void init(int capacity) {
+		nMemoryVotes = 0;
+		outpoints = new ArrayList<TransactionOutPoint>();
+		outpointIndex = new HashMap<TransactionOutPoint, Integer>();
+		parentHashes = new ArrayList<Sha256Hash>();
+		parentHashIndex = new HashMap<Sha256Hash, Integer>();
+		voteOutpoints = new int[capacity];
+		voteParentHashes = new int[capacity];
+		voteSignals = new byte[capacity];
+		voteOutcomes = new byte[capacity];
+		voteTimes = new long[capacity];
+		voteHashes = new byte[capacity * HASH_LENGTH];
+		signatures = new byte[capacity * SIGNATURE_LENGTH];
+		signatureOffsets = new int[capacity + 1];
+		hashTable = new int[tableSize(capacity)];
+	}
+
+	private static int tableSize(int capacity) {
+		return Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) * 2;
 	}
 
 	/**
 	 * Add a vote to the file
 	 */
 	public void addVote(GovernanceVote vote) {
-		listVotes.addFirst(vote);
-		mapVoteIndex.put(vote.getHash(), vote);
+		byte[] signature = vote.getSignature() != null ? vote.getSignature().getBytes() : new byte[0];
+		add(vote.getMasternodeOutpoint(), vote.getParentHash(), vote.getSignalValue(), vote.getOutcomeValue(),
+				vote.getTimestamp(), vote.getHash(), signature, 0, signature.length);
+	}
+
+	private void add(TransactionOutPoint outpoint, Sha256Hash parentHash, int signal, int outcome, long time,
+					 Sha256Hash hash, byte[] signature, int signatureOffset, int signatureLength) {
+		if (signal < 0 || signal > 0xff || outcome < 0 || outcome > 0xff)
+			throw new IllegalArgumentException("unsupported vote signal or outcome: " + signal + ", " + outcome);
+		ensureCapacity(nMemoryVotes + 1, signatureOffsets[nMemoryVotes] + signatureLength);
+		int position = nMemoryVotes;
+		voteOutpoints[position] = indexOf(outpoint, outpoints, outpointIndex);
+		voteParentHashes[position] = indexOf(parentHash, parentHashes, parentHashIndex);
+		voteSignals[position] = (byte) signal;
+		voteOutcomes[position] = (byte) outcome;
+		voteTimes[position] = time;
+		System.arraycopy(hash.getBytes(), 0, voteHashes, position * HASH_LENGTH, HASH_LENGTH);
+		System.arraycopy(signature, signatureOffset, signatures, signatureOffsets[position], signatureLength);
+		signatureOffsets[position + 1] = signatureOffsets[position] + signatureLength;
 		++nMemoryVotes;
+		insertHash(position);
+	}
+
+	private static <T> int indexOf(T value, ArrayList<T> values, HashMap<T, Integer> index) {
+		Integer i = index.get(value);
+		if (i == null) {
+			i = values.size();
+			values.add(value);
+			index.put(value, i);
+		}
+		return i;
+	}
+
+	private void ensureCapacity(int count, int signatureBytes) {
+		if (count > voteTimes.length) {
+			int capacity = Math.max(count, voteTimes.length * 2);
+			voteOutpoints = Arrays.copyOf(voteOutpoints, capacity);
+			voteParentHashes = Arrays.copyOf(voteParentHashes, capacity);
+			voteSignals = Arrays.copyOf(voteSignals, capacity);
+			voteOutcomes = Arrays.copyOf(voteOutcomes, capacity);
+			voteTimes = Arrays.copyOf(voteTimes, capacity);
+			voteHashes = Arrays.copyOf(voteHashes, capacity * HASH_LENGTH);
+			signatureOffsets = Arrays.copyOf(signatureOffsets, capacity + 1);
+		}
+		if (signatureBytes > signatures.length) {
+			signatures = Arrays.copyOf(signatures, Math.max(signatureBytes, signatures.length * 2));
+		}
+		if (count * 2 > hashTable.length) {
+			hashTable = new int[tableSize(count)];
+			for (int i = 0; i < nMemoryVotes; ++i) {
+				insertHash(i);
+			}
+		}
+	}
+
+	// the hashes are uniformly distributed, so their first bytes make a good hash code
+	private int slotOf(byte[] hash, int offset) {
+		int code = (hash[offset] & 0xff) | (hash[offset + 1] & 0xff) << 8 | (hash[offset + 2] & 0xff) << 16 | (hash[offset + 3] & 0xff) << 24;
+		return code & (hashTable.length - 1);
+	}
+
+	private void insertHash(int position) {
+		int slot = slotOf(voteHashes, position * HASH_LENGTH);
+		while (hashTable[slot] != 0) {
+			slot = (slot + 1) & (hashTable.length - 1);
+		}
+		hashTable[slot] = position + 1;
+	}
+
+	// returns the position of the vote with this hash or -1
+	private int find(Sha256Hash nHash) {
+		byte[] hash = nHash.getBytes();
+		int slot = slotOf(hash, 0);
+		while (hashTable[slot] != 0) {
+			int position = hashTable[slot] - 1;
+			if (equalsHash(position, hash)) {
+				return position;
+			}
+			slot = (slot + 1) & (hashTable.length - 1);
+		}
+		return -1;
+	}
+
+	private boolean equalsHash(int position, byte[] hash) {
+		int offset = position * HASH_LENGTH;
+		for (int i = 0; i < HASH_LENGTH; ++i) {
+			if (voteHashes[offset + i] != hash[i]) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	/**
 	 * Return true if the vote with this hash is currently cached in memory
 	 */
-//C++ TO JAVA CONVERTER WARNING: 'const' methods are not available in Java:
-//ORIGINAL LINE: boolean HasVote(const Sha256Hash& nHash) const;
 	public boolean hasVote(Sha256Hash nHash) {
-		GovernanceVote it = mapVoteIndex.get(nHash);
-		if (it == null) {
-			return false;
-		}
-		return true;
+		return find(nHash) != -1;
 	}
 
 	/**
 	 * Retrieve a vote cached in memory
 	 */
 	public GovernanceVote getVote(Sha256Hash nHash) {
-		GovernanceVote it = mapVoteIndex.get(nHash);
-		if (it == null) {
+		int position = find(nHash);
+		if (position == -1) {
 			return null;
 		}
-		return it;  //TODO:  This may return a bad result or next will advance the iterator to something else.
+		return createVote(position);
+	}
+
+	private Sha256Hash getHash(int position) {
+		return Sha256Hash.wrap(Arrays.copyOfRange(voteHashes, position * HASH_LENGTH, (position + 1) * HASH_LENGTH));
+	}
+
+	private GovernanceVote createVote(int position) {
+		MasternodeSignature signature = new MasternodeSignature(
+				Arrays.copyOfRange(signatures, signatureOffsets[position], signatureOffsets[position + 1]));
+		TransactionOutPoint outpoint = outpoints.get(voteOutpoints[position]);
+		return new GovernanceVote(outpoint.getParams(), outpoint, parentHashes.get(voteParentHashes[position]),
+				voteSignals[position] & 0xff, voteOutcomes[position] & 0xff, voteTimes[position], signature, getHash(position));
+	}
+
+	private void copyVoteTo(int position, GovernanceObjectVoteFile target) {
+		target.add(outpoints.get(voteOutpoints[position]), parentHashes.get(voteParentHashes[position]),
+				voteSignals[position] & 0xff, voteOutcomes[position] & 0xff, voteTimes[position], getHash(position),
+				signatures, signatureOffsets[position], signatureOffsets[position + 1] - signatureOffsets[position]);
 	}
 
 	public final int getVoteCount() {
 		return nMemoryVotes;
 	}
 
+	/**
+	 * Returns the votes, most recently added first. Each vote is created by this call.
+	 */
 	public ArrayList<GovernanceVote> getVotes() {
-		ArrayList<GovernanceVote> vecResult = new ArrayList<GovernanceVote>();
-		for (GovernanceVote vote : listVotes) {
-			vecResult.add(vote);
+		ArrayList<GovernanceVote> vecResult = new ArrayList<GovernanceVote>(nMemoryVotes);
+		for (int i = nMemoryVotes - 1; i >= 0; --i) {
+			vecResult.add(createVote(i));
+		}
+		return vecResult;
+	}
+
+	/**
+	 * Returns the hashes of the votes, most recently added first, without creating the votes.
+	 */
+	public ArrayList<Sha256Hash> getVoteHashes() {
+		ArrayList<Sha256Hash> vecResult = new ArrayList<Sha256Hash>(nMemoryVotes);
+		for (int i = nMemoryVotes - 1; i >= 0; --i) {
+			vecResult.add(getHash(i));
 		}
 		return vecResult;
 	}
 
 	public void removeVotesFromMasternode(TransactionOutPoint outpointMasternode) {
-		Iterator<GovernanceVote> it = listVotes.iterator();
-		while (it.hasNext()) {
-			GovernanceVote vote = it.next();
-			if (vote.getMasternodeOutpoint().equals(outpointMasternode)) {
-				--nMemoryVotes;
-				mapVoteIndex.remove(vote.getHash());
-				it.remove();
+		Integer index = outpointIndex.get(outpointMasternode);
+		if (index == null) {
+			return;
+		}
+		// move the remaining votes down, keeping their order
+		int count = 0;
+		int signatureEnd = 0;
+		for (int i = 0; i < nMemoryVotes; ++i) {
+			if (voteOutpoints[i] == index) {
+				continue;
 			}
+			int signatureStart = signatureOffsets[i];
+			int signatureLength = signatureOffsets[i + 1] - signatureStart;
+			voteOutpoints[count] = voteOutpoints[i];
+			voteParentHashes[count] = voteParentHashes[i];
+			voteSignals[count] = voteSignals[i];
+			voteOutcomes[count] = voteOutcomes[i];
+			voteTimes[count] = voteTimes[i];
+			System.arraycopy(voteHashes, i * HASH_LENGTH, voteHashes, count * HASH_LENGTH, HASH_LENGTH);
+			System.arraycopy(signatures, signatureStart, signatures, signatureEnd, signatureLength);
+			signatureOffsets[count] = signatureEnd;
+			signatureEnd += signatureLength;
+			++count;
 		}
+		signatureOffsets[count] = signatureEnd;
+		nMemoryVotes = count;
+		rebuildIndex();
 	}
 
 	public void rebuildIndex() {
-		mapVoteIndex.clear();
-		nMemoryVotes = 0;
-		ListIterator<GovernanceVote> it = listVotes.listIterator();
-		while (it.hasNext()) {
-			GovernanceVote vote = it.next();
-			Sha256Hash nHash = vote.getHash();
-			if (mapVoteIndex.get(nHash) == null) {
-				mapVoteIndex.put(nHash, vote);
-				++nMemoryVotes;
-			} else {
-				it.remove();  //TODO:  this looks like a bug
-			}
+		Arrays.fill(hashTable, 0);
+		for (int i = 0; i < nMemoryVotes; ++i) {
+			insertHash(i);
 		}
 	}
 
 	@Override
 	protected void parse() throws ProtocolException {
-		nMemoryVotes = (int)readUint32();
-		int size = (int)readVarInt();
-		listVotes = new LinkedList<GovernanceVote>();
-		for(int i = 0; i < size; ++i) {
-			GovernanceVote vote = new GovernanceVote(params, payload, cursor);
-			cursor += vote.getMessageSize();
+		readUint32(); // the number of votes
+		long size = readVarInt();
+		if (size < 0 || size > (payload.length - cursor) / MIN_VOTE_LENGTH)
+			throw new ProtocolException("Too many governance votes: " + size);
+		// the votes are stored most recent first, so find where each starts and then add them from the oldest
+		int[] starts = new int[(int) size];
+		for (int i = 0; i < size; ++i) {
+			starts[i] = cursor;
+			cursor += OUTPOINT_LENGTH + HASH_LENGTH + 4 + 4 + 8;
+			int signatureLength = (int)readVarInt();
+			cursor += signatureLength;
+			if (signatureLength < 0 || cursor > payload.length)
+				throw new ProtocolException("Governance vote signature is too long: " + signatureLength);
 		}
+		int end = cursor;
 
+		init(Math.max((int) size, INITIAL_CAPACITY));
+		for (int i = (int) size - 1; i >= 0; --i) {
+			cursor = starts[i];
+			TransactionOutPoint outpoint = new TransactionOutPoint(params, payload, cursor);
+			cursor += outpoint.getMessageSize();
+			Sha256Hash parentHash = readHash();
+			int outcome = (int)readUint32();
+			int signal = (int)readUint32();
+			long time = readInt64();
+			int signatureLength = (int)readVarInt();
+			Sha256Hash hash = GovernanceVote.calculateHash(params, outpoint, parentHash, signal, outcome, time);
+			if (find(hash) != -1) {
+				continue;
+			}
+			try {
+				add(outpoint, parentHash, signal, outcome, time, hash, payload, cursor, signatureLength);
+			} catch (IllegalArgumentException x) {
+				throw new ProtocolException(x);
+			}
+		}
+		cursor = end;
 		length = cursor - offset;
-		mapVoteIndex = new HashMap<Sha256Hash, GovernanceVote>();
-		rebuildIndex();
 	}
 
 	@Override
 	protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
 		Utils.uint32ToByteStreamLE(nMemoryVotes, stream);
-		stream.write(new VarInt(listVotes.size()).encode());
-		for(GovernanceVote vote: listVotes) {
-			vote.bitcoinSerialize(stream);
+		stream.write(new VarInt(nMemoryVotes).encode());
+		for (int i = nMemoryVotes - 1; i >= 0; --i) {
+			outpoints.get(voteOutpoints[i]).bitcoinSerialize(stream);
+			stream.write(parentHashes.get(voteParentHashes[i]).getReversedBytes());
+			Utils.uint32ToByteStreamLE(voteOutcomes[i] & 0xff, stream);
+			Utils.uint32ToByteStreamLE(voteSignals[i] & 0xff, stream);
+			Utils.int64ToByteStreamLE(voteTimes[i], stream);
+			int signatureLength = signatureOffsets[i + 1] - signatureOffsets[i];
+			stream.write(new VarInt(signatureLength).encode());
+			stream.write(signatures, signatureOffsets[i], signatureLength);
 		}
 	}
 
 }
-
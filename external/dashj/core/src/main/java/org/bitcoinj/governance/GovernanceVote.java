@@ -219,6 +219,18 @@ public class GovernanceVote extends ChildMessage implements Serializable {
 
     public final TransactionOutPoint getMasternodeOutpoint() { return masternodeOutpoint; }
 
+    final int getSignalValue() {
+        return nVoteSignal;
+    }
+
+    final int getOutcomeValue() {
+        return nVoteOutcome;
+    }
+
+    final MasternodeSignature getSignature() {
+        return vchSig;
+    }
+
     /**
      *   GetHash()
      *
@@ -230,6 +242,11 @@ public class GovernanceVote extends ChildMessage implements Serializable {
     }
 
     public void updateHash() {
+        hash = calculateHash(params, masternodeOutpoint, nParentHash, nVoteSignal, nVoteOutcome, nTime);
+    }
+
+    static Sha256Hash calculateHash(NetworkParameters params, TransactionOutPoint masternodeOutpoint, Sha256Hash nParentHash,
+                                    int nVoteSignal, int nVoteOutcome, long nTime) {
         try {
             UnsafeByteArrayOutputStream bos = new UnsafeByteArrayOutputStream();
             new TransactionInput(params, null, new byte[0], masternodeOutpoint).bitcoinSerialize(bos);
@@ -237,7 +254,7 @@ public class GovernanceVote extends ChildMessage implements Serializable {
             Utils.uint32ToByteStreamLE(nVoteSignal, bos);
             Utils.uint32ToByteStreamLE(nVoteOutcome, bos);
             Utils.int64ToByteStreamLE(nTime, bos);
-            hash = Sha256Hash.wrapReversed(Sha256Hash.hashTwice(bos.toByteArray()));
+            return Sha256Hash.wrapReversed(Sha256Hash.hashTwice(bos.toByteArray()));
         } catch(IOException e) {
             throw new RuntimeException(e); // Cannot happen.
         }
@@ -311,6 +328,20 @@ public class GovernanceVote extends ChildMessage implements Serializable {
         updateHash();
     }
 
+    /** Recreates a vote that was kept by a {@link GovernanceObjectVoteFile}. */
+    GovernanceVote(NetworkParameters params, TransactionOutPoint outpoint, Sha256Hash parentHash, int nVoteSignal,
+                   int nVoteOutcome, long nTime, MasternodeSignature vchSig, Sha256Hash hash) {
+        super(params);
+        context = Context.get();
+        this.masternodeOutpoint = outpoint;
+        this.nParentHash = parentHash;
+        this.nVoteSignal = nVoteSignal;
+        this.nVoteOutcome = nVoteOutcome;
+        this.nTime = nTime;
+        this.vchSig = vchSig;
+        this.hash = hash;
+    }
+
     protected static int calcLength(byte[] buf, int offset) {
         int cursor = offset;
         return cursor - offset;
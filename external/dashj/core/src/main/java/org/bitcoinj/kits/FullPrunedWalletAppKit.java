@@ -326,6 +326,8 @@ public class FullPrunedWalletAppKit extends AbstractIdleService {
             }
             vChain = new FullPrunedBlockChain(params, vStore);
             vPeerGroup = createPeerGroup();
+            // Full blocks are connected here, so let large ones be parsed and hashed on all cores
+            vPeerGroup.setParallelParsingThreshold(Block.DEFAULT_PARALLEL_PARSING_THRESHOLD);
             if (this.userAgent != null)
                 vPeerGroup.setUserAgent(userAgent, version);
 
@@ -23,6 +23,8 @@ import org.bitcoinj.quorums.listeners.ChainLockListener;
 import org.bitcoinj.quorums.listeners.RecoveredSignatureListener;
 import org.bitcoinj.store.BlockStore;
 import org.bitcoinj.store.BlockStoreException;
+import org.bitcoinj.utils.ContextPropagatingThreadFactory;
+import org.bitcoinj.utils.LatencyHistogram;
 import org.bitcoinj.utils.ListenerRegistration;
 import org.bitcoinj.utils.Threading;
 import org.dashj.bls.PrivateKey;
@@ -49,6 +51,7 @@ public class ChainLocksHandler extends AbstractManager implements RecoveredSigna
 
     static final long CLEANUP_INTERVAL = 1000 * 30;
     static final long CLEANUP_SEEN_TIMEOUT = 24 * 60 * 60 * 1000;
+    static final int MAX_VERIFIED_CHAINLOCKS = 1000;
 
     private SigningManager quorumSigningManager;
     private InstantSendManager quorumInstantSendManager;
@@ -82,6 +85,15 @@ public class ChainLocksHandler extends AbstractManager implements RecoveredSigna
             return size() > 5000;
         }
     };
+    // the verified CLSIGs by block hash, so that a CLSIG relayed by several peers is only verified once
+    private final LinkedHashMap<Sha256Hash, ChainLockSignature> verifiedChainLocks = new LinkedHashMap<Sha256Hash, ChainLockSignature>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Sha256Hash, ChainLockSignature> entry) {
+            return size() > MAX_VERIFIED_CHAINLOCKS;
+        }
+    };
+    // the time between receiving a CLSIG and having processed it
+    private final LatencyHistogram chainLockLatency = new LatencyHistogram();
     long lastCleanupTime;
 
     ScheduledExecutorService scheduledExecutorService;
@@ -124,7 +136,7 @@ public class ChainLocksHandler extends AbstractManager implements RecoveredSigna
         quorumSigningManager.addRecoveredSignatureListener(this);
         // TODO: start the scheduler here:
         //  processChainLock();
-        scheduledExecutorService = Executors.newScheduledThreadPool(1);
+        scheduledExecutorService = Executors.newScheduledThreadPool(1, new ContextPropagatingThreadFactory("ChainLocksHandler"));
     }
 
     public void stop() {
@@ -172,38 +184,63 @@ public class ChainLocksHandler extends AbstractManager implements RecoveredSigna
             return;
         }
 
+        long receivedTime = System.nanoTime();
         Sha256Hash hash = clsig.getHash();
-        processNewChainLock(peer, clsig, hash);
+        if (!isNewChainLock(clsig, hash)) {
+            return;
+        }
+
+        // the signature is verified on the executor so that the peer thread can keep reading messages
+        ScheduledExecutorService executor = scheduledExecutorService;
+        if (executor != null) {
+            try {
+                executor.execute(() -> processNewChainLock(peer, clsig, hash, receivedTime));
+                return;
+            } catch (RejectedExecutionException x) {
+                // stopped, process it on this thread
+            }
+        }
+        processNewChainLock(peer, clsig, hash, receivedTime);
     }
 
-    void processNewChainLock(Peer from, ChainLockSignature clsig, Sha256Hash hash)
-    {
+    // returns false for CLSIGs that were already seen or are older than the best one
+    private boolean isNewChainLock(ChainLockSignature clsig, Sha256Hash hash) {
         lock.lock();
         try {
             if (seenChainLocks.put(hash, Utils.currentTimeMillis()) != null) {
-                return;
+                return false;
             }
 
             if (bestChainLock != null && (bestChainLock.height != -1 && clsig.height <= bestChainLock.height)) {
                 // no need to process/relay older CLSIGs
-                return;
+                return false;
             }
+            return true;
         } finally {
             lock.unlock();
         }
+    }
 
+    void processNewChainLock(Peer from, ChainLockSignature clsig, Sha256Hash hash, long receivedTime)
+    {
         log.info("process chainlock: {}", hash);
         Sha256Hash requestId = clsig.getRequestId();
         Sha256Hash msgHash = clsig.blockHash;
-        if(context.masternodeSync.hasVerifyFlag(MasternodeSync.VERIFY_FLAGS.CHAINLOCK)) {
+        if(context.masternodeSync.hasVerifyFlag(MasternodeSync.VERIFY_FLAGS.CHAINLOCK) && !isVerified(clsig)) {
             try {
                 if (!quorumSigningManager.verifyRecoveredSig(context.getParams().getLlmqChainLocks(), clsig.height, requestId, msgHash, clsig.signature)) {
                     log.info("invalid CLSIG ({}), peer={}", clsig, from != null ? from : "null");
                     if (from != null) {
-                        // TODO: Dash Core increases ban score by 10
+                        from.misbehaving(10, "invalid CLSIG");
                     }
                     return;
                 }
+                lock.lock();
+                try {
+                    verifiedChainLocks.put(clsig.blockHash, clsig);
+                } finally {
+                    lock.unlock();
+                }
                 saveLater();
             } catch (BlockStoreException x) {
                 return;
@@ -217,8 +254,14 @@ public class ChainLocksHandler extends AbstractManager implements RecoveredSigna
                 if (scheduledExecutorService != null) {
                     scheduledProcessChainLock = scheduledExecutorService.schedule(() -> {
                         // clear the clsig from the seen list
-                        seenChainLocks.remove(hash);
-                        processNewChainLock(null, clsig, hash);
+                        lock.lock();
+                        try {
+                            seenChainLocks.remove(hash);
+                        } finally {
+                            lock.unlock();
+                        }
+                        if (isNewChainLock(clsig, hash))
+                            processNewChainLock(null, clsig, hash, receivedTime);
                     }, 5, TimeUnit.SECONDS);
                 }
                 return;
@@ -228,6 +271,11 @@ public class ChainLocksHandler extends AbstractManager implements RecoveredSigna
         lock.lock();
         try {
 
+            if (bestChainLock != null && (bestChainLock.height != -1 && clsig.height <= bestChainLock.height)) {
+                // a newer CLSIG was processed while this one was verified
+                return;
+            }
+
             if (internalHasConflictingChainLock(clsig.height, clsig.blockHash)) {
                 // This should not happen. If it happens, it means that a malicious entity controls a large part of the MN
                 // network. In this case, we don't allow him to reorg older chainlocks.
@@ -265,9 +313,25 @@ public class ChainLocksHandler extends AbstractManager implements RecoveredSigna
         //TODO: have this part executed in a different thread, run by a scheduler?
         processChainLock();
 
+        chainLockLatency.record(System.nanoTime() - receivedTime, TimeUnit.NANOSECONDS);
         log.info("processed new CLSIG ({}), peer={}", clsig, from);
     }
 
+    // returns true if the same CLSIG, including its signature, was already verified
+    private boolean isVerified(ChainLockSignature clsig) {
+        lock.lock();
+        try {
+            return clsig.equals(verifiedChainLocks.get(clsig.blockHash));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns the time between receiving CLSIGs and having processed them. */
+    public LatencyHistogram getChainLockLatency() {
+        return chainLockLatency;
+    }
+
     void acceptedBlockHeader(StoredBlock newBlock) {
         lock.lock();
         try {
@@ -34,6 +34,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 public class FinalCommitment extends SpecialTxPayload {
     @Deprecated
@@ -62,6 +63,9 @@ public class FinalCommitment extends SpecialTxPayload {
     BLSSignature quorumSignature;
     BLSSignature membersSignature;
 
+    // memoized by getCommitmentHash(), the fields it is built from don't change after parsing
+    private volatile Sha256Hash commitmentHash;
+
     public FinalCommitment(NetworkParameters params, byte [] payload, int offset) {
         super(params, payload, offset);
     }
@@ -292,25 +296,15 @@ public class FinalCommitment extends SpecialTxPayload {
 
         // sigs are only checked when the block is processed
         if (checkSigs) {
-            Sha256Hash commitmentHash = LLMQUtils.buildCommitmentHash(llmqParameters.type, quorumHash, validMembers, quorumPublicKey, quorumVvecHash);
-
-            ArrayList<BLSPublicKey> memberPubKeys = Lists.newArrayList();
-            for (int i = 0; i < members.size(); i++) {
-                if (!signers.get(i)) {
-                    continue;
-                }
-                memberPubKeys.add(members.get(i).getPubKeyOperator());
-            }
-
-            if (!membersSignature.verifySecureAggregated(memberPubKeys, commitmentHash, isLegacy())) {
+            if (!verifyMembersSignature(members)) {
                 log.error("invalid aggregated members signature");
                 return false;
             }
 
-            Context.get().signingManager.logSignature("QUORUM", quorumPublicKey, commitmentHash, quorumSignature);
+            Context.get().signingManager.logSignature("QUORUM", quorumPublicKey, getCommitmentHash(), quorumSignature);
 
             if(Context.get().masternodeSync.hasVerifyFlag(MasternodeSync.VERIFY_FLAGS.BLS_SIGNATURES)) {
-                if (!quorumSignature.verifyInsecure(quorumPublicKey, commitmentHash, isLegacy())) {
+                if (!verifyQuorumSignature()) {
                     log.error("invalid quorum signature");
                     return false;
                 }
@@ -320,6 +314,34 @@ public class FinalCommitment extends SpecialTxPayload {
         return true;
     }
 
+    /** Returns the hash that the members and the quorum signed. */
+    Sha256Hash getCommitmentHash() {
+        if (commitmentHash == null) {
+            commitmentHash = LLMQUtils.buildCommitmentHash(LLMQParameters.LLMQType.fromValue(llmqType), quorumHash,
+                    validMembers, quorumPublicKey, quorumVvecHash);
+        }
+        return commitmentHash;
+    }
+
+    /**
+     * Checks the aggregated signature of the signing members. This is the expensive part of {@link #verify}, it only
+     * reads this commitment and the members, so commitments can be checked on several threads at once.
+     */
+    boolean verifyMembersSignature(List<Masternode> members) {
+        ArrayList<BLSPublicKey> memberPubKeys = Lists.newArrayList();
+        for (int i = 0; i < members.size(); i++) {
+            if (!signers.get(i)) {
+                continue;
+            }
+            memberPubKeys.add(members.get(i).getPubKeyOperator());
+        }
+        return membersSignature.verifySecureAggregated(memberPubKeys, getCommitmentHash(), isLegacy());
+    }
+
+    boolean verifyQuorumSignature() {
+        return quorumSignature.verifyInsecure(quorumPublicKey, getCommitmentHash(), isLegacy());
+    }
+
     public boolean isNull()  {
         if (countSigners() > 0 ||
             countValidMembers() > 0) {
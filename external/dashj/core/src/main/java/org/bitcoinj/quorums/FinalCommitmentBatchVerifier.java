@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.quorums;
+
+import com.google.common.base.Throwables;
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.MasternodeSync;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.crypto.BLSBatchVerifier;
+import org.bitcoinj.crypto.BLSScheme;
+import org.bitcoinj.evolution.Masternode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * <p>Checks the signatures of many {@link FinalCommitment}s at once, with the same outcome as calling
+ * {@link FinalCommitment#verify} with <code>checkSigs</code> set on each of them.</p>
+ *
+ * <p>The aggregated members signatures are independent of each other and are checked on the given pool, or on the
+ * calling thread if there is none.
+ * The quorum signatures of the commitments that passed are then checked together with a {@link BLSBatchVerifier},
+ * which falls back to checking them one by one if the batch fails.</p>
+ *
+ * <p>Commitments are expected to have passed {@link FinalCommitment#verify} without <code>checkSigs</code> before
+ * they are added. Not thread safe.</p>
+ */
+class FinalCommitmentBatchVerifier {
+    private static final Logger log = LoggerFactory.getLogger(FinalCommitmentBatchVerifier.class);
+
+    @Nullable private final ExecutorService executor;
+    private final List<FinalCommitment> commitments = new ArrayList<>();
+    private final List<List<Masternode>> members = new ArrayList<>();
+
+    FinalCommitmentBatchVerifier(@Nullable ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    void add(FinalCommitment commitment, List<Masternode> quorumMembers) {
+        commitments.add(commitment);
+        members.add(quorumMembers);
+    }
+
+    List<FinalCommitment> getCommitments() {
+        return commitments;
+    }
+
+    boolean isEmpty() {
+        return commitments.isEmpty();
+    }
+
+    /** Verifies all commitments added so far and returns the ones with an invalid signature. */
+    Set<FinalCommitment> verify() {
+        Set<FinalCommitment> invalid = new HashSet<>();
+        if (commitments.isEmpty())
+            return invalid;
+
+        boolean[] membersValid = verifyMembersSignatures();
+
+        boolean checkQuorumSignatures = Context.get().masternodeSync.hasVerifyFlag(MasternodeSync.VERIFY_FLAGS.BLS_SIGNATURES);
+        // the batch verifier checks with the default scheme, other commitments are checked on their own
+        BLSBatchVerifier<Sha256Hash, Sha256Hash> batchVerifier = new BLSBatchVerifier<>(false, true);
+        List<FinalCommitment> batched = new ArrayList<>();
+        for (int i = 0; i < commitments.size(); i++) {
+            FinalCommitment commitment = commitments.get(i);
+            if (!membersValid[i]) {
+                log.error("invalid aggregated members signature");
+                invalid.add(commitment);
+                continue;
+            }
+
+            Context.get().signingManager.logSignature("QUORUM", commitment.quorumPublicKey,
+                    commitment.getCommitmentHash(), commitment.quorumSignature);
+
+            if (!checkQuorumSignatures)
+                continue;
+            if (commitment.isLegacy() == BLSScheme.isLegacyDefault()) {
+                batchVerifier.pushMessage(commitment.getHash(), commitment.getHash(), commitment.getCommitmentHash(),
+                        commitment.quorumSignature, commitment.quorumPublicKey);
+                batched.add(commitment);
+            } else if (!commitment.verifyQuorumSignature()) {
+                log.error("invalid quorum signature");
+                invalid.add(commitment);
+            }
+        }
+
+        if (!batched.isEmpty()) {
+            batchVerifier.verify();
+            for (FinalCommitment commitment : batched) {
+                if (batchVerifier.getBadMessages().contains(commitment.getHash())) {
+                    log.error("invalid quorum signature");
+                    invalid.add(commitment);
+                }
+            }
+        }
+        return invalid;
+    }
+
+    private boolean[] verifyMembersSignatures() {
+        boolean[] valid = new boolean[commitments.size()];
+        List<Future<Boolean>> results = new ArrayList<>(commitments.size());
+        try {
+            if (executor != null && commitments.size() > 1) {
+                for (int i = 0; i < commitments.size(); i++) {
+                    final FinalCommitment commitment = commitments.get(i);
+                    final List<Masternode> quorumMembers = members.get(i);
+                    results.add(executor.submit(new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            return commitment.verifyMembersSignature(quorumMembers);
+                        }
+                    }));
+                }
+            }
+        } catch (RejectedExecutionException x) {
+            // the pool was shut down, check the remaining signatures on this thread
+        }
+        for (int i = results.size(); i < commitments.size(); i++) {
+            valid[i] = commitments.get(i).verifyMembersSignature(members.get(i));
+        }
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                valid[i] = results.get(i).get();
+            }
+        } catch (InterruptedException x) {
+            for (Future<Boolean> result : results)
+                result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(x);
+        } catch (ExecutionException x) {
+            Throwables.throwIfUnchecked(x.getCause());
+            throw new RuntimeException(x.getCause());
+        }
+        return valid;
+    }
+}
@@ -61,7 +61,11 @@ public class InstantSendLock extends Message {
     }
 
     public InstantSendLock(NetworkParameters params, byte [] payload, int version) {
-        super(params, payload, 0, version == ISDLOCK_VERSION ?
+        this(params, payload, 0, version);
+    }
+
+    public InstantSendLock(NetworkParameters params, byte [] payload, int offset, int version) {
+        super(params, payload, offset, version == ISDLOCK_VERSION ?
                 params.getProtocolVersionNum(NetworkParameters.ProtocolVersion.ISDLOCK) : 0);
     }
 
@@ -5,6 +5,7 @@ import com.google.common.collect.Lists;
 import org.bitcoinj.core.*;
 import org.bitcoinj.core.listeners.NewBestBlockListener;
 import org.bitcoinj.core.listeners.OnTransactionBroadcastListener;
+import org.bitcoinj.core.listeners.SporkUpdatedEventListener;
 import org.bitcoinj.core.listeners.TransactionReceivedInBlockListener;
 import org.bitcoinj.crypto.BLSBatchVerifier;
 import org.bitcoinj.quorums.listeners.RecoveredSignatureListener;
@@ -12,6 +13,7 @@ import org.bitcoinj.quorums.listeners.ChainLockListener;
 import org.bitcoinj.store.BlockStore;
 import org.bitcoinj.store.BlockStoreException;
 import org.bitcoinj.store.FullPrunedBlockStore;
+import org.bitcoinj.utils.LatencyHistogram;
 import org.bitcoinj.utils.Pair;
 import org.bitcoinj.utils.Threading;
 import org.slf4j.Logger;
@@ -25,6 +27,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class InstantSendManager implements RecoveredSignatureListener {
@@ -34,6 +38,11 @@ public class InstantSendManager implements RecoveredSignatureListener {
 
     private static final Logger log = LoggerFactory.getLogger(InstantSendManager.class);
     ReentrantLock lock = Threading.lock("InstantSendManager");
+    // signalled whenever there may be new work for the worker thread
+    private final Condition pendingChanged = lock.newCondition();
+    // incremented with every signal of pendingChanged, guarded by lock
+    private long pendingGeneration;
+    private volatile long batchWindowMillis;
     InstantSendDatabase db;
     Thread workThread;
     public boolean runWithoutThread;
@@ -44,6 +53,14 @@ public class InstantSendManager implements RecoveredSignatureListener {
 
     // Incoming and not verified yet
     HashMap<Sha256Hash, Pair<Long, InstantSendLock>> pendingInstantSendLocks;
+    // only process a max 32 locks at a time to avoid duplicate verification of recovered signatures which have been
+    // verified by CSigningManager in parallel
+    private static final int MAX_PENDING_BATCH = 32;
+
+    // System.nanoTime() of the arrival of the pending islocks, guarded by lock
+    private final HashMap<Sha256Hash, Long> pendingReceivedTimes = new HashMap<>();
+    // from the arrival of an islock to the update of the transaction confidence
+    private final LatencyHistogram lockLatency = new LatencyHistogram();
 
     public InstantSendManager(Context context, InstantSendDatabase db) {
         this.context = context;
@@ -55,7 +72,8 @@ public class InstantSendManager implements RecoveredSignatureListener {
 
     @Override
     public String toString() {
-        return String.format("InstantSendManager:  pendingInstantSendLocks %d, DB: %s", pendingInstantSendLocks.size(), db);
+        return String.format("InstantSendManager:  pendingInstantSendLocks %d, latency: %s, DB: %s",
+                pendingInstantSendLocks.size(), lockLatency, db);
     }
 
     public InstantSendManager(Context context, InstantSendDatabase db, boolean runWithoutThread) {
@@ -71,6 +89,15 @@ public class InstantSendManager implements RecoveredSignatureListener {
             peerGroup.addOnTransactionBroadcastListener(this.transactionBroadcastListener);
         }
         context.chainLockHandler.addChainLockListener(this.chainLockListener, Threading.SAME_THREAD);
+        context.sporkManager.addEventListener(this.sporkUpdatedListener, Threading.SAME_THREAD);
+
+        // islocks that arrived before there was a chain can be processed now
+        lock.lock();
+        try {
+            signalPendingChanged();
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void close(PeerGroup peerGroup) {
@@ -83,6 +110,7 @@ public class InstantSendManager implements RecoveredSignatureListener {
             peerGroup.removeOnTransactionBroadcastListener(this.transactionBroadcastListener);
         }
         context.chainLockHandler.removeChainLockListener(this.chainLockListener);
+        context.sporkManager.removeEventListener(this.sporkUpdatedListener);
     }
 
     private boolean isInitialized() {
@@ -111,7 +139,7 @@ public class InstantSendManager implements RecoveredSignatureListener {
             return;
 
         if (!preVerifyInstantSendLock(isLock)) {
-            // TODO: Dash Core increases ban score by 100
+            peer.misbehaving(100, "invalid islock");
             return;
         }
 
@@ -129,7 +157,7 @@ public class InstantSendManager implements RecoveredSignatureListener {
                         context.getParams().getLlmqForInstantSend();
                 final int dkgInterval = LLMQParameters.fromType(llmqType).dkgInterval;
                 if (blockIndex.getHeight() % dkgInterval != 0) {
-                    // TODO: Dash Core increases ban score by 100
+                    peer.misbehaving(100, "islock with an invalid cycle hash");
                     return;
                 }
             } catch (BlockStoreException x) {
@@ -167,6 +195,8 @@ public class InstantSendManager implements RecoveredSignatureListener {
                     isLock.txid.toString(), hash.toString(), peer.hashCode());
 
             pendingInstantSendLocks.put(hash, new Pair((long)peer.hashCode(), isLock));
+            pendingReceivedTimes.put(hash, System.nanoTime());
+            signalPendingChanged();
 
             if(runWithoutThread) {
                 try {
@@ -228,10 +258,11 @@ public class InstantSendManager implements RecoveredSignatureListener {
         public void run() {
             try {
                 while (!workThread.isInterrupted()) {
+                    long generation = getPendingGeneration();
                     boolean didWork = processPendingInstantSendLocks();
 
                     if (!didWork) {
-                        Thread.sleep(100);
+                        awaitPendingChanged(generation);
                     }
                 }
             } catch (InterruptedException x) {
@@ -242,6 +273,56 @@ public class InstantSendManager implements RecoveredSignatureListener {
         }
     };
 
+    private long getPendingGeneration() {
+        lock.lock();
+        try {
+            return pendingGeneration;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // lock must be held
+    private void signalPendingChanged() {
+        pendingGeneration++;
+        pendingChanged.signalAll();
+    }
+
+    /**
+     * Blocks until something has changed since the given generation, such as the arrival of an islock or a new
+     * best block. Then waits up to the batch window for more islocks, unless a full batch is pending already.
+     */
+    private void awaitPendingChanged(long generation) throws InterruptedException {
+        lock.lock();
+        try {
+            while (pendingGeneration == generation)
+                pendingChanged.await();
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+            while (remaining > 0 && pendingInstantSendLocks.size() < MAX_PENDING_BATCH)
+                remaining = pendingChanged.awaitNanos(remaining);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets how long the worker thread waits for more islocks after the first one arrives, so that they are verified
+     * in one batch. The default of zero processes every islock as soon as it arrives.
+     */
+    public void setBatchWindowMillis(long batchWindowMillis) {
+        this.batchWindowMillis = batchWindowMillis;
+    }
+
+    public long getBatchWindowMillis() {
+        return batchWindowMillis;
+    }
+
+    /** Returns the time from the arrival of an islock to the update of the confidence of its transaction. */
+    public LatencyHistogram getLockLatency() {
+        return lockLatency;
+    }
+
     public void start() {
         if(!runWithoutThread) {
             if (workThread != null)
@@ -411,8 +492,11 @@ public class InstantSendManager implements RecoveredSignatureListener {
             if (blockTip != null && context.getParams().isDIP0024Active(blockTip)) {
                 return processPendingInstantSendLocks(true);
             } else {
-                // Don't short circuit. Try to process deterministic and not deterministic islocks
-                return processPendingInstantSendLocks(false) & processPendingInstantSendLocks(true);
+                // Don't short circuit. Try to process deterministic and not deterministic islocks, and come back if
+                // either of them has more left
+                boolean moreWork = processPendingInstantSendLocks(false);
+                moreWork |= processPendingInstantSendLocks(true);
+                return moreWork;
             }
         }
         return false;
@@ -426,19 +510,15 @@ public class InstantSendManager implements RecoveredSignatureListener {
             return false;
         }
 
+        // The keys of the removed values are temporaily stored here to avoid invalidating an iterator
+        ArrayList<Sha256Hash> removed = Lists.newArrayListWithExpectedSize(MAX_PENDING_BATCH);
         lock.lock();
         try {
-            // only process a max 32 locks at a time to avoid duplicate verification of recovered signatures which have been
-            // verified by CSigningManager in parallel
-            final int maxCount = 32;
-            // The keys of the removed values are temporaily stored here to avoid invalidating an iterator
-            ArrayList<Sha256Hash> removed = Lists.newArrayListWithExpectedSize(maxCount);
-
             for (Map.Entry<Sha256Hash, Pair<Long, InstantSendLock>> entry : pendingInstantSendLocks.entrySet()) {
                 Sha256Hash islockHash = entry.getKey();
                 InstantSendLock islock = entry.getValue().getSecond();
 
-                if (pend.size() >= maxCount) {
+                if (pend.size() >= MAX_PENDING_BATCH) {
                     moreWork = true;
                     break;
                 }
@@ -488,6 +568,15 @@ public class InstantSendManager implements RecoveredSignatureListener {
             processPendingInstantSendLocks(llmqType, dkgInterval, pend, true);
         }
 
+        // locks that were processed have been measured already, forget the rest
+        lock.lock();
+        try {
+            for (Sha256Hash islockHash : removed)
+                pendingReceivedTimes.remove(islockHash);
+        } finally {
+            lock.unlock();
+        }
+
         return moreWork;
     }
 
@@ -719,6 +808,19 @@ public class InstantSendManager implements RecoveredSignatureListener {
 
         removeMempoolConflictsForLock(hash, islock);
         updateWalletTransaction(islock.txid, null);
+        recordLockLatency(hash);
+    }
+
+    private void recordLockLatency(Sha256Hash hash) {
+        Long receivedTime;
+        lock.lock();
+        try {
+            receivedTime = pendingReceivedTimes.remove(hash);
+        } finally {
+            lock.unlock();
+        }
+        if (receivedTime != null)
+            lockLatency.record(System.nanoTime() - receivedTime, TimeUnit.NANOSECONDS);
     }
 
     void updateWalletTransaction(Sha256Hash txid, Transaction tx) {
@@ -774,6 +876,20 @@ public class InstantSendManager implements RecoveredSignatureListener {
         }
     }
 
+    SporkUpdatedEventListener sporkUpdatedListener = new SporkUpdatedEventListener() {
+        @Override
+        public void onSporkUpdated(SporkMessage sporkMessage) {
+            // pending islocks are not processed while InstantSend is disabled
+            lock.lock();
+            try {
+                if (!pendingInstantSendLocks.isEmpty())
+                    signalPendingChanged();
+            } finally {
+                lock.unlock();
+            }
+        }
+    };
+
     ChainLockListener chainLockListener = new ChainLockListener() {
         public void onNewChainLock(StoredBlock block) {
             handleFullyConfirmedBlock(block.getHeight());
@@ -783,6 +899,14 @@ public class InstantSendManager implements RecoveredSignatureListener {
     NewBestBlockListener newBestBlockListener = new NewBestBlockListener() {
         @Override
         public void notifyNewBestBlock(StoredBlock block) throws VerificationException {
+            // islocks may be waiting for the quorums of a newer block
+            lock.lock();
+            try {
+                if (!pendingInstantSendLocks.isEmpty())
+                    signalPendingChanged();
+            } finally {
+                lock.unlock();
+            }
 
             if (context.sporkManager.isSporkActive(SporkId.SPORK_19_CHAINLOCKS_ENABLED)) {
                 // Nothing to do here. We should keep all islocks and let chainlocks handle them.
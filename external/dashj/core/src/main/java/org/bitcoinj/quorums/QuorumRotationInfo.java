@@ -28,6 +28,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
 
@@ -62,62 +63,54 @@ public class QuorumRotationInfo extends AbstractDiffMessage {
         super(params, payload, 0, protocolVersion);
     }
 
+    public QuorumRotationInfo(NetworkParameters params, InputStream stream, int protocolVersion) {
+        super(params, stream, protocolVersion);
+    }
+
     @Override
     protected void parse() throws ProtocolException {
-        quorumSnapshotAtHMinusC = new QuorumSnapshot(params, payload, cursor);
-        cursor += quorumSnapshotAtHMinusC.getMessageSize();
-        quorumSnapshotAtHMinus2C = new QuorumSnapshot(params, payload, cursor);
-        cursor += quorumSnapshotAtHMinus2C.getMessageSize();
-        quorumSnapshotAtHMinus3C = new QuorumSnapshot(params, payload, cursor);
-        cursor += quorumSnapshotAtHMinus3C.getMessageSize();
-
-        mnListDiffTip = new SimplifiedMasternodeListDiff(params, payload, cursor, protocolVersion);
-        cursor += mnListDiffTip.getMessageSize();
-        mnListDiffAtH = new SimplifiedMasternodeListDiff(params, payload, cursor, protocolVersion);
-        cursor += mnListDiffAtH.getMessageSize();
-        mnListDiffAtHMinusC = new SimplifiedMasternodeListDiff(params, payload, cursor, protocolVersion);
-        cursor += mnListDiffAtHMinusC.getMessageSize();
-        mnListDiffAtHMinus2C = new SimplifiedMasternodeListDiff(params, payload, cursor, protocolVersion);
-        cursor += mnListDiffAtHMinus2C.getMessageSize();
-        mnListDiffAtHMinus3C = new SimplifiedMasternodeListDiff(params, payload, cursor, protocolVersion);
-        cursor += mnListDiffAtHMinus3C.getMessageSize();
+        quorumSnapshotAtHMinusC = readQuorumSnapshot();
+        quorumSnapshotAtHMinus2C = readQuorumSnapshot();
+        quorumSnapshotAtHMinus3C = readQuorumSnapshot();
+
+        mnListDiffTip = readMasternodeListDiff();
+        mnListDiffAtH = readMasternodeListDiff();
+        mnListDiffAtHMinusC = readMasternodeListDiff();
+        mnListDiffAtHMinus2C = readMasternodeListDiff();
+        mnListDiffAtHMinus3C = readMasternodeListDiff();
 
         // extra share?
         extraShare = readBytes(1)[0] == 1;
         if (extraShare) {
-            quorumSnapshotAtHMinus4C = new QuorumSnapshot(params, payload, cursor);
-            cursor += quorumSnapshotAtHMinus4C.getMessageSize();
-            mnListDiffAtHMinus4C = new SimplifiedMasternodeListDiff(params, payload, cursor, protocolVersion);
-            cursor += mnListDiffAtHMinus4C.getMessageSize();
+            quorumSnapshotAtHMinus4C = readQuorumSnapshot();
+            mnListDiffAtHMinus4C = readMasternodeListDiff();
         }
 
         int size = (int)readVarInt();
         lastCommitmentPerIndex = new ArrayList<>(size);
         for (int i = 0; i < size; ++i) {
-            FinalCommitment commitment = new FinalCommitment(params, payload, cursor);
-            cursor += commitment.getMessageSize();
-            lastCommitmentPerIndex.add(commitment);
+            lastCommitmentPerIndex.add(readMessage((bytes, start) -> new FinalCommitment(params, bytes, start)));
         }
 
         size = (int)readVarInt();
         quorumSnapshotList = new ArrayList<>(size);
         for (int i = 0; i < size; ++i) {
-            QuorumSnapshot snapshot = new QuorumSnapshot(params, payload, cursor);
-            cursor += snapshot.getMessageSize();
-            quorumSnapshotList.add(snapshot);
+            quorumSnapshotList.add(readQuorumSnapshot());
         }
 
         size = (int)readVarInt();
         mnListDiffLists = new ArrayList<>(size);
         for (int i = 0; i < size; ++i) {
-            SimplifiedMasternodeListDiff mnlistdiff = new SimplifiedMasternodeListDiff(params, payload, cursor, protocolVersion);
-            cursor += mnlistdiff.getMessageSize();
-            mnListDiffLists.add(mnlistdiff);
+            mnListDiffLists.add(readMasternodeListDiff());
         }
 
         length = cursor - offset;
     }
 
+    private QuorumSnapshot readQuorumSnapshot() {
+        return readMessage((bytes, start) -> new QuorumSnapshot(params, bytes, start));
+    }
+
     @Override
     protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
         quorumSnapshotAtHMinusC.bitcoinSerialize(stream);
@@ -8,20 +8,37 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Keeps the InstantSend locks in memory, indexed by hash, txid, input and mined height, and saves them with
+ * {@link org.bitcoinj.store.FlatDB} so that they survive a restart without being requested and verified again.
+ *
+ * The number of locks is bounded by {@link #MAX_INSTANTSEND_LOCKS}. Locks that are neither removed by a confirmation
+ * nor by a newer lock are dropped after {@link #MAX_INSTANTSEND_LOCK_AGE} seconds.
+ */
 public class SPVInstantSendDatabase extends AbstractManager implements InstantSendDatabase {
 
     private static final Logger log = LoggerFactory.getLogger(SPVInstantSendDatabase.class);
     private ReentrantLock lock = Threading.lock("SPVInstantSendDatabase");
 
+    static final int MAX_INSTANTSEND_LOCKS = 10000;
+    static final long MAX_INSTANTSEND_LOCK_AGE = 60 * 60 * 24 * 7; // keep them for a week
+
     InstantSendManager manager;
     HashMap<Sha256Hash, InstantSendLock> islockCache;
     HashMap<Sha256Hash, Sha256Hash> txidCache;
     HashMap<TransactionOutPoint, Sha256Hash> outpointCache;
     HashMap<Sha256Hash, Long> isLockHashHeight;
+    // islock hashes by the height of the block that mined the transaction
+    TreeMap<Long, HashSet<Sha256Hash>> minedIndex;
+    // the time in seconds when an islock was written, oldest first
+    LinkedHashMap<Sha256Hash, Long> isLockTimes;
 
     @Override
     public String toString() {
@@ -35,6 +52,8 @@ public class SPVInstantSendDatabase extends AbstractManager implements InstantSe
         txidCache = new HashMap<Sha256Hash, Sha256Hash>();
         outpointCache = new HashMap<TransactionOutPoint, Sha256Hash>();
         isLockHashHeight = new HashMap<Sha256Hash, Long>();
+        minedIndex = new TreeMap<Long, HashSet<Sha256Hash>>();
+        isLockTimes = new LinkedHashMap<Sha256Hash, Long>();
     }
 
     @Override
@@ -45,70 +64,145 @@ public class SPVInstantSendDatabase extends AbstractManager implements InstantSe
     public void writeNewInstantSendLock(Sha256Hash hash, InstantSendLock islock) {
         lock.lock();
         try {
-            islockCache.put(hash, islock);
-            txidCache.put(islock.txid, hash);
-            for (TransactionOutPoint in : islock.inputs) {
-                outpointCache.put(in, hash);
+            addInstantSendLock(hash, islock, Utils.currentTimeSeconds());
+            // drop the oldest locks when there are too many
+            Iterator<Sha256Hash> oldest = isLockTimes.keySet().iterator();
+            while (islockCache.size() > MAX_INSTANTSEND_LOCKS && oldest.hasNext()) {
+                Sha256Hash oldestHash = oldest.next();
+                oldest.remove();
+                removeIndexes(oldestHash);
             }
         } finally {
             lock.unlock();
         }
-        //save
+        saveLater();
+    }
+
+    // lock must be held
+    private void addInstantSendLock(Sha256Hash hash, InstantSendLock islock, long time) {
+        islockCache.put(hash, islock);
+        txidCache.put(islock.txid, hash);
+        for (TransactionOutPoint in : islock.inputs) {
+            outpointCache.put(in, hash);
+        }
+        isLockTimes.put(hash, time);
     }
+
     public void removeInstantSendLock(Sha256Hash hash, InstantSendLock islock) {
         lock.lock();
         try {
-            islockCache.remove(hash);
-            txidCache.remove(islock.txid);
-            for (TransactionOutPoint in : islock.inputs) {
-                outpointCache.remove(in);
-            }
+            isLockTimes.remove(hash);
+            removeIndexes(hash);
         } finally {
             lock.unlock();
         }
+        saveLater();
+    }
+
+    // lock must be held, isLockTimes is left to the caller so that it can remove while iterating
+    private void removeIndexes(Sha256Hash hash) {
+        InstantSendLock islock = islockCache.remove(hash);
+        if (islock == null)
+            return;
+        if (hash.equals(txidCache.get(islock.txid)))
+            txidCache.remove(islock.txid);
+        for (TransactionOutPoint in : islock.inputs) {
+            if (hash.equals(outpointCache.get(in)))
+                outpointCache.remove(in);
+        }
+        removeMinedIndex(hash);
     }
     //void removeInstantSendLock(CDBBatch& batch, Sha256Hash hash, InstantSendLock islock);
 
+    // lock must be held
+    private void removeMinedIndex(Sha256Hash hash) {
+        Long height = isLockHashHeight.remove(hash);
+        if (height == null)
+            return;
+        HashSet<Sha256Hash> hashes = minedIndex.get(height);
+        if (hashes != null) {
+            hashes.remove(hash);
+            if (hashes.isEmpty())
+                minedIndex.remove(height);
+        }
+    }
 
     public void writeInstantSendLockMined(Sha256Hash hash, long height) {
         lock.lock();
         try {
-            isLockHashHeight.put(hash, height);
+            addMinedIndex(hash, height);
         } finally {
             lock.unlock();
         }
+        saveLater();
+    }
+
+    // lock must be held
+    private void addMinedIndex(Sha256Hash hash, long height) {
+        removeMinedIndex(hash);
+        isLockHashHeight.put(hash, height);
+        HashSet<Sha256Hash> hashes = minedIndex.get(height);
+        if (hashes == null) {
+            hashes = new HashSet<Sha256Hash>();
+            minedIndex.put(height, hashes);
+        }
+        hashes.add(hash);
     }
+
     public void removeInstantSendLockMined(Sha256Hash hash, long height) {
         lock.lock();
         try {
-            if(isLockHashHeight.containsKey(hash))
-                isLockHashHeight.remove(hash);
+            removeMinedIndex(hash);
         } finally {
             lock.unlock();
         }
+        saveLater();
     }
 
     public HashMap<Sha256Hash, InstantSendLock> removeConfirmedInstantSendLocks(int untilHeight) {
 
         HashMap<Sha256Hash, InstantSendLock> result = new HashMap<Sha256Hash, InstantSendLock>();
 
-        Iterator<Map.Entry<Sha256Hash, Long>> iterator = isLockHashHeight.entrySet().iterator();
-        while(iterator.hasNext()) {
-            Map.Entry<Sha256Hash, Long> entry = iterator.next();
-            long height = entry.getValue();
-            if(height > untilHeight)
-                break;
-            Sha256Hash lockHash = entry.getKey();
-            InstantSendLock islock = getInstantSendLockByHash(lockHash);
-            if(islock != null) {
-                removeInstantSendLock(lockHash, islock);
-                result.put(lockHash, islock);
+        int expired;
+        lock.lock();
+        try {
+            Iterator<HashSet<Sha256Hash>> iterator = minedIndex.headMap((long) untilHeight, true).values().iterator();
+            while (iterator.hasNext()) {
+                for (Sha256Hash lockHash : iterator.next()) {
+                    isLockHashHeight.remove(lockHash);
+                    InstantSendLock islock = islockCache.get(lockHash);
+                    if (islock != null) {
+                        result.put(lockHash, islock);
+                        isLockTimes.remove(lockHash);
+                        removeIndexes(lockHash);
+                    }
+                }
                 iterator.remove();
             }
+            expired = removeExpiredInstantSendLocks(Utils.currentTimeSeconds() - MAX_INSTANTSEND_LOCK_AGE);
+        } finally {
+            lock.unlock();
         }
+        if (!result.isEmpty() || expired > 0)
+            saveLater();
         return result;
     }
 
+    // lock must be held
+    private int removeExpiredInstantSendLocks(long untilTime) {
+        int removed = 0;
+        Iterator<Map.Entry<Sha256Hash, Long>> iterator = isLockTimes.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Sha256Hash, Long> entry = iterator.next();
+            if (entry.getValue() > untilTime)
+                break;
+            iterator.remove();
+            removeIndexes(entry.getKey());
+            removed++;
+        }
+        return removed;
+    }
+
     public InstantSendLock getInstantSendLockByHash(Sha256Hash hash) {
         lock.lock();
         try {
@@ -149,14 +243,44 @@ public class SPVInstantSendDatabase extends AbstractManager implements InstantSe
 
     @Override
     protected void parse() throws ProtocolException {
+        islockCache = new HashMap<Sha256Hash, InstantSendLock>();
+        txidCache = new HashMap<Sha256Hash, Sha256Hash>();
+        outpointCache = new HashMap<TransactionOutPoint, Sha256Hash>();
+        isLockHashHeight = new HashMap<Sha256Hash, Long>();
+        minedIndex = new TreeMap<Long, HashSet<Sha256Hash>>();
+        isLockTimes = new LinkedHashMap<Sha256Hash, Long>();
 
+        int size = (int) readVarInt();
+        for (int i = 0; i < size; i++) {
+            Sha256Hash hash = readHash();
+            long time = readInt64();
+            long height = readInt64();
+            int version = readBytes(1)[0];
+            InstantSendLock islock = new InstantSendLock(params, payload, cursor, version);
+            cursor += islock.getMessageSize();
+
+            addInstantSendLock(hash, islock, time);
+            if (height >= 0)
+                addMinedIndex(hash, height);
+        }
+        length = cursor - offset;
     }
 
     @Override
     protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
         lock.lock();
         try {
-
+            stream.write(new VarInt(isLockTimes.size()).encode());
+            for (Map.Entry<Sha256Hash, Long> entry : isLockTimes.entrySet()) {
+                Sha256Hash hash = entry.getKey();
+                InstantSendLock islock = islockCache.get(hash);
+                Long height = isLockHashHeight.get(hash);
+                stream.write(hash.getReversedBytes());
+                Utils.int64ToByteStreamLE(entry.getValue(), stream);
+                Utils.int64ToByteStreamLE(height != null ? height : -1, stream);
+                stream.write(islock.isDeterministic() ? InstantSendLock.ISDLOCK_VERSION : InstantSendLock.ISLOCK_VERSION);
+                islock.bitcoinSerialize(stream);
+            }
         } finally {
             lock.unlock();
         }
@@ -169,21 +293,33 @@ public class SPVInstantSendDatabase extends AbstractManager implements InstantSe
 
     @Override
     public void checkAndRemove() {
-
+        lock.lock();
+        try {
+            int removed = removeExpiredInstantSendLocks(Utils.currentTimeSeconds() - MAX_INSTANTSEND_LOCK_AGE);
+            if (removed > 0)
+                log.info("removed {} expired islocks", removed);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void clear() {
-
+        lock.lock();
+        try {
+            islockCache.clear();
+            txidCache.clear();
+            outpointCache.clear();
+            isLockHashHeight.clear();
+            minedIndex.clear();
+            isLockTimes.clear();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public int calculateMessageSizeInBytes() {
         return 0;
     }
-
-    @Override
-    public void close() {
-
-    }
 }
@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class SPVQuorumManager extends QuorumManager {
 
@@ -49,19 +50,8 @@ public class SPVQuorumManager extends QuorumManager {
             if (list == null)
                 return result;  // return empty list
         }
-        final LLMQParameters llmqParameters = context.getParams().getLlmqs().get(llmqType);
-        list.forEachQuorum(true, new SimplifiedQuorumList.ForeachQuorumCallback() {
-            int found = 0;
-            @Override
-            public void processQuorum(FinalCommitment fqc) {
-                if(fqc.llmqType == llmqType.getValue() && found < maxCount) {
-                    found++;
-                    Quorum quorum = new Quorum(llmqParameters, fqc);
-                    result.add(quorum);
-                }
-
-            }
-        });
+        List<Quorum> quorums = list.getQuorums(llmqType);
+        result.addAll(quorums.subList(0, (int) Math.min(quorums.size(), maxCount)));
         return result;
     }
 
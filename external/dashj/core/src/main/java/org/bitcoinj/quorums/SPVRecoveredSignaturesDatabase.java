@@ -8,52 +8,58 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Keeps the recovered signatures in memory, indexed by sign hash, id and hash, and saves them with
+ * {@link org.bitcoinj.store.FlatDB} so that they survive a restart.
+ *
+ * The number of signatures is bounded by {@link #MAX_RECOVERED_SIGS}, the oldest are dropped first.
+ */
 public class SPVRecoveredSignaturesDatabase extends AbstractManager implements RecoveredSignaturesDatabase {
 
     private static final Logger log = LoggerFactory.getLogger(SPVRecoveredSignaturesDatabase.class);
     private ReentrantLock lock = Threading.lock("SPVRecoveredSignaturesDatabase");
 
+    static final int MAX_RECOVERED_SIGS = 10000;
+
     SigningManager manager;
-    ArrayList<RecoveredSignature> recoveredSignatures;
-    HashMap<Sha256Hash, RecoveredSignature> mapBySignHash;
+    // in the order they were written, oldest first
+    LinkedHashMap<Sha256Hash, RecoveredSignature> mapBySignHash;
     HashMap<Pair<Integer, Sha256Hash>, RecoveredSignature> mapById;
+    HashMap<Sha256Hash, Sha256Hash> mapByHash;
     HashMap<Pair<Integer, Sha256Hash>, Sha256Hash> mapVotes;
-    HashMap<Pair<Integer, Sha256Hash>, Boolean> hasSigForIdCache;
-    HashMap<Sha256Hash, Boolean> hasSigForSessionCache;
-    HashMap<Sha256Hash, Boolean> hasSigForHashCache;
+    // the time in seconds when a recovered signature was written, by sign hash
     HashMap<Sha256Hash, Long> mapTimeStamps;
 
 
     public SPVRecoveredSignaturesDatabase(Context context) {
         super(context);
-        recoveredSignatures = new ArrayList<RecoveredSignature>();
-        hasSigForHashCache = new HashMap<Sha256Hash, Boolean>();
-        hasSigForIdCache = new HashMap<Pair<Integer, Sha256Hash>, Boolean>();
-        hasSigForSessionCache = new HashMap<Sha256Hash, Boolean>();
-        mapBySignHash = new HashMap<Sha256Hash, RecoveredSignature>();
+        mapBySignHash = new LinkedHashMap<Sha256Hash, RecoveredSignature>();
         mapById = new HashMap<Pair<Integer, Sha256Hash>, RecoveredSignature>();
+        mapByHash = new HashMap<Sha256Hash, Sha256Hash>();
         mapVotes = new HashMap<Pair<Integer, Sha256Hash>, Sha256Hash>();
         mapTimeStamps = new HashMap<Sha256Hash, Long>();
     }
 
     public boolean hasRecoveredSig(LLMQParameters.LLMQType llmqType, Sha256Hash id, Sha256Hash msgHash){
-        for(RecoveredSignature recSig : recoveredSignatures) {
-            if(recSig.llmqType == llmqType.getValue() && recSig.id.equals(id) && recSig.msgHash.equals(msgHash))
-                return true;
+        lock.lock();
+        try {
+            RecoveredSignature recSig = mapById.get(new Pair<>(llmqType.getValue(), id));
+            return recSig != null && recSig.msgHash.equals(msgHash);
+        } finally {
+            lock.unlock();
         }
-        return false;
     }
 
     public boolean hasRecoveredSigForId(LLMQParameters.LLMQType llmqType, Sha256Hash id) {
         lock.lock();
         try {
-            Boolean result = hasSigForIdCache.get(new Pair(llmqType.getValue(), id));
-            return result != null ? result : false;
+            return mapById.containsKey(new Pair<>(llmqType.getValue(), id));
         } finally {
             lock.unlock();
         }
@@ -62,8 +68,7 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     public boolean hasRecoveredSigForSession(Sha256Hash signHash) {
         lock.lock();
         try {
-            Boolean result = hasSigForSessionCache.get(signHash);
-            return result != null ? result : false;
+            return mapBySignHash.containsKey(signHash);
         } finally {
             lock.unlock();
         }
@@ -71,7 +76,7 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     public boolean hasRecoveredSigForHash(Sha256Hash hash) {
         lock.lock();
         try {
-            return hasSigForHashCache.containsKey(hash);
+            return mapByHash.containsKey(hash);
         } finally {
             lock.unlock();
         }
@@ -79,7 +84,8 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     public RecoveredSignature getRecoveredSigByHash(Sha256Hash hash) {
         lock.lock();
         try {
-            return mapBySignHash.get(hash);
+            Sha256Hash signHash = mapByHash.get(hash);
+            return signHash != null ? mapBySignHash.get(signHash) : null;
         } finally {
             lock.unlock();
         }
@@ -87,7 +93,7 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     public RecoveredSignature getRecoveredSigById(LLMQParameters.LLMQType llmqType, Sha256Hash id) {
         lock.lock();
         try {
-            return mapById.get(new Pair(llmqType.value, id));
+            return mapById.get(new Pair<>(llmqType.value, id));
         } finally {
             lock.unlock();
         }
@@ -96,52 +102,77 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     public void writeRecoveredSig(RecoveredSignature recSig) {
         lock.lock();
         try {
-            Sha256Hash signHash = LLMQUtils.buildSignHash(recSig.llmqType, recSig.quorumHash, recSig.id, recSig.id);
-            recoveredSignatures.add(recSig);
-            mapBySignHash.put(signHash, recSig);
-            Pair<Integer, Sha256Hash> idPair = new Pair(recSig.llmqType, recSig.id);
-            mapById.put(idPair, recSig);
-            hasSigForIdCache.put(idPair, true);
-            hasSigForSessionCache.put(signHash, true);
-            hasSigForHashCache.put(recSig.getHash(), true);
-            mapTimeStamps.put(signHash, Utils.currentTimeMillis());
-            //save();
+            addRecoveredSig(recSig, Utils.currentTimeSeconds());
+            // drop the oldest signatures when there are too many
+            Iterator<Sha256Hash> oldest = mapBySignHash.keySet().iterator();
+            while (mapBySignHash.size() > MAX_RECOVERED_SIGS && oldest.hasNext()) {
+                Sha256Hash signHash = oldest.next();
+                RecoveredSignature oldestRecSig = mapBySignHash.get(signHash);
+                oldest.remove();
+                removeIndexes(signHash, oldestRecSig);
+            }
         } finally {
             lock.unlock();
         }
+        saveLater();
+    }
+
+    // lock must be held
+    private void addRecoveredSig(RecoveredSignature recSig, long time) {
+        Sha256Hash signHash = LLMQUtils.buildSignHash(recSig);
+        // move it to the end, where the newest are
+        mapBySignHash.remove(signHash);
+        mapBySignHash.put(signHash, recSig);
+        Pair<Integer, Sha256Hash> idPair = new Pair<>(recSig.llmqType, recSig.id);
+        mapById.put(idPair, recSig);
+        mapByHash.put(recSig.getHash(), signHash);
+        mapTimeStamps.put(signHash, time);
+        // votes are removed when the recovered sig is written to the db
+        mapVotes.remove(idPair);
+    }
+
+    // lock must be held, mapBySignHash is left to the caller so that it can remove while iterating
+    private void removeIndexes(Sha256Hash signHash, RecoveredSignature recSig) {
+        Pair<Integer, Sha256Hash> idPair = new Pair<>(recSig.llmqType, recSig.id);
+        if (mapById.get(idPair) == recSig)
+            mapById.remove(idPair);
+        mapByHash.remove(recSig.getHash());
+        mapTimeStamps.remove(signHash);
     }
 
+    /** Removes the recovered signatures that were written more than <code>maxAge</code> seconds ago. */
     public void cleanupOldRecoveredSignatures(long maxAge) {
+        int removed;
+        lock.lock();
+        try {
+            removed = removeRecoveredSigsUntil(Utils.currentTimeSeconds() - maxAge);
+        } finally {
+            lock.unlock();
+        }
+        if (removed > 0)
+            saveLater();
+    }
 
-            lock.lock();
-            try {
-                ArrayList<Sha256Hash> toDelete = new ArrayList<Sha256Hash>();
-
-                for(Map.Entry<Sha256Hash, Long> entry : mapTimeStamps.entrySet()) {
-                    if(entry.getValue() > maxAge)
-                        toDelete.add(entry.getKey());
-                }
-
-                for(Sha256Hash signHash : toDelete) {
-                    RecoveredSignature recSig = mapBySignHash.get(signHash);
-                    hasSigForIdCache.remove(new Pair(recSig.llmqType, recSig.id));
-                    hasSigForSessionCache.remove(signHash);
-                    hasSigForHashCache.remove(recSig.getHash());
-                    mapTimeStamps.remove(signHash);
-                    recoveredSignatures.remove(recSig);
-                    mapBySignHash.remove(signHash);
-                    mapById.remove(new Pair(recSig.llmqType, recSig.id));
-                }
-            } finally {
-                lock.unlock();
-            }
+    // lock must be held
+    private int removeRecoveredSigsUntil(long untilTime) {
+        int removed = 0;
+        Iterator<Map.Entry<Sha256Hash, RecoveredSignature>> iterator = mapBySignHash.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Sha256Hash, RecoveredSignature> entry = iterator.next();
+            if (mapTimeStamps.get(entry.getKey()) > untilTime)
+                break;
+            iterator.remove();
+            removeIndexes(entry.getKey(), entry.getValue());
+            removed++;
         }
+        return removed;
+    }
 
     // votes are removed when the recovered sig is written to the db
     public boolean hasVotedOnId(LLMQParameters.LLMQType llmqType, Sha256Hash id) {
         lock.lock();
         try {
-            return mapVotes.containsKey(new Pair(llmqType.value, id));
+            return mapVotes.containsKey(new Pair<>(llmqType.value, id));
         } finally {
             lock.unlock();
         }
@@ -149,7 +180,7 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     public Sha256Hash getVoteForId(LLMQParameters.LLMQType llmqType, Sha256Hash id) {
         lock.lock();
         try {
-            return mapVotes.get(new Pair(llmqType.value, id));
+            return mapVotes.get(new Pair<>(llmqType.value, id));
         } finally {
             lock.unlock();
         }
@@ -157,7 +188,7 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     public void writeVoteForId(LLMQParameters.LLMQType llmqType, Sha256Hash id, Sha256Hash msgHash) {
         lock.lock();
         try {
-            mapVotes.put(new Pair(llmqType.value, id), msgHash);
+            mapVotes.put(new Pair<>(llmqType.value, id), msgHash);
         } finally {
             lock.unlock();
         }
@@ -165,14 +196,31 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
 
     @Override
     protected void parse() throws ProtocolException {
+        mapBySignHash = new LinkedHashMap<Sha256Hash, RecoveredSignature>();
+        mapById = new HashMap<Pair<Integer, Sha256Hash>, RecoveredSignature>();
+        mapByHash = new HashMap<Sha256Hash, Sha256Hash>();
+        mapVotes = new HashMap<Pair<Integer, Sha256Hash>, Sha256Hash>();
+        mapTimeStamps = new HashMap<Sha256Hash, Long>();
 
+        int size = (int) readVarInt();
+        for (int i = 0; i < size; i++) {
+            long time = readInt64();
+            RecoveredSignature recSig = new RecoveredSignature(params, payload, cursor);
+            cursor += recSig.getMessageSize();
+            addRecoveredSig(recSig, time);
+        }
+        length = cursor - offset;
     }
 
     @Override
     protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
         lock.lock();
         try {
-
+            stream.write(new VarInt(mapBySignHash.size()).encode());
+            for (Map.Entry<Sha256Hash, RecoveredSignature> entry : mapBySignHash.entrySet()) {
+                Utils.int64ToByteStreamLE(mapTimeStamps.get(entry.getKey()), stream);
+                entry.getValue().bitcoinSerialize(stream);
+            }
         } finally {
             lock.unlock();
         }
@@ -185,12 +233,28 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
 
     @Override
     public void checkAndRemove() {
-
+        lock.lock();
+        try {
+            int removed = removeRecoveredSigsUntil(Utils.currentTimeSeconds() - SigningManager.DEFAULT_MAX_RECOVERED_SIGS_AGE);
+            if (removed > 0)
+                log.info("removed {} expired recovered signatures", removed);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void clear() {
-
+        lock.lock();
+        try {
+            mapBySignHash.clear();
+            mapById.clear();
+            mapByHash.clear();
+            mapVotes.clear();
+            mapTimeStamps.clear();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -199,7 +263,7 @@ public class SPVRecoveredSignaturesDatabase extends AbstractManager implements R
     }
 
     @Override
-    public void close() {
-
+    public String toString() {
+        return String.format("SPVRecSigDB:  recoveredSigs: %d, votes: %d", mapBySignHash.size(), mapVotes.size());
     }
 }
@@ -10,9 +10,11 @@ import org.bitcoinj.utils.Threading;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.bitcoinj.core.Sha256Hash.hashTwice;
@@ -30,6 +32,8 @@ public class SimplifiedQuorumList extends Message {
     HashMap<Pair<Integer, Sha256Hash>, Sha256Hash> minableCommitmentsByQuorum;
     LinkedHashMap<Sha256Hash, FinalCommitment> minableCommitments;
     private CoinbaseTx coinbaseTxPayload;
+    // the valid quorums by llmqType, built when they are first needed and dropped when the commitments change
+    private final HashMap<Integer, List<Quorum>> quorumsByType = new HashMap<>();
 
     public SimplifiedQuorumList(NetworkParameters params) {
         super(params);
@@ -138,6 +142,7 @@ public class SimplifiedQuorumList extends Message {
             for (Pair<Integer, Sha256Hash> quorum : diff.getDeletedQuorums()) {
                 result.removeCommitment(quorum);
             }
+            FinalCommitmentBatchVerifier verifier = new FinalCommitmentBatchVerifier(getCommitmentVerificationPool());
             for (int i = 0; i < diff.getNewQuorums().size(); ++i) {
                 FinalCommitment entry = diff.getNewQuorums().get(i);
                 BLSSignature signature = diff.getQuorumsCLSigs() != null ?
@@ -148,10 +153,11 @@ public class SimplifiedQuorumList extends Message {
                 // find a better way to do this
                 if ((doDIP24 && entry.llmqType == params.getLlmqDIP0024InstantSend().value) || (!doDIP24 && entry.llmqType != params.getLlmqDIP0024InstantSend().value)) {
                     // for now, don't use the return value
-                    verifyQuorum(isLoadingBootstrap, chain, validateOldQuorums, entry);
+                    verifyQuorum(isLoadingBootstrap, chain, validateOldQuorums, entry, verifier);
                 }
                 result.addCommitment(entry);
             }
+            verifyCommitmentSignatures(verifier);
             return result;
         } catch (BlockStoreException x) {
             throw new ProtocolException(x);
@@ -164,18 +170,25 @@ public class SimplifiedQuorumList extends Message {
         lock.lock();
         try {
             int verifiedCount = 0;
+            FinalCommitmentBatchVerifier verifier = new FinalCommitmentBatchVerifier(getCommitmentVerificationPool());
             for (FinalCommitment entry : minableCommitments.values()) {
-                if (verifyQuorum(isLoadingBootstrap, chain, validateOldQuorums, entry)) {
+                if (verifyQuorum(isLoadingBootstrap, chain, validateOldQuorums, entry, verifier)) {
                     verifiedCount++;
                 }
             }
+            verifiedCount -= verifyCommitmentSignatures(verifier);
             log.info("verified {} of {} quorums", verifiedCount, minableCommitments.size());
         } finally {
             lock.unlock();
         }
     }
 
-    private boolean verifyQuorum(boolean isLoadingBootstrap, DualBlockChain chain, boolean validateOldQuorums, FinalCommitment entry) throws BlockStoreException {
+    /**
+     * Checks everything about the commitment except its signatures, which are added to the verifier to be checked
+     * together with those of the other commitments.
+     */
+    private boolean verifyQuorum(boolean isLoadingBootstrap, DualBlockChain chain, boolean validateOldQuorums, FinalCommitment entry,
+                                 FinalCommitmentBatchVerifier verifier) throws BlockStoreException {
         StoredBlock block = chain.getBlock(entry.getQuorumHash());
         if (block != null) {
             LLMQParameters llmqParameters = params.getLlmqs().get(entry.getLlmqType());
@@ -187,7 +200,7 @@ public class SimplifiedQuorumList extends Message {
                 if (block.getHeight() % dkgInterval != 0)
                     throw new ProtocolException("Quorum block height does not match interval for " + entry.quorumHash);
             }
-            boolean isVerified = checkCommitment(entry, block, Context.get().masternodeListManager, chain, validateOldQuorums);
+            boolean isVerified = checkCommitment(entry, block, Context.get().masternodeListManager, chain, validateOldQuorums, verifier);
             isFirstQuorumCheck = false;
             return isVerified;
         } else {
@@ -214,6 +227,7 @@ public class SimplifiedQuorumList extends Message {
             Pair<Integer, Sha256Hash> pair = new Pair(commitment.llmqType, commitment.quorumHash);
             minableCommitmentsByQuorum.put(pair, commitmentHash);
             minableCommitments.put(commitmentHash, commitment);
+            quorumsByType.clear();
         } finally {
             lock.unlock();
         }
@@ -228,6 +242,7 @@ public class SimplifiedQuorumList extends Message {
                 Sha256Hash commitmentHash = minableCommitmentsByQuorum.get(quorum);
                 minableCommitments.remove(commitmentHash);
                 minableCommitmentsByQuorum.remove(quorum);
+                quorumsByType.clear();
             }
         } finally {
             lock.unlock();
@@ -245,6 +260,30 @@ public class SimplifiedQuorumList extends Message {
     }
 
 
+    /**
+     * Returns the valid quorums of the given type in the order of the list. The same {@link Quorum} objects are
+     * returned until the commitments of this list change, so their public keys are only deserialized once.
+     */
+    public List<Quorum> getQuorums(LLMQParameters.LLMQType llmqType) {
+        lock.lock();
+        try {
+            List<Quorum> quorums = quorumsByType.get(llmqType.getValue());
+            if (quorums == null) {
+                LLMQParameters llmqParameters = params.getLlmqs().get(llmqType);
+                ArrayList<Quorum> result = new ArrayList<>();
+                for (FinalCommitment commitment : minableCommitments.values()) {
+                    if (commitment.llmqType == llmqType.getValue() && isCommitmentValid(commitment))
+                        result.add(new Quorum(llmqParameters, commitment));
+                }
+                quorums = Collections.unmodifiableList(result);
+                quorumsByType.put(llmqType.getValue(), quorums);
+            }
+            return quorums;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public Quorum getQuorum(Sha256Hash quorumHash) {
         lock.lock();
         FinalCommitment finalCommitment = null;
@@ -467,7 +506,7 @@ public class SimplifiedQuorumList extends Message {
     }
 
     private boolean checkCommitment(FinalCommitment commitment, StoredBlock prevBlock, SimplifiedMasternodeListManager manager,
-                         DualBlockChain chain, boolean validateQuorums) throws BlockStoreException
+                         DualBlockChain chain, boolean validateQuorums, FinalCommitmentBatchVerifier verifier) throws BlockStoreException
     {
         if (commitment.getVersion() == 0 || commitment.getVersion() > FinalCommitment.MAX_VERSION) {
             throw new VerificationException("invalid quorum commitment version: " + commitment.getVersion());
@@ -518,20 +557,45 @@ public class SimplifiedQuorumList extends Message {
                 log.info(builder.toString());
             }
 
-            if (!commitment.verify(quorumBlock, members, true)) {
-                // TODO: originally, the exception was thrown here.  For now, report the error to the logs
-                // throw new VerificationException("invalid quorum commitment: " + commitment);
-                log.info("invalid quorum commitment: {}:{}: quorumPublicKey = {}, membersSignature = {}", commitment.quorumHash, commitment.quorumIndex, commitment.quorumPublicKey, commitment.membersSignature);
+            if (!commitment.verify(quorumBlock, members, false)) {
+                logInvalidCommitment(commitment);
                 return false;
-            } else {
-                log.info("valid quorum commitment: {}:{}: quorumPublicKey = {}, membersSignature = {}", commitment.quorumHash, commitment.quorumIndex, commitment.quorumPublicKey, commitment.membersSignature);
-                return true;
             }
+            // the signatures are checked later, see verifyCommitmentSignatures
+            verifier.add(commitment, members);
+            return true;
         }
         // skip validation, but return ture
         return true;
     }
 
+    @Nullable
+    private static ExecutorService getCommitmentVerificationPool() {
+        SimplifiedMasternodeListManager manager = Context.get().masternodeListManager;
+        return manager != null ? manager.getCommitmentVerificationPool() : null;
+    }
+
+    /** Checks the signatures of the commitments collected by checkCommitment, returns the number of invalid ones. */
+    private int verifyCommitmentSignatures(FinalCommitmentBatchVerifier verifier) {
+        if (verifier.isEmpty())
+            return 0;
+        Set<FinalCommitment> invalid = verifier.verify();
+        for (FinalCommitment commitment : verifier.getCommitments()) {
+            if (invalid.contains(commitment)) {
+                logInvalidCommitment(commitment);
+            } else {
+                log.info("valid quorum commitment: {}:{}: quorumPublicKey = {}, membersSignature = {}", commitment.quorumHash, commitment.quorumIndex, commitment.quorumPublicKey, commitment.membersSignature);
+            }
+        }
+        return invalid.size();
+    }
+
+    private void logInvalidCommitment(FinalCommitment commitment) {
+        // TODO: originally, the exception was thrown here.  For now, report the error to the logs
+        // throw new VerificationException("invalid quorum commitment: " + commitment);
+        log.info("invalid quorum commitment: {}:{}: quorumPublicKey = {}, membersSignature = {}", commitment.quorumHash, commitment.quorumIndex, commitment.quorumPublicKey, commitment.membersSignature);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
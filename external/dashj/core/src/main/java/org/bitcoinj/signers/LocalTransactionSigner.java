@@ -17,7 +17,11 @@
 
 package org.bitcoinj.signers;
 
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.core.ECKey;
@@ -59,6 +63,12 @@ public class LocalTransactionSigner implements TransactionSigner {
     private static final EnumSet<VerifyFlag> MINIMUM_VERIFY_FLAGS = EnumSet.of(VerifyFlag.P2SH,
         VerifyFlag.NULLDUMMY);
 
+    /**
+     * Transactions with at least this many inputs to sign have their signatures computed in parallel on the common
+     * {@link ForkJoinPool}.
+     */
+    public static final int PARALLEL_SIGNING_THRESHOLD = 8;
+
     @Override
     public boolean isReady() {
         return true;
@@ -68,6 +78,7 @@ public class LocalTransactionSigner implements TransactionSigner {
     public boolean signInputs(ProposedTransaction propTx, KeyBag keyBag) {
         Transaction tx = propTx.partialTx;
         int numInputs = tx.getInputs().size();
+        List<InputSigning> signings = new ArrayList<>();
         for (int i = 0; i < numInputs; i++) {
             TransactionInput txIn = tx.getInput(i);
             final TransactionOutput connectedOutput = txIn.getConnectedOutput();
@@ -107,38 +118,101 @@ public class LocalTransactionSigner implements TransactionSigner {
                 continue;
             }
 
-            Script inputScript = txIn.getScriptSig();
             // script here would be either a standard CHECKSIG program for P2PKH or P2PK inputs or
             // a CHECKMULTISIG program for P2SH inputs
             byte[] script = redeemData.redeemScript.getProgram();
-            try {
-                if (ScriptPattern.isP2PK(scriptPubKey) || ScriptPattern.isP2PKH(scriptPubKey)
-                        || ScriptPattern.isP2SH(scriptPubKey)) {
-                    TransactionSignature signature = tx.calculateSignature(i, key, script, Transaction.SigHash.ALL,
-                            false);
-
-                    // at this point we have incomplete inputScript with OP_0 in place of one or more signatures. We
-                    // already have calculated the signature using the local key and now need to insert it in the
-                    // correct place within inputScript. For P2PKH and P2PK script there is only one signature and it
-                    // always goes first in an inputScript (sigIndex = 0). In P2SH input scripts we need to figure out
-                    // our relative position relative to other signers. Since we don't have that information at this
-                    // point, and since we always run first, we have to depend on the other signers rearranging the
-                    // signatures as needed. Therefore, always place as first signature.
-                    int sigIndex = 0;
-                    inputScript = scriptPubKey.getScriptSigWithSignature(inputScript, signature.encodeToBitcoin(),
-                            sigIndex);
-                    txIn.setScriptSig(inputScript);
-                } else {
-                    throw new IllegalStateException(script.toString());
-                }
-            } catch (ECKey.KeyIsEncryptedException e) {
-                throw e;
-            } catch (ECKey.MissingPrivateKeyException e) {
-                log.warn("No private key in keypair for input {}", i);
+            if (ScriptPattern.isP2PK(scriptPubKey) || ScriptPattern.isP2PKH(scriptPubKey)
+                    || ScriptPattern.isP2SH(scriptPubKey)) {
+                signings.add(new InputSigning(i, key, script, scriptPubKey));
+            } else {
+                throw new IllegalStateException(script.toString());
             }
+        }
 
+        if (signings.size() >= PARALLEL_SIGNING_THRESHOLD) {
+            // Serialize once here, so the pool threads hashing the transaction only read it.
+            tx.unsafeBitcoinSerialize();
+            ForkJoinPool.commonPool().invoke(new SignTask(tx, signings, 0, signings.size()));
+        } else {
+            for (InputSigning signing : signings)
+                signing.sign(tx);
+        }
+
+        for (InputSigning signing : signings) {
+            if (signing.failure instanceof ECKey.KeyIsEncryptedException)
+                throw (ECKey.KeyIsEncryptedException) signing.failure;
+            if (signing.failure instanceof ECKey.MissingPrivateKeyException) {
+                log.warn("No private key in keypair for input {}", signing.index);
+                continue;
+            }
+            if (signing.failure != null)
+                throw signing.failure;
+
+            TransactionInput txIn = tx.getInput(signing.index);
+            // at this point we have incomplete inputScript with OP_0 in place of one or more signatures. We
+            // already have calculated the signature using the local key and now need to insert it in the
+            // correct place within inputScript. For P2PKH and P2PK script there is only one signature and it
+            // always goes first in an inputScript (sigIndex = 0). In P2SH input scripts we need to figure out
+            // our relative position relative to other signers. Since we don't have that information at this
+            // point, and since we always run first, we have to depend on the other signers rearranging the
+            // signatures as needed. Therefore, always place as first signature.
+            int sigIndex = 0;
+            Script inputScript = signing.scriptPubKey.getScriptSigWithSignature(txIn.getScriptSig(),
+                    signing.signature.encodeToBitcoin(), sigIndex);
+            txIn.setScriptSig(inputScript);
         }
         return true;
     }
 
+    /** The signature of one input, which is computed before any input script of the transaction is changed. */
+    private static class InputSigning {
+        final int index;
+        final ECKey key;
+        final byte[] script;
+        final Script scriptPubKey;
+        TransactionSignature signature;
+        RuntimeException failure;
+
+        InputSigning(int index, ECKey key, byte[] script, Script scriptPubKey) {
+            this.index = index;
+            this.key = key;
+            this.script = script;
+            this.scriptPubKey = scriptPubKey;
+        }
+
+        void sign(Transaction tx) {
+            try {
+                signature = tx.calculateSignature(index, key, script, Transaction.SigHash.ALL, false);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /** Computes the signatures in [start, end), splitting the range until it is a single input. */
+    private static class SignTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Transaction tx;
+        private final List<InputSigning> signings;
+        private final int start;
+        private final int end;
+
+        SignTask(Transaction tx, List<InputSigning> signings, int start, int end) {
+            this.tx = tx;
+            this.signings = signings;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) >>> 1;
+                invokeAll(new SignTask(tx, signings, start, middle), new SignTask(tx, signings, middle, end));
+                return;
+            }
+            signings.get(start).sign(tx);
+        }
+    }
 }
@@ -5,10 +5,15 @@ import org.bitcoinj.core.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -19,6 +24,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class FlatDB<Type extends AbstractManager> {
     private static final Logger log = LoggerFactory.getLogger(FlatDB.class);
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
     private String pathDB;
     private String previousPathDB;
     private String fileName;
@@ -106,29 +112,35 @@ public class FlatDB<Type extends AbstractManager> {
             if (!magicMessage.contains("-"))
                 magicMessage = object.getMagicMessage();
 
-            // serialize, checksum data up to that point, then append checksum
-            UnsafeByteArrayOutputStream stream = new UnsafeByteArrayOutputStream(object.calculateMessageSizeInBytes()+4+magicMessage.getBytes().length);
-            stream.write(magicMessage.getBytes());
-            Utils.uint32ToByteStreamLE(object.getParams().getPacketMagic(), stream);
-            object.bitcoinSerialize(stream);
-
-            Sha256Hash hash = Sha256Hash.twiceOf(stream.toByteArray());
-
-            stream.write(hash.getReversedBytes());
-
+            // serialize straight to the file while computing the checksum, then append checksum
             FileOutputStream fileStream = new FileOutputStream(pathDB);
-
-            fileStream.write(stream.toByteArray());
-
-            fileStream.close();
+            try {
+                OutputStream bufferedStream = new BufferedOutputStream(fileStream, WRITE_BUFFER_SIZE);
+                MessageDigest digest = Sha256Hash.newDigest();
+                OutputStream stream = new DigestOutputStream(bufferedStream, digest);
+                stream.write(magicMessage.getBytes());
+                Utils.uint32ToByteStreamLE(object.getParams().getPacketMagic(), stream);
+                object.bitcoinSerialize(stream);
+
+                Sha256Hash hash = Sha256Hash.wrap(digest.digest(digest.digest()));
+
+                bufferedStream.write(hash.getReversedBytes());
+                bufferedStream.flush();
+                // make sure the data is on disk before the file is renamed over the previous one
+                fileStream.getFD().sync();
+            } finally {
+                fileStream.close();
+            }
 
             log.info("Written info to {}  {}ms", pathDB, watch.elapsed(TimeUnit.MILLISECONDS));
             log.info("  {}", object);
 
             return true;
         } catch (IndexOutOfBoundsException x) {
+            log.error("Failed to write {}", pathDB, x);
             return false;
         } catch (IOException x) {
+            log.error("Failed to write {}", pathDB, x);
             return false;
         }
     }
@@ -150,13 +162,12 @@ public class FlatDB<Type extends AbstractManager> {
                 previousPathDB = directory + File.separator + object.getPreviousDefaultFileName();
             }
 
-            FileInputStream fileStream = new FileInputStream(pathDB);
-
             File file = new File(pathDB);
             // try loading the previous file
             if (!file.exists() && previousPathDB != null) {
                 file = new File(previousPathDB);
             }
+            FileInputStream fileStream = new FileInputStream(file);
 
             // use file size to size memory buffer
             long fileSize = file.length();
@@ -173,12 +184,14 @@ public class FlatDB<Type extends AbstractManager> {
             byte [] vchData = new byte[(int)dataSize];
 
             try {
-                fileStream.read(vchData);
-                fileStream.read(hashIn);
+                DataInputStream dataStream = new DataInputStream(fileStream);
+                dataStream.readFully(vchData);
+                dataStream.readFully(hashIn);
             } catch (IOException x) {
                 return ReadResult.HashReadError;
+            } finally {
+                fileStream.close();
             }
-            fileStream.close();
 
             // verify stored checksum matches input data
             Sha256Hash hashTmp = Sha256Hash.twiceOf(vchData);
@@ -233,7 +246,7 @@ public class FlatDB<Type extends AbstractManager> {
                 pchMsgTmp = Utils.readUint32(vchData, magicMessage.length());
 
                 // ... verify the network matches ours
-                if (pchMsgTmp != context.getParams().getPacketMagic()) {
+                if (pchMsgTmp != (context.getParams().getPacketMagic() & 0xffffffffL)) {
                     log.error("Invalid network magic number");
                     return ReadResult.IncorrectMagicNumber;
                 }
@@ -293,10 +306,10 @@ public class FlatDB<Type extends AbstractManager> {
         Stopwatch watch = Stopwatch.createStarted();
 
         log.info("Writing {} to {}...", objToSave.getMagicMessage(), fileName);
-        write(objToSave);
+        boolean result = write(objToSave);
         log.info("{} dump finished  {}ms", fileName, watch.elapsed(TimeUnit.MILLISECONDS));
 
-        return true;
+        return result;
     }
 }
 
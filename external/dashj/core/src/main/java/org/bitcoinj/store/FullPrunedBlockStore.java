@@ -18,6 +18,7 @@ package org.bitcoinj.store;
 
 import org.bitcoinj.core.*;
 
+import java.util.List;
 
 /**
  * <p>An implementor of FullPrunedBlockStore saves StoredBlock objects to some storage mechanism.</p>
@@ -75,6 +76,13 @@ public interface FullPrunedBlockStore extends BlockStore, UTXOProvider {
      * Gets a {@link UTXO} with the given hash and index, or null if none is found
      */
     UTXO getTransactionOutput(Sha256Hash hash, long index) throws BlockStoreException;
+
+    /**
+     * Tells the store that the given outputs are about to be looked up with {@link #getTransactionOutput}, so that
+     * a store backed by disk can read them all at once instead of one by one. Does nothing by default.
+     */
+    default void prefetchTransactionOutputs(List<TransactionOutPoint> outpoints) throws BlockStoreException {
+    }
     
     /**
      * Adds a {@link UTXO} to the list of unspent TransactionOutputs
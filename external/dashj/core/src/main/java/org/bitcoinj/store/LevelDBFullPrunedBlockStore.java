@@ -16,7 +16,9 @@
 
 package org.bitcoinj.store;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -36,6 +38,7 @@ import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.StoredBlock;
 import org.bitcoinj.core.StoredUndoableBlock;
 import org.bitcoinj.core.Transaction;
+import org.bitcoinj.core.TransactionOutPoint;
 import org.bitcoinj.core.TransactionOutputChanges;
 import org.bitcoinj.core.UTXO;
 import org.bitcoinj.core.UTXOProviderException;
@@ -51,6 +54,7 @@ import static org.fusesource.leveldbjni.JniDBFactory.*;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Lists;
+import com.google.common.primitives.UnsignedBytes;
 
 import javax.annotation.Nullable;
 
@@ -760,6 +764,59 @@ public class LevelDBFullPrunedBlockStore implements FullPrunedBlockStore {
         throw new BlockStoreException("problem");
     }
 
+    @Override
+    public void prefetchTransactionOutputs(List<TransactionOutPoint> outpoints) throws BlockStoreException {
+        if (instrument)
+            beginMethod("prefetchTransactionOutputs");
+
+        // Only read what is neither cached nor changed by the current batch. Transactions that are not in the
+        // bloom filter were never added, so their outputs can't be in the database. Stop at half the cache
+        // so the outputs are not evicted again before they are used.
+        List<byte[]> keys = new ArrayList<>();
+        for (TransactionOutPoint outpoint : outpoints) {
+            if (keys.size() >= openOutCache / 2)
+                break;
+            if (!bloom.wasAdded(outpoint.getHash()))
+                continue;
+            byte[] key = getTxKey(KeyType.OPENOUT_ALL, outpoint.getHash(), (int) outpoint.getIndex());
+            ByteBuffer bbKey = ByteBuffer.wrap(key);
+            if (utxoCache.containsKey(bbKey))
+                continue;
+            if (!autoCommit && (utxoUncommittedCache.containsKey(bbKey) || utxoUncommittedDeletedCache.contains(bbKey)))
+                continue;
+            keys.add(key);
+        }
+
+        // leveldb orders keys as unsigned bytes, reading them in that order with one iterator
+        // touches each table block once.
+        Collections.sort(keys, UnsignedBytes.lexicographicalComparator());
+        DBIterator iterator = db.iterator();
+        try {
+            for (byte[] key : keys) {
+                iterator.seek(key);
+                if (!iterator.hasNext())
+                    break;
+                Map.Entry<byte[], byte[]> entry = iterator.peekNext();
+                if (Arrays.equals(key, entry.getKey())) {
+                    miss++;
+                    utxoCache.put(ByteBuffer.wrap(key), new UTXO(new ByteArrayInputStream(entry.getValue())));
+                }
+            }
+        } catch (DBException e) {
+            throw new BlockStoreException("could not prefetch outputs", e);
+        } catch (IOException e) {
+            throw new BlockStoreException("could not prefetch outputs", e);
+        } finally {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                log.error("Error closing iterator", e);
+            }
+            if (instrument)
+                endMethod("prefetchTransactionOutputs");
+        }
+    }
+
     @Override
     public void addUnspentTransactionOutput(UTXO out) throws BlockStoreException {
 
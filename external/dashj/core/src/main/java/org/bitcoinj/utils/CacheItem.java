@@ -26,6 +26,10 @@ public class CacheItem<K, V> extends ChildMessage {
     public K key;
     public V value;
 
+    // the neighbours in the CacheItemList of the cache that holds this item
+    CacheItem<K, V> previous;
+    CacheItem<K, V> next;
+
     @Override
     protected void parse() throws ProtocolException {
         key = parseMessage(key, params, payload, cursor);
@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.utils;
+
+import java.util.AbstractCollection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>The items of {@link CacheMap} and {@link CacheMultiMap}, most recently added first. The list is linked through
+ * the items themselves, so an item that was found in the index of a cache is unlinked in constant time.</p>
+ *
+ * <p>Removing an item through the iterator also removes it from the index of the cache that owns the list.</p>
+ */
+abstract class CacheItemList<K, V> extends AbstractCollection<CacheItem<K, V>> {
+    private CacheItem<K, V> first;
+    private CacheItem<K, V> last;
+    private int size;
+    private int modCount;
+
+    /** Called when an item is removed through an iterator, so that the owner can drop it from its index. */
+    abstract void removeFromIndex(CacheItem<K, V> item);
+
+    void addFirst(CacheItem<K, V> item) {
+        item.previous = null;
+        item.next = first;
+        if (first != null)
+            first.previous = item;
+        else
+            last = item;
+        first = item;
+        ++size;
+        ++modCount;
+    }
+
+    void addLast(CacheItem<K, V> item) {
+        item.previous = last;
+        item.next = null;
+        if (last != null)
+            last.next = item;
+        else
+            first = item;
+        last = item;
+        ++size;
+        ++modCount;
+    }
+
+    void unlink(CacheItem<K, V> item) {
+        if (item.previous != null)
+            item.previous.next = item.next;
+        else
+            first = item.next;
+        if (item.next != null)
+            item.next.previous = item.previous;
+        else
+            last = item.previous;
+        item.previous = null;
+        item.next = null;
+        --size;
+        ++modCount;
+    }
+
+    CacheItem<K, V> getLast() {
+        return last;
+    }
+
+    @Override
+    public void clear() {
+        first = null;
+        last = null;
+        size = 0;
+        ++modCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<CacheItem<K, V>> iterator() {
+        return new Iterator<CacheItem<K, V>>() {
+            private CacheItem<K, V> next = first;
+            private CacheItem<K, V> current;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public CacheItem<K, V> next() {
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                if (next == null)
+                    throw new NoSuchElementException();
+                current = next;
+                next = current.next;
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                if (current == null)
+                    throw new IllegalStateException();
+                if (modCount != expectedModCount)
+                    throw new ConcurrentModificationException();
+                unlink(current);
+                removeFromIndex(current);
+                current = null;
+                expectedModCount = modCount;
+            }
+        };
+    }
+}
@@ -8,16 +8,17 @@ import java.util.*;
 
 /**
  * Map like container that keeps the N most recently added items
+ *
+ * Inserting, erasing and pruning an item take constant time.
  */
 public class CacheMap<K, V> extends ChildMessage {
 
     private long nMaxSize;
 
-    private long nCurrentSize;
+    // not initialized here, because parse() runs before the field initializers
+    private CacheItemList<K, V> listItems;
 
-    private LinkedList<CacheItem<K,V>> listItems = new LinkedList<CacheItem<K,V>>();
-
-    private LinkedHashMap<K, CacheItem<K,V>> mapIndex = new LinkedHashMap<K, CacheItem<K,V>>();
+    private HashMap<K, CacheItem<K,V>> mapIndex;
 
     public CacheMap() {
             this(0);
@@ -25,27 +26,31 @@ public class CacheMap<K, V> extends ChildMessage {
 
     public CacheMap(long nMaxSizeIn) {
         this.nMaxSize = nMaxSizeIn;
-        this.nCurrentSize = 0;
-        this.listItems = new LinkedList<CacheItem<K, V>>();
-        this.mapIndex = new LinkedHashMap<K, CacheItem<K, V>>();
+        this.listItems = newItemList();
+        this.mapIndex = new HashMap<K, CacheItem<K, V>>();
     }
 
     public CacheMap(CacheMap<K, V> other) {
-        this.nMaxSize = other.nMaxSize;
-        this.nCurrentSize = other.nCurrentSize;
-        this.listItems = new LinkedList<CacheItem<K, V>>(other.listItems);
-        this.mapIndex = new LinkedHashMap<K, CacheItem<K, V>>();
-        rebuildIndex();
+        this(other.nMaxSize);
+        copyFrom(other);
     }
 
     public CacheMap(NetworkParameters params, byte [] payload, int cursor) {
         super(params, payload, cursor);
     }
 
+    private CacheItemList<K, V> newItemList() {
+        return new CacheItemList<K, V>() {
+            @Override
+            void removeFromIndex(CacheItem<K, V> item) {
+                mapIndex.remove(item.key);
+            }
+        };
+    }
+
     public final void clear() {
         mapIndex.clear();
         listItems.clear();
-        nCurrentSize = 0;
     }
 
     public final void setMaxSize(long nMaxSizeIn) {
@@ -57,7 +62,7 @@ public class CacheMap<K, V> extends ChildMessage {
     }
 
     public final long getSize() {
-        return nCurrentSize;
+        return listItems.size();
     }
 
     public final void insert(K key, V value) {
@@ -68,13 +73,12 @@ public class CacheMap<K, V> extends ChildMessage {
             item.value = value;
             return;
         }
-        if (nCurrentSize == nMaxSize) {
+        if (getSize() == nMaxSize) {
             pruneLast();
         }
-        CacheItem item = new CacheItem(key, value);
+        CacheItem<K, V> item = new CacheItem<K, V>(key, value);
         listItems.addFirst(item);
         mapIndex.put(key, item);
-        ++nCurrentSize;
     }
 
     public final boolean hasKey(K key) {
@@ -82,45 +86,44 @@ public class CacheMap<K, V> extends ChildMessage {
     }
 
     public final CacheItem<K, V> get(K key) {
-        CacheItem<K, V> it = mapIndex.get(key);
-        if (it == null) {
-            return null;
-        }
-
-        return it;
+        return mapIndex.get(key);
     }
 
     public final void erase(K key) {
-        CacheItem<K, V> it = mapIndex.get(key);
+        CacheItem<K, V> it = mapIndex.remove(key);
         if (it == null) {
             return;
         }
-        listItems.remove(it);
-        mapIndex.remove(it.key);
-        --nCurrentSize;
+        listItems.unlink(it);
     }
 
-    public final LinkedList<CacheItem<K, V>> getItemList() {
+    /**
+     * Returns the items, most recently added first. Removing an item through the iterator erases it from the map.
+     */
+    public final Collection<CacheItem<K, V>> getItemList() {
         return listItems;
     }
 
     public final CacheMap<K, V> copyFrom(CacheMap<K, V> other) {
         nMaxSize = other.nMaxSize;
-        nCurrentSize = other.nCurrentSize;
-        listItems = new LinkedList<CacheItem<K, V>>(other.listItems);
-        rebuildIndex();
+        clear();
+        // the items are linked into the list that holds them, so each map needs its own
+        for (CacheItem<K, V> item : other.listItems) {
+            CacheItem<K, V> copy = new CacheItem<K, V>(item.key, item.value);
+            listItems.addLast(copy);
+            mapIndex.put(copy.key, copy);
+        }
         return this;
     }
 
 
     private void pruneLast() {
-        if (nCurrentSize < 1) {
+        CacheItem<K, V> item = listItems.getLast();
+        if (item == null) {
             return;
         }
-        CacheItem<K, V> item = listItems.getLast();
         mapIndex.remove(item.key);
-        listItems.removeLast();
-        --nCurrentSize;
+        listItems.unlink(item);
     }
 
     private void rebuildIndex() {
@@ -133,14 +136,14 @@ public class CacheMap<K, V> extends ChildMessage {
     @Override
     protected void parse() throws ProtocolException {
         nMaxSize = readInt64();
-        nCurrentSize = readInt64();
+        readInt64(); // the current size, which is the number of items
         long size = readVarInt();
-        mapIndex = new LinkedHashMap<K, CacheItem<K, V>>();
-        listItems = new LinkedList<CacheItem<K, V>>();
+        mapIndex = new HashMap<K, CacheItem<K, V>>();
+        listItems = newItemList();
         for (int i = 0; i < size; ++i) {
             CacheItem<K, V> item = new CacheItem<K, V>(params, payload, cursor);
             cursor += item.getMessageSize();
-            listItems.add(item);
+            listItems.addLast(item);
         }
 
         length = cursor - offset;
@@ -150,7 +153,7 @@ public class CacheMap<K, V> extends ChildMessage {
     @Override
     protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
         Utils.int64ToByteStreamLE(nMaxSize, stream);
-        Utils.int64ToByteStreamLE(nCurrentSize, stream);
+        Utils.int64ToByteStreamLE(listItems.size(), stream);
         stream.write(new VarInt(listItems.size()).encode());
         for(CacheItem<K, V> item : listItems) {
             item.bitcoinSerialize(stream);
@@ -158,6 +161,6 @@ public class CacheMap<K, V> extends ChildMessage {
     }
 
     public String toString() {
-        return "CacheMap("+nCurrentSize+" of {"+nMaxSize+"}}";
+        return "CacheMap("+getSize()+" of {"+nMaxSize+"}}";
     }
-}
\ No newline at end of file
+}
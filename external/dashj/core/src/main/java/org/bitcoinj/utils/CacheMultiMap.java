@@ -8,15 +8,16 @@ import java.util.*;
 
 /**
  * Map like container that keeps the N most recently added items
+ *
+ * Inserting, erasing and pruning an item take constant time.
  */
 
 public class CacheMultiMap<K, V> extends Message {
 
     protected long nMaxSize;
 
-    private long nCurrentSize;
-
-    private LinkedList<CacheItem<K, V>> listItems;
+    // not initialized here, because parse() runs before the field initializers
+    private CacheItemList<K, V> listItems;
 
     private HashMap<K, HashMap<V, CacheItem<K, V>>> mapIndex;
 
@@ -27,16 +28,18 @@ public class CacheMultiMap<K, V> extends Message {
     public CacheMultiMap(long nMaxSizeIn) {
         super(Context.get().getParams());
         this.nMaxSize = nMaxSizeIn;
-        this.nCurrentSize = 0;
-        this.listItems = new LinkedList<CacheItem<K, V>>();
+        this.listItems = newItemList();
         this.mapIndex = new HashMap<K, HashMap<V, CacheItem<K, V>>>();
     }
 
     public CacheMultiMap(CacheMap<K, V> other) {
         super(other.getParams());
         this.nMaxSize = other.getMaxSize();
-        this.nCurrentSize = other.getSize();
-        this.listItems = new LinkedList<CacheItem<K, V>>(other.getItemList());
+        this.listItems = newItemList();
+        // the items are linked into the list that holds them, so each map needs its own
+        for (CacheItem<K, V> item : other.getItemList()) {
+            listItems.addLast(new CacheItem<K, V>(item.key, item.value));
+        }
         this.mapIndex = new HashMap<K, HashMap<V, CacheItem<K, V>>>();
         rebuildIndex();
     }
@@ -44,10 +47,24 @@ public class CacheMultiMap<K, V> extends Message {
         super(params, payload, cursor);
     }
 
+    private CacheItemList<K, V> newItemList() {
+        return new CacheItemList<K, V>() {
+            @Override
+            void removeFromIndex(CacheItem<K, V> item) {
+                HashMap<V, CacheItem<K, V>> mit = mapIndex.get(item.key);
+                if (mit != null) {
+                    mit.remove(item.value);
+                    if (mit.size() < 1) {
+                        mapIndex.remove(item.key);
+                    }
+                }
+            }
+        };
+    }
+
     public final void clear() {
         mapIndex.clear();
         listItems.clear();
-        nCurrentSize = 0;
     }
 
     public final void setMaxSize(long nMaxSizeIn) {
@@ -59,29 +76,30 @@ public class CacheMultiMap<K, V> extends Message {
     }
 
     public final long getSize() {
-        return nCurrentSize;
+        return listItems.size();
     }
 
     public final boolean insert(K key, V value) {
-        if (nCurrentSize == nMaxSize) {
+        HashMap<V, CacheItem<K, V>> map = mapIndex.get(key);
+        if (map != null && map.containsKey(value)) {
+            // Don't insert duplicates
+            return false;
+        }
+
+        if (getSize() == nMaxSize) {
             pruneLast();
+            // pruning may have removed the last value of this key
+            map = mapIndex.get(key);
         }
-        HashMap<V, CacheItem<K, V>> map = mapIndex.get(key);
         if (map == null) {
             map = new HashMap<V, CacheItem<K, V>>();
             mapIndex.put(key, map);
         }
 
-        if (map.containsValue(value)) {
-            // Don't insert duplicates
-            return false;
-        }
-
-        listItems.addFirst(new CacheItem<K,V>(key, value));
-        CacheItem<K, V> lit = listItems.getFirst();
+        CacheItem<K, V> lit = new CacheItem<K, V>(key, value);
+        listItems.addFirst(lit);
 
         map.put(value, lit);
-        ++nCurrentSize;
         return true;
     }
 
@@ -89,14 +107,13 @@ public class CacheMultiMap<K, V> extends Message {
         return mapIndex.containsKey(key);
     }
 
+    /** Returns one of the values of the key, or null if there are none. */
     public final V get(K key) {
         HashMap<V, CacheItem<K, V>> it = mapIndex.get(key);
         if (it == null) {
             return null;
         }
-        final HashMap<V, CacheItem<K, V>> mapIt = it;
-        final CacheItem<K, V> item = mapIt.get(key);
-        return item.value;
+        return it.values().iterator().next().value;
     }
 
     public final boolean getAll(K key, ArrayList<V> vecValues) {
@@ -121,17 +138,14 @@ public class CacheMultiMap<K, V> extends Message {
     }
 
     public final void erase(K key) {
-        HashMap<V, CacheItem<K, V>> mit = mapIndex.get(key);
+        HashMap<V, CacheItem<K, V>> mit = mapIndex.remove(key);
         if (mit == null) {
             return;
         }
 
-        for (Map.Entry<V, CacheItem<K, V>> it : mit.entrySet()) {
-
-            listItems.remove(it.getValue());
-            --nCurrentSize;
+        for (CacheItem<K, V> it : mit.values()) {
+            listItems.unlink(it);
         }
-        mapIndex.remove(mit);
     }
 
     public final void erase(K key, V value) {
@@ -140,32 +154,31 @@ public class CacheMultiMap<K, V> extends Message {
             return;
         }
 
-        CacheItem<K, V> it = mit.get(value);
+        CacheItem<K, V> it = mit.remove(value);
         if (it == null) {
             return;
         }
 
-        listItems.remove(it);
-        --nCurrentSize;
-        mit.remove(key);
+        listItems.unlink(it);
 
         if (mit.size() < 1) {
-            mapIndex.remove(mit);
+            mapIndex.remove(key);
         }
     }
 
-    public final LinkedList<CacheItem<K,V>> getItemList() {
+    /**
+     * Returns the items, most recently added first. Removing an item through the iterator erases it from the map.
+     */
+    public final Collection<CacheItem<K,V>> getItemList() {
         return listItems;
     }
 
     private void pruneLast() {
-        if (nCurrentSize < 1) {
+        CacheItem<K,V> item = listItems.getLast();
+        if (item == null) {
             return;
         }
 
-        Iterator<CacheItem<K,V>> lit = listItems.descendingIterator();
-        CacheItem<K,V> item = lit.next();
-
         HashMap<V,CacheItem<K,V>> mit = mapIndex.get(item.key);
 
         if (mit != null){
@@ -176,8 +189,7 @@ public class CacheMultiMap<K, V> extends Message {
             }
         }
 
-        listItems.removeLast();
-        --nCurrentSize;
+        listItems.unlink(item);
     }
 
     private void rebuildIndex() {
@@ -196,14 +208,14 @@ public class CacheMultiMap<K, V> extends Message {
     @Override
     protected void parse() throws ProtocolException {
         nMaxSize = readInt64();
-        nCurrentSize = readInt64();
+        readInt64(); // the current size, which is the number of items
         long size = readVarInt();
-        mapIndex = new LinkedHashMap<K, HashMap<V, CacheItem<K, V>>>();
-        listItems = new LinkedList<CacheItem<K, V>>();
+        mapIndex = new HashMap<K, HashMap<V, CacheItem<K, V>>>();
+        listItems = newItemList();
         for (int i = 0; i < size; ++i) {
             CacheItem<K, V> item = new CacheItem<K, V>(params, payload, cursor);
             cursor += item.getMessageSize();
-            listItems.add(item);
+            listItems.addLast(item);
         }
         length = cursor - offset;
         rebuildIndex();
@@ -212,7 +224,7 @@ public class CacheMultiMap<K, V> extends Message {
     @Override
     protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
         Utils.int64ToByteStreamLE(nMaxSize, stream);
-        Utils.int64ToByteStreamLE(nCurrentSize, stream);
+        Utils.int64ToByteStreamLE(listItems.size(), stream);
         stream.write(new VarInt(listItems.size()).encode());
         for(CacheItem<K, V> item : listItems) {
             item.bitcoinSerialize(stream);
@@ -220,7 +232,6 @@ public class CacheMultiMap<K, V> extends Message {
     }
 
     public String toString() {
-        return "CacheMap("+nCurrentSize+" of {"+nMaxSize+"}}";
+        return "CacheMap("+getSize()+" of {"+nMaxSize+"}}";
     }
 }
-
@@ -0,0 +1,98 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * <p>A histogram of latencies with exponentially growing buckets: bucket <i>i</i> counts the samples of less than
+ * 2<sup><i>i</i></sup> microseconds, but at least half of that. Percentiles are therefore accurate to a factor of
+ * two, which is enough to tell milliseconds from seconds at a fixed, small memory cost.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class LatencyHistogram {
+    // the last bucket takes everything from about 18 minutes up
+    private static final int BUCKET_COUNT = 31;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long count;
+    private long sumMicros;
+    private long maxMicros;
+
+    /** Records one sample of the given duration. Negative durations are recorded as zero. */
+    public synchronized void record(long duration, TimeUnit unit) {
+        long micros = Math.max(0, unit.toMicros(duration));
+        buckets[bucketIndex(micros)]++;
+        count++;
+        sumMicros += micros;
+        maxMicros = Math.max(maxMicros, micros);
+    }
+
+    private static int bucketIndex(long micros) {
+        int index = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : sumMicros / 1000.0 / count;
+    }
+
+    public synchronized double getMaxMillis() {
+        return maxMicros / 1000.0;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile of the recorded samples in milliseconds, which is never more
+     * than twice the exact value below the last bucket and never more than the largest sample.
+     * @param percentile between 0 and 100
+     */
+    public synchronized double getPercentileMillis(double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile must be between 0 and 100");
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        int bucket = 0;
+        while (bucket < BUCKET_COUNT - 1) {
+            seen += buckets[bucket];
+            if (seen >= rank && seen > 0)
+                break;
+            bucket++;
+        }
+        long upperBound = bucket < BUCKET_COUNT - 1 ? 1L << bucket : maxMicros;
+        return Math.min(upperBound, maxMicros) / 1000.0;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            buckets[i] = 0;
+        count = 0;
+        sumMicros = 0;
+        maxMicros = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("count=%d, mean=%.1fms, p50=%.1fms, p90=%.1fms, p99=%.1fms, max=%.1fms", count,
+                getMeanMillis(), getPercentileMillis(50), getPercentileMillis(90), getPercentileMillis(99), getMaxMillis());
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.utils;
+
+import org.bitcoinj.core.Sha256Hash;
+
+import javax.annotation.Nullable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+
+/**
+ * <p>An immutable map with {@link Sha256Hash} keys, iterated in the order of {@link Sha256Hash#compareTo(Sha256Hash)}.
+ * {@link #plus(Sha256Hash, Object)} and {@link #minus(Sha256Hash)} return a new map that shares everything but the
+ * one modified chunk with this map, so keeping many versions of a large map costs little more than the changes
+ * between them.</p>
+ *
+ * <p>Keys are spread over 256 chunks by their most significant byte, which keeps the chunks ordered relative to each
+ * other and, for hashes, evenly filled. Each chunk is a sorted array. A modification copies the chunk table and one
+ * chunk, lookups are a binary search within one chunk.</p>
+ */
+public final class PersistentSha256HashMap<V> implements Iterable<Map.Entry<Sha256Hash, V>> {
+    private static final int CHUNK_COUNT = 256;
+    private static final PersistentSha256HashMap<Object> EMPTY = new PersistentSha256HashMap<>(new Chunk[CHUNK_COUNT], 0);
+
+    // Never modified once created.
+    private static final class Chunk {
+        final Sha256Hash[] keys; // ascending
+        final Object[] values;
+
+        Chunk(Sha256Hash[] keys, Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    // Null for empty chunks. Never modified once the map is created.
+    private final Chunk[] chunks;
+    private final int size;
+
+    private PersistentSha256HashMap(Chunk[] chunks, int size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentSha256HashMap<V> empty() {
+        return (PersistentSha256HashMap<V>) EMPTY;
+    }
+
+    /** Returns a map with the same mappings as the given map. */
+    public static <V> PersistentSha256HashMap<V> copyOf(Map<Sha256Hash, ? extends V> map) {
+        if (map.isEmpty())
+            return empty();
+        List<List<Map.Entry<Sha256Hash, ? extends V>>> buckets = new ArrayList<>(CHUNK_COUNT);
+        for (int i = 0; i < CHUNK_COUNT; i++)
+            buckets.add(null);
+        for (Map.Entry<Sha256Hash, ? extends V> entry : map.entrySet()) {
+            int index = chunkIndex(checkNotNull(entry.getKey()));
+            List<Map.Entry<Sha256Hash, ? extends V>> bucket = buckets.get(index);
+            if (bucket == null) {
+                bucket = new ArrayList<>();
+                buckets.set(index, bucket);
+            }
+            bucket.add(entry);
+        }
+        Chunk[] chunks = new Chunk[CHUNK_COUNT];
+        for (int i = 0; i < CHUNK_COUNT; i++) {
+            List<Map.Entry<Sha256Hash, ? extends V>> bucket = buckets.get(i);
+            if (bucket == null)
+                continue;
+            Sha256Hash[] keys = new Sha256Hash[bucket.size()];
+            for (int j = 0; j < keys.length; j++)
+                keys[j] = bucket.get(j).getKey();
+            Arrays.sort(keys);
+            Object[] values = new Object[keys.length];
+            for (Map.Entry<Sha256Hash, ? extends V> entry : bucket)
+                values[Arrays.binarySearch(keys, entry.getKey())] = entry.getValue();
+            chunks[i] = new Chunk(keys, values);
+        }
+        return new PersistentSha256HashMap<>(chunks, map.size());
+    }
+
+    // The most significant byte in the order of Sha256Hash.compareTo
+    private static int chunkIndex(Sha256Hash key) {
+        return key.getBytes()[Sha256Hash.LENGTH - 1] & 0xff;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public V get(Sha256Hash key) {
+        Chunk chunk = chunks[chunkIndex(key)];
+        if (chunk == null)
+            return null;
+        int index = Arrays.binarySearch(chunk.keys, key);
+        return index >= 0 ? (V) chunk.values[index] : null;
+    }
+
+    public boolean containsKey(Sha256Hash key) {
+        Chunk chunk = chunks[chunkIndex(key)];
+        return chunk != null && Arrays.binarySearch(chunk.keys, key) >= 0;
+    }
+
+    /** Returns a map that maps the given key to the given value, and otherwise equals this map. */
+    public PersistentSha256HashMap<V> plus(Sha256Hash key, V value) {
+        checkNotNull(key);
+        int chunkIndex = chunkIndex(key);
+        Chunk chunk = chunks[chunkIndex];
+        Chunk newChunk;
+        int newSize = size;
+        if (chunk == null) {
+            newChunk = new Chunk(new Sha256Hash[] { key }, new Object[] { value });
+            newSize++;
+        } else {
+            int index = Arrays.binarySearch(chunk.keys, key);
+            if (index >= 0) {
+                if (chunk.values[index] == value)
+                    return this;
+                Object[] values = chunk.values.clone();
+                values[index] = value;
+                newChunk = new Chunk(chunk.keys, values);
+            } else {
+                index = -index - 1;
+                int length = chunk.keys.length;
+                Sha256Hash[] keys = new Sha256Hash[length + 1];
+                Object[] values = new Object[length + 1];
+                System.arraycopy(chunk.keys, 0, keys, 0, index);
+                System.arraycopy(chunk.values, 0, values, 0, index);
+                keys[index] = key;
+                values[index] = value;
+                System.arraycopy(chunk.keys, index, keys, index + 1, length - index);
+                System.arraycopy(chunk.values, index, values, index + 1, length - index);
+                newChunk = new Chunk(keys, values);
+                newSize++;
+            }
+        }
+        Chunk[] newChunks = chunks.clone();
+        newChunks[chunkIndex] = newChunk;
+        return new PersistentSha256HashMap<>(newChunks, newSize);
+    }
+
+    /** Returns a map without the given key, and otherwise equal to this map. */
+    public PersistentSha256HashMap<V> minus(Sha256Hash key) {
+        int chunkIndex = chunkIndex(key);
+        Chunk chunk = chunks[chunkIndex];
+        if (chunk == null)
+            return this;
+        int index = Arrays.binarySearch(chunk.keys, key);
+        if (index < 0)
+            return this;
+        Chunk newChunk = null;
+        int length = chunk.keys.length;
+        if (length > 1) {
+            Sha256Hash[] keys = new Sha256Hash[length - 1];
+            Object[] values = new Object[length - 1];
+            System.arraycopy(chunk.keys, 0, keys, 0, index);
+            System.arraycopy(chunk.values, 0, values, 0, index);
+            System.arraycopy(chunk.keys, index + 1, keys, index, length - index - 1);
+            System.arraycopy(chunk.values, index + 1, values, index, length - index - 1);
+            newChunk = new Chunk(keys, values);
+        }
+        Chunk[] newChunks = chunks.clone();
+        newChunks[chunkIndex] = newChunk;
+        return new PersistentSha256HashMap<>(newChunks, size - 1);
+    }
+
+    /**
+     * Returns the position of the given key in iteration order if it is in this map, otherwise
+     * <tt>(-(insertion point) - 1)</tt> like {@link Arrays#binarySearch(Object[], Object)}.
+     */
+    public int indexOf(Sha256Hash key) {
+        int chunkIndex = chunkIndex(key);
+        int offset = 0;
+        for (int i = 0; i < chunkIndex; i++) {
+            if (chunks[i] != null)
+                offset += chunks[i].keys.length;
+        }
+        Chunk chunk = chunks[chunkIndex];
+        if (chunk == null)
+            return -offset - 1;
+        int index = Arrays.binarySearch(chunk.keys, key);
+        return index >= 0 ? offset + index : index - offset;
+    }
+
+    /** Returns the value at the given position in iteration order. */
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        for (Chunk chunk : chunks) {
+            if (chunk == null)
+                continue;
+            if (index < chunk.keys.length)
+                return (V) chunk.values[index];
+            index -= chunk.keys.length;
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public Iterator<Map.Entry<Sha256Hash, V>> iterator() {
+        return iterator(0);
+    }
+
+    /** Returns an iterator over the entries in key order, starting with the entry at the given position. */
+    public Iterator<Map.Entry<Sha256Hash, V>> iterator(int fromIndex) {
+        checkPositionIndex(fromIndex, size);
+        int chunkIndex = 0;
+        while (chunkIndex < CHUNK_COUNT &&
+                fromIndex >= (chunks[chunkIndex] == null ? 0 : chunks[chunkIndex].keys.length)) {
+            if (chunks[chunkIndex] != null)
+                fromIndex -= chunks[chunkIndex].keys.length;
+            chunkIndex++;
+        }
+        final int firstChunk = chunkIndex, firstIndex = fromIndex;
+        return new Iterator<Map.Entry<Sha256Hash, V>>() {
+            private int chunk = firstChunk;
+            private int index = firstIndex;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk < CHUNK_COUNT && (chunks[chunk] == null || index >= chunks[chunk].keys.length)) {
+                    chunk++;
+                    index = 0;
+                }
+                return chunk < CHUNK_COUNT;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map.Entry<Sha256Hash, V> next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                Chunk current = chunks[chunk];
+                Map.Entry<Sha256Hash, V> entry =
+                        new AbstractMap.SimpleImmutableEntry<>(current.keys[index], (V) current.values[index]);
+                index++;
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<Sha256Hash, V> entry : this) {
+            if (builder.length() > 1)
+                builder.append(", ");
+            builder.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -17,13 +17,19 @@
 package org.bitcoinj.wallet;
 
 import org.bitcoinj.core.ECKey;
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDKeyDerivation;
+import org.bitcoinj.crypto.KeyCrypterException;
 import org.bitcoinj.script.Script;
 import org.bouncycastle.crypto.params.KeyParameter;
 
 import javax.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -31,10 +37,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * A DecryptingKeyBag filters a pre-existing key bag, decrypting keys as they are requested using the provided
  * AES key. If the keys are encrypted and no AES key provided, {@link ECKey.KeyIsEncryptedException}
  * will be thrown.
+ *
+ * <p>Decrypted keys are kept for the lifetime of the bag, so a key that is requested for several inputs is only
+ * decrypted once. Deterministic keys are derived from their decrypted parent, which is shared by all keys of a chain,
+ * instead of decrypting an ancestor and deriving the whole path again for each key.</p>
  */
 public class DecryptingKeyBag implements KeyBag {
     protected final KeyBag target;
     protected final KeyParameter aesKey;
+    private final Map<ECKey, ECKey> decryptedKeys = new ConcurrentHashMap<>();
 
     public DecryptingKeyBag(KeyBag target, @Nullable KeyParameter aesKey) {
         this.target = checkNotNull(target);
@@ -48,12 +59,32 @@ public class DecryptingKeyBag implements KeyBag {
         else if (key.isEncrypted()) {
             if (aesKey == null)
                 throw new ECKey.KeyIsEncryptedException();
-            return key.decrypt(aesKey);
+            ECKey decryptedKey = decryptedKeys.get(key);
+            if (decryptedKey == null) {
+                decryptedKey = decrypt(key);
+                decryptedKeys.put(key, decryptedKey);
+            }
+            return decryptedKey;
         } else {
             return key;
         }
     }
 
+    private ECKey decrypt(ECKey key) {
+        if (key instanceof DeterministicKey) {
+            DeterministicKey deterministicKey = (DeterministicKey) key;
+            DeterministicKey parent = deterministicKey.getParent();
+            if (deterministicKey.getEncryptedPrivateKey() == null && parent != null && parent.isEncrypted()) {
+                DeterministicKey decryptedParent = (DeterministicKey) maybeDecrypt(parent);
+                DeterministicKey decryptedKey = HDKeyDerivation.deriveChildKey(decryptedParent, deterministicKey.getChildNumber());
+                if (!Arrays.equals(decryptedKey.getPubKey(), key.getPubKey()))
+                    throw new KeyCrypterException.PublicPrivateMismatch("Could not decrypt bytes");
+                return decryptedKey;
+            }
+        }
+        return key.decrypt(aesKey);
+    }
+
     private RedeemData maybeDecrypt(RedeemData redeemData) {
         List<ECKey> decryptedKeys = new ArrayList<>();
         for (ECKey key : redeemData.keys) {
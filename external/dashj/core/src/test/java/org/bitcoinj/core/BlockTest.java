@@ -144,6 +144,22 @@ public class BlockTest {
         assertTrue(Arrays.equals(blockBytes, block.bitcoinSerialize()));
     }
     
+    @Test
+    public void testParallelParsing() throws Exception {
+        byte[] block227836Bytes = ByteStreams.toByteArray(getClass().getResourceAsStream("block227836.dat"));
+        Block sequential = MAINNET.getDefaultSerializer().makeBlock(block227836Bytes);
+        Block parallel = MAINNET.getSerializer(false).withParallelParsingThreshold(1).makeBlock(block227836Bytes);
+        assertEquals(sequential.getTransactions().size(), parallel.getTransactions().size());
+        for (int i = 0; i < sequential.getTransactions().size(); i++)
+            assertEquals(sequential.getTransactions().get(i).getTxId(), parallel.getTransactions().get(i).getTxId());
+        assertEquals(sequential.getMessageSize(), parallel.getMessageSize());
+        assertEquals(sequential.getOptimalEncodingMessageSize(), parallel.getOptimalEncodingMessageSize());
+        assertArrayEquals(block227836Bytes, parallel.bitcoinSerialize());
+
+        Block testnetBlock = TESTNET.getSerializer(false).withParallelParsingThreshold(1).makeBlock(blockBytes);
+        testnetBlock.verify(Block.BLOCK_HEIGHT_GENESIS, EnumSet.noneOf(Block.VerifyFlag.class));
+    }
+
     @Test
     public void testUpdateLength() {
         Block block = UNITTEST.getGenesisBlock().createNextBlockWithCoinbase(Block.BLOCK_VERSION_GENESIS, new ECKey().getPubKey(), Block.BLOCK_HEIGHT_GENESIS);
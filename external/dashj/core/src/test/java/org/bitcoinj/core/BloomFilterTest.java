@@ -23,6 +23,7 @@ import org.bitcoinj.wallet.Wallet;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.bitcoinj.core.Utils.HEX;
 import static org.junit.Assert.*;
@@ -68,6 +69,45 @@ public class BloomFilterTest {
         assertTrue(Arrays.equals(HEX.decode("03ce4299050000000100008002"), filter.unsafeBitcoinSerialize()));
     }
 
+    @Test
+    public void containsAnyTest() {
+        BloomFilter filter = new BloomFilter(3, 0.01, 0, BloomFilter.BloomUpdate.UPDATE_ALL);
+        filter.insert(HEX.decode("99108ad8ed9bb6274d3980bab5a85c048f0950c8"));
+
+        assertFalse(filter.containsAny(Collections.<byte[]>emptyList()));
+        assertFalse(filter.containsAny(Arrays.asList(HEX.decode("19108ad8ed9bb6274d3980bab5a85c048f0950c8"),
+                HEX.decode("b5a2c786d9ef4658287ced5914b37a1b4aa32eee"))));
+        assertTrue(filter.containsAny(Arrays.asList(HEX.decode("19108ad8ed9bb6274d3980bab5a85c048f0950c8"),
+                HEX.decode("99108ad8ed9bb6274d3980bab5a85c048f0950c8"))));
+    }
+
+    @Test
+    public void insertDoesNotModifyPreviousSnapshot() {
+        BloomFilter filter = new BloomFilter(3, 0.01, 0, BloomFilter.BloomUpdate.UPDATE_ALL);
+        byte[] before = filter.getData();
+        filter.insert(HEX.decode("99108ad8ed9bb6274d3980bab5a85c048f0950c8"));
+        assertArrayEquals(new byte[before.length], before);
+        assertNotSame(before, filter.getData());
+
+        // Inserting an element that is already present keeps the current snapshot
+        byte[] after = filter.getData();
+        filter.insert(HEX.decode("99108ad8ed9bb6274d3980bab5a85c048f0950c8"));
+        assertSame(after, filter.getData());
+    }
+
+    @Test
+    public void unpublishedFilterIsBuiltInPlace() {
+        BloomFilter filter = new BloomFilter(3, 0.01, 0, BloomFilter.BloomUpdate.UPDATE_ALL);
+        filter.insert(HEX.decode("99108ad8ed9bb6274d3980bab5a85c048f0950c8"));
+        filter.insert(HEX.decode("b5a2c786d9ef4658287ced5914b37a1b4aa32eed"));
+        BloomFilter copy = new BloomFilter(3, 0.01, 0, BloomFilter.BloomUpdate.UPDATE_ALL);
+        copy.insert(HEX.decode("99108ad8ed9bb6274d3980bab5a85c048f0950c8"));
+        copy.getData();
+        copy.insert(HEX.decode("b5a2c786d9ef4658287ced5914b37a1b4aa32eed"));
+        assertArrayEquals(copy.getData(), filter.getData());
+        assertTrue(filter.contains(HEX.decode("b5a2c786d9ef4658287ced5914b37a1b4aa32eed")));
+    }
+
     @Test
     public void walletTest() throws Exception {
         Context.propagate(new Context(MAINNET));
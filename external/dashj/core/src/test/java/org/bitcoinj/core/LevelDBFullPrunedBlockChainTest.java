@@ -16,12 +16,19 @@
 
 package org.bitcoinj.core;
 
+import org.bitcoinj.script.ScriptBuilder;
 import org.bitcoinj.store.BlockStoreException;
 import org.bitcoinj.store.FullPrunedBlockStore;
 import org.bitcoinj.store.LevelDBFullPrunedBlockStore;
 import org.junit.After;
+import org.junit.Test;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * An H2 implementation of the FullPrunedBlockStoreTest
@@ -49,6 +56,37 @@ public class LevelDBFullPrunedBlockChainTest extends
         }
     }
 
+    @Test
+    public void prefetchTransactionOutputs() throws BlockStoreException {
+        FullPrunedBlockStore store = createStore(PARAMS, 10);
+        List<UTXO> utxos = new ArrayList<>();
+        List<TransactionOutPoint> outpoints = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            UTXO utxo = new UTXO(Sha256Hash.of(new byte[]{(byte) i}), i % 3, Coin.valueOf(i + 1), 1, false,
+                    ScriptBuilder.createP2PKOutputScript(new ECKey()));
+            store.addUnspentTransactionOutput(utxo);
+            utxos.add(utxo);
+            outpoints.add(new TransactionOutPoint(PARAMS, utxo.getIndex(), utxo.getHash()));
+        }
+        outpoints.add(new TransactionOutPoint(PARAMS, 0, Sha256Hash.ZERO_HASH));
+        store.close();
+
+        // a new instance starts with empty caches
+        store = new LevelDBFullPrunedBlockStore(PARAMS, "test-leveldb", 10);
+        try {
+            store.beginDatabaseBatchWrite();
+            store.removeUnspentTransactionOutput(utxos.get(0));
+            store.prefetchTransactionOutputs(outpoints);
+            assertNull(store.getTransactionOutput(utxos.get(0).getHash(), utxos.get(0).getIndex()));
+            for (UTXO utxo : utxos.subList(1, utxos.size()))
+                assertEquals(utxo, store.getTransactionOutput(utxo.getHash(), utxo.getIndex()));
+            assertNull(store.getTransactionOutput(Sha256Hash.ZERO_HASH, 0));
+            store.abortDatabaseBatchWrite();
+        } finally {
+            store.close();
+        }
+    }
+
     @Override
     public void resetStore(FullPrunedBlockStore store)
             throws BlockStoreException {
@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.core;
+
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PeerAddressBookTest {
+    private static final NetworkParameters UNITTEST = UnitTestParams.get();
+
+    private File file;
+    private PeerAddressBook book;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("dashj-unit-test", null);
+        assertTrue(file.delete());
+        book = new PeerAddressBook(UNITTEST, file);
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static PeerAddress peer(int i) throws IOException {
+        return new PeerAddress(UNITTEST, InetAddress.getByAddress(new byte[] { 10, 0, 0, (byte) i }), 9999);
+    }
+
+    @Test
+    public void loadMissingFile() throws Exception {
+        book.load();
+        assertEquals(0, book.size());
+        assertTrue(book.getBestPeers(8).isEmpty());
+    }
+
+    @Test
+    public void bestPeers() throws Exception {
+        book.recordSuccess(peer(1), VersionMessage.NODE_NETWORK);
+        book.recordPingTime(peer(1), 300);
+        book.recordSuccess(peer(2), VersionMessage.NODE_NETWORK);
+        book.recordPingTime(peer(2), 100);
+        book.recordSuccess(peer(3), VersionMessage.NODE_NETWORK);
+        book.recordFailure(peer(3));
+        book.recordSuccess(peer(4), VersionMessage.NODE_NETWORK);
+        book.misbehaving(peer(4), PeerAddressBook.BAN_THRESHOLD);
+        // Never connected, so not a candidate.
+        book.recordFailure(peer(5));
+
+        List<PeerAddress> best = book.getBestPeers(8);
+        assertEquals(3, best.size());
+        assertEquals(peer(2), best.get(0));
+        assertEquals(peer(1), best.get(1));
+        assertEquals(peer(3), best.get(2));
+        assertEquals(2, book.getBestPeers(2).size());
+
+        // A success clears the failures.
+        book.recordSuccess(peer(3), VersionMessage.NODE_NETWORK);
+        assertEquals(0, book.get(new InetSocketAddress(peer(3).getAddr(), 9999)).getFailures());
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        book.recordSuccess(peer(1), VersionMessage.NODE_NETWORK);
+        book.recordPingTime(peer(1), 250);
+        book.recordFailure(peer(1));
+        book.misbehaving(peer(1), 20);
+        book.recordFailure(peer(2));
+        book.save();
+
+        PeerAddressBook loaded = new PeerAddressBook(UNITTEST, file);
+        loaded.load();
+        assertEquals(2, loaded.size());
+        PeerAddressBook.Entry entry = loaded.get(new InetSocketAddress(peer(1).getAddr(), 9999));
+        assertEquals(VersionMessage.NODE_NETWORK, entry.getServices());
+        assertEquals(250, entry.getPingTime());
+        assertEquals(1, entry.getFailures());
+        assertEquals(20, entry.getBanScore());
+        assertTrue(entry.getLastSuccessTime() > 0);
+        assertEquals(1, loaded.getBestPeers(8).size());
+    }
+
+    @Test
+    public void banExpires() throws Exception {
+        Utils.setMockClock();
+        try {
+            book.recordSuccess(peer(1), VersionMessage.NODE_NETWORK);
+            assertFalse(book.misbehaving(peer(1), PeerAddressBook.BAN_THRESHOLD - 1));
+            assertFalse(book.isBanned(peer(1)));
+            assertTrue(book.misbehaving(peer(1), 1));
+            assertTrue(book.isBanned(peer(1)));
+            assertTrue(book.getBestPeers(8).isEmpty());
+
+            // The ban survives a restart.
+            book.save();
+            PeerAddressBook loaded = new PeerAddressBook(UNITTEST, file);
+            loaded.load();
+            assertTrue(loaded.isBanned(peer(1)));
+            assertEquals(0, loaded.get(new InetSocketAddress(peer(1).getAddr(), 9999)).getBanScore());
+
+            Utils.rollMockClock((int) PeerAddressBook.BAN_DURATION_SECONDS + 1);
+            assertFalse(loaded.isBanned(peer(1)));
+            assertEquals(1, loaded.getBestPeers(8).size());
+        } finally {
+            Utils.resetMocking();
+        }
+    }
+
+    @Test
+    public void corruptFile() throws Exception {
+        book.recordSuccess(peer(1), VersionMessage.NODE_NETWORK);
+        FileOutputStream stream = new FileOutputStream(file);
+        stream.write(new byte[] { 1, 2, 3 });
+        stream.close();
+        try {
+            book.load();
+            fail();
+        } catch (IOException x) {
+            // expected
+        }
+        assertEquals(0, book.size());
+    }
+
+    @Test
+    public void prunedOnInsert() throws Exception {
+        for (int i = 0; i < 3 * PeerAddressBook.MAX_ENTRIES; i++)
+            book.recordFailure(new PeerAddress(UNITTEST, InetAddress.getByAddress(new byte[] { 10, 0, (byte) (i >> 8), (byte) i }), 9999));
+        assertTrue(book.size() <= PeerAddressBook.MAX_ENTRIES + PeerAddressBook.MAX_ENTRIES / 10);
+    }
+
+    @Test
+    public void failedSaveLeavesNoTemporaryFile() throws Exception {
+        File directory = File.createTempFile("dashj-unit-test", null);
+        assertTrue(directory.delete() && directory.mkdir());
+        // a file cannot be renamed over a directory that is not empty
+        File target = new File(directory, "peers");
+        assertTrue(target.mkdir());
+        File blocker = new File(target, "blocker");
+        assertTrue(blocker.createNewFile());
+        try {
+            PeerAddressBook book = new PeerAddressBook(UNITTEST, target);
+            book.recordSuccess(peer(1), VersionMessage.NODE_NETWORK);
+            try {
+                book.save();
+                fail();
+            } catch (IOException x) {
+                // expected
+            }
+            assertArrayEquals(new String[] { "peers" }, directory.list());
+        } finally {
+            blocker.delete();
+            target.delete();
+            directory.delete();
+        }
+    }
+}
@@ -779,6 +779,25 @@ public class PeerGroupTest extends TestWithPeerGroup {
         }
     }
 
+    @Test
+    public void bannedAddressesAreNotAdded() throws Exception {
+        File file = File.createTempFile("dashj-unit-test", null);
+        try {
+            PeerAddressBook book = new PeerAddressBook(UNITTEST, file);
+            PeerAddress banned = new PeerAddress(UNITTEST, InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 }), 9999);
+            PeerAddress good = new PeerAddress(UNITTEST, InetAddress.getByAddress(new byte[] { 10, 0, 0, 2 }), 9999);
+            assertTrue(book.misbehaving(banned, PeerAddressBook.BAN_THRESHOLD));
+            peerGroup.setAddressBook(book);
+            int maxConnections = peerGroup.getMaxConnections();
+            peerGroup.addAddress(banned);
+            assertEquals(maxConnections, peerGroup.getMaxConnections());
+            peerGroup.addAddress(good);
+            assertEquals(maxConnections + 1, peerGroup.getMaxConnections());
+        } finally {
+            file.delete();
+        }
+    }
+
     private <T extends Message> T assertNextMessageIs(InboundMessageQueuer q, Class<T> klass) throws Exception {
         Message outbound = waitForOutbound(q);
         assertEquals(klass, outbound.getClass());
@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.core;
+
+import org.junit.Test;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.*;
+
+public class PeerMetricsTest {
+
+    @Test
+    public void throughput() {
+        PeerMetrics metrics = new PeerMetrics(createMock(Peer.class));
+        assertFalse(metrics.hasThroughput());
+        assertEquals(0, metrics.getBytesPerSecond(), 0);
+
+        // The first sample seeds the averages.
+        metrics.addThroughputSample(1000, 100);
+        assertEquals(1000, metrics.getBytesPerSecond(), 0);
+        assertEquals(100, metrics.getHeadersPerSecond(), 0);
+
+        metrics.addThroughputSample(2000, 0);
+        assertEquals(1200, metrics.getBytesPerSecond(), 0.001);
+        assertEquals(80, metrics.getHeadersPerSecond(), 0.001);
+
+        for (int i = metrics.getThroughputSamples(); i < PeerMetrics.MIN_THROUGHPUT_SAMPLES; i++) {
+            assertFalse(metrics.hasThroughput());
+            metrics.addThroughputSample(1200, 80);
+        }
+        assertTrue(metrics.hasThroughput());
+        assertEquals(1200, metrics.getBytesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void pingTime() {
+        Peer peer = createMock(Peer.class);
+        expect(peer.getPingTime()).andReturn(Long.MAX_VALUE).andReturn(250L).times(2);
+        replay(peer);
+        PeerMetrics metrics = new PeerMetrics(peer);
+        assertFalse(metrics.hasPingTime());
+        assertTrue(metrics.hasPingTime());
+        assertEquals(250, metrics.getPingTimeMsec());
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.core;
+
+import org.bitcoinj.params.UnitTestParams;
+import org.bitcoinj.script.Script;
+import org.bitcoinj.script.ScriptBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ScriptVerificationServiceTest {
+    private static final UnitTestParams PARAMS = UnitTestParams.get();
+    private static final Script SUCCEEDS = new ScriptBuilder().smallNum(1).build();
+    private static final Script FAILS = new ScriptBuilder().smallNum(0).build();
+
+    private ScriptVerificationService service;
+
+    @Before
+    public void setUp() {
+        service = new ScriptVerificationService(new Context(PARAMS), 4);
+    }
+
+    @After
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    private static Transaction spend(int inputs) {
+        Transaction tx = new Transaction(PARAMS);
+        for (int i = 0; i < inputs; i++)
+            tx.addInput(new TransactionInput(PARAMS, tx, new byte[0], new TransactionOutPoint(PARAMS, i, Sha256Hash.ZERO_HASH)));
+        tx.addOutput(Coin.COIN, SUCCEEDS);
+        return tx;
+    }
+
+    private static void add(ScriptVerificationService.Batch batch, int inputs, Script prevOutScript) {
+        batch.add(spend(inputs), new ArrayList<>(Collections.nCopies(inputs, prevOutScript)), EnumSet.noneOf(Script.VerifyFlag.class));
+    }
+
+    @Test
+    public void verifiesAllInputs() throws VerificationException {
+        ScriptVerificationService.Batch batch = service.newBatch();
+        for (int i = 1; i <= 50; i++)
+            add(batch, i, SUCCEEDS);
+        batch.verify();
+        assertEquals(1, service.getBlockLatency().getCount());
+    }
+
+    @Test
+    public void failedBatchDoesNotAffectTheNext() throws VerificationException {
+        ScriptVerificationService.Batch batch = service.newBatch();
+        for (int i = 1; i <= 50; i++)
+            add(batch, i, SUCCEEDS);
+        add(batch, 3, FAILS);
+        try {
+            batch.verify();
+            fail();
+        } catch (VerificationException e) {
+            // expected
+        }
+
+        ScriptVerificationService.Batch next = service.newBatch();
+        add(next, 10, SUCCEEDS);
+        next.verify();
+        assertEquals(1, service.getBlockLatency().getCount());
+    }
+
+    @Test
+    public void cancel() {
+        ScriptVerificationService.Batch batch = service.newBatch();
+        add(batch, 100, SUCCEEDS);
+        batch.cancel();
+        add(batch, 1, FAILS);
+        try {
+            batch.verify();
+            fail();
+        } catch (VerificationException e) {
+            assertEquals("Script verification was cancelled", e.getMessage());
+        }
+    }
+
+    @Test
+    public void verifiesOnCallerAfterShutdown() throws VerificationException {
+        service.shutdown();
+        ScriptVerificationService.Batch batch = service.newBatch();
+        List<Script> scripts = new ArrayList<>(Collections.nCopies(5, SUCCEEDS));
+        batch.add(spend(5), scripts, EnumSet.noneOf(Script.VerifyFlag.class));
+        batch.verify();
+    }
+}
@@ -55,6 +55,16 @@ public class TransactionTest {
         tx = FakeTxBuilder.createFakeTx(UNITTEST);
     }
 
+    @Test
+    public void calcLength() {
+        byte[] normal = tx.bitcoinSerialize();
+        assertEquals(normal.length, Transaction.calcLength(normal, 0));
+
+        // a special transaction (DIP4 coinbase) with its extra payload after lock_time
+        byte[] special = HEX.decode("03000500010000000000000000000000000000000000000000000000000000000000000000ffffffff0502fa050105ffffffff02f4c21a3d0500000023210397181e4cc48fcba0e597bfb029d4cfc4473ae5772a0ff32223977d4e03e07fa9acf4c21a3d050000001976a91425e50daf158a83dfaacd1b77175900aa95a67d4188ac00000000260100fa050000aaaec8d6a8535a01bd844817dea1faed66f6c397b1dcaec5fe8c5af025023c35");
+        assertEquals(special.length, Transaction.calcLength(special, 0));
+    }
+
     @Test(expected = VerificationException.EmptyInputsOrOutputs.class)
     public void emptyOutputs() throws Exception {
         tx.clearOutputs();
@@ -432,6 +442,56 @@ public class TransactionTest {
         }
     }
 
+    @Test
+    public void hashForSignatureMatchesCopiedTransaction() {
+        Transaction tx = new Transaction(UNITTEST);
+        for (int i = 0; i < 5; i++) {
+            TransactionInput input = new TransactionInput(UNITTEST, tx, new byte[]{1, 2, (byte) i},
+                    new TransactionOutPoint(UNITTEST, i, Sha256Hash.of(new byte[]{(byte) i})));
+            input.setSequenceNumber(i);
+            tx.addInput(input);
+        }
+        tx.addOutput(Coin.COIN, new ECKey());
+        tx.addOutput(Coin.CENT, new ECKey());
+        tx.setLockTime(1234);
+        byte[] script = ScriptBuilder.createP2PKHOutputScript(new ECKey()).getProgram();
+
+        for (int i = 0; i < tx.getInputs().size(); i++) {
+            assertEquals(referenceHashForSignature(tx, i, script, false),
+                    tx.hashForSignature(i, script, Transaction.SigHash.ALL, false));
+            assertEquals(referenceHashForSignature(tx, i, script, true),
+                    tx.hashForSignature(i, script, Transaction.SigHash.ALL, true));
+        }
+
+        // changing the transaction changes its hashes
+        Sha256Hash before = tx.hashForSignature(2, script, Transaction.SigHash.ALL, false);
+        tx.getOutput(1).setValue(Coin.MILLICOIN);
+        Sha256Hash after = tx.hashForSignature(2, script, Transaction.SigHash.ALL, false);
+        assertNotEquals(before, after);
+        assertEquals(referenceHashForSignature(tx, 2, script, false), after);
+        tx.getInput(3).setSequenceNumber(TransactionInput.NO_SEQUENCE);
+        assertEquals(referenceHashForSignature(tx, 2, script, false),
+                tx.hashForSignature(2, script, Transaction.SigHash.ALL, false));
+    }
+
+    private static Sha256Hash referenceHashForSignature(Transaction tx, int inputIndex, byte[] script,
+                                                        boolean anyoneCanPay) {
+        Transaction copy = UNITTEST.getDefaultSerializer().makeTransaction(tx.bitcoinSerialize());
+        for (TransactionInput input : copy.getInputs())
+            input.clearScriptBytes();
+        TransactionInput signed = copy.getInput(inputIndex);
+        signed.setScriptBytes(script);
+        if (anyoneCanPay) {
+            List<TransactionInput> inputs = new ArrayList<>(copy.getInputs());
+            copy.clearInputs();
+            copy.addInput(inputs.get(inputIndex));
+        }
+        byte[] serialized = copy.bitcoinSerialize();
+        byte[] signedForm = Arrays.copyOf(serialized, serialized.length + 4);
+        signedForm[serialized.length] = (byte) TransactionSignature.calcSigHashValue(Transaction.SigHash.ALL, anyoneCanPay);
+        return Sha256Hash.twiceOf(signedForm);
+    }
+
     @Test
     public void testVersionNumbers() {
         long type8192 = 536870912;
@@ -21,7 +21,9 @@ import org.bitcoinj.testing.*;
 import org.bitcoinj.utils.*;
 import org.junit.*;
 
+import java.math.BigInteger;
 import java.net.*;
+import java.util.List;
 
 import static org.bitcoinj.core.Coin.COIN;
 import static org.easymock.EasyMock.anyObject;
@@ -30,8 +32,10 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class TxConfidenceTableTest {
     private static final NetworkParameters UNITTEST = UnitTestParams.get();
@@ -140,4 +144,40 @@ public class TxConfidenceTableTest {
         assertEquals(3, tx2.getConfidence().numBroadcastPeers());
         assertEquals(3, table.numBroadcastPeers(tx1.getTxId()));
     }
+
+    @Test
+    public void maxSize() throws Exception {
+        TxConfidenceTable table = new TxConfidenceTable(1000);
+        List<TransactionConfidence> pinned = new java.util.ArrayList<>();
+        for (int i = 0; i < 2000; i++)
+            pinned.add(table.getOrCreate(Sha256Hash.of(new byte[] { (byte) i, (byte) (i >> 8) })));
+        assertTrue(table.size() <= 1000);
+
+        table.setMaxSize(3000);
+        for (int i = 0; i < 2000; i++)
+            pinned.add(table.getOrCreate(Sha256Hash.of(new byte[] { (byte) i, (byte) (i >> 8), 1 })));
+        assertTrue(table.size() > 1000);
+        assertTrue(table.size() <= 3000);
+    }
+
+    @Test
+    public void getByBlock() throws Exception {
+        TransactionConfidence confidence1 = table.getOrCreate(tx1.getTxId());
+        confidence1.setAppearedAtChainHeight(10);
+        Transaction tx3 = FakeTxBuilder.createFakeTx(UNITTEST);
+        TransactionConfidence confidence3 = tx3.getConfidence();
+        confidence3.setAppearedAtChainHeight(20);
+
+        List<TransactionConfidence> atTen = table.get(new StoredBlock(UNITTEST.getGenesisBlock(), BigInteger.ONE, 10));
+        assertEquals(1, atTen.size());
+        assertTrue(atTen.contains(confidence1));
+        List<TransactionConfidence> atTwenty = table.get(new StoredBlock(UNITTEST.getGenesisBlock(), BigInteger.ONE, 20));
+        assertEquals(2, atTwenty.size());
+
+        // a re-org moves the transaction back into the mempool
+        confidence3.setConfidenceType(TransactionConfidence.ConfidenceType.PENDING);
+        atTwenty = table.get(new StoredBlock(UNITTEST.getGenesisBlock(), BigInteger.ONE, 20));
+        assertEquals(1, atTwenty.size());
+        assertFalse(atTwenty.contains(confidence3));
+    }
 }
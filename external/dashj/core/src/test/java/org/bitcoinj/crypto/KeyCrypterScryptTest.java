@@ -20,6 +20,7 @@ package org.bitcoinj.crypto;
 import org.bitcoinj.core.Utils;
 import org.bitcoinj.utils.BriefLogFormatter;
 import com.google.protobuf.ByteString;
+import com.lambdaworks.crypto.SCrypt;
 
 import org.bitcoinj.wallet.Protos;
 import org.bitcoinj.wallet.Protos.ScryptParameters;
@@ -163,4 +164,26 @@ public class KeyCrypterScryptTest {
             assertEquals(Utils.HEX.encode(plainBytes), Utils.HEX.encode(rebornPlainBytes));
         }
     }
+
+    @Test
+    public void parallelLanesMatchSCrypt() throws Exception {
+        byte[] password = "aTestPassword".getBytes("UTF-8");
+        byte[] salt = KeyCrypterScrypt.randomSalt();
+        for (int p = 1; p <= 5; p++)
+            assertArrayEquals(SCrypt.scryptJ(password, salt, 1024, 8, p, KeyCrypterScrypt.KEY_LENGTH),
+                    KeyCrypterScrypt.scrypt(password, salt, 1024, 8, p, KeyCrypterScrypt.KEY_LENGTH));
+    }
+
+    @Test
+    public void calibrate() throws KeyCrypterException {
+        KeyCrypterScrypt keyCrypter = KeyCrypterScrypt.calibrate(1024, 50);
+        ScryptParameters parameters = keyCrypter.getScryptParameters();
+        assertTrue(parameters.getN() >= 1024);
+        assertEquals(1, Long.bitCount(parameters.getN()));
+        assertTrue(parameters.getP() >= 1 && parameters.getP() <= Runtime.getRuntime().availableProcessors());
+
+        EncryptedData data = keyCrypter.encrypt(TEST_BYTES1, keyCrypter.deriveKey(PASSWORD1));
+        KeyCrypterScrypt restored = new KeyCrypterScrypt(parameters);
+        assertArrayEquals(TEST_BYTES1, restored.decrypt(data, restored.deriveKey(PASSWORD1)));
+    }
 }
@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.crypto;
+
+import org.junit.Test;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class PBKDF2SHA512Test {
+
+    private static byte[] reference(String password, String salt, int rounds, int length) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8), rounds, length * 8);
+        return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA512").generateSecret(spec).getEncoded();
+    }
+
+    @Test
+    public void matchesJce() throws Exception {
+        String[][] inputs = {{"password", "salt"}, {"passwordPASSWORDpassword", "saltSALTsaltSALTsaltSALTsaltSALTsalt"},
+                {"ünïcödé", "mnemonicTREZOR"}};
+        for (String[] input : inputs) {
+            for (int length : new int[] {20, 64, 100, 128}) {
+                for (int rounds : new int[] {1, 2, 2048}) {
+                    assertArrayEquals(reference(input[0], input[1], rounds, length),
+                            PBKDF2SHA512.derive(input[0], input[1], rounds, length));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.crypto;
+
+import org.bitcoin.NativeSecp256k1;
+import org.bitcoin.Secp256k1Context;
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.Utils;
+import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that the elliptic curve operations give the same results as the pure Java implementation, which they are
+ * when libsecp256k1 is not loaded.
+ */
+public class Secp256k1ConformanceTest {
+    private static final BigInteger N = ECKey.CURVE.getN();
+
+    private static List<BigInteger> privateKeys() {
+        List<BigInteger> keys = new ArrayList<>();
+        keys.add(BigInteger.ONE);
+        keys.add(BigInteger.valueOf(2));
+        keys.add(N.subtract(BigInteger.ONE));
+        keys.add(N.add(BigInteger.ONE));
+        SecureRandom random = new SecureRandom();
+        for (int i = 0; i < 50; i++)
+            keys.add(new BigInteger(256, random).mod(N.subtract(BigInteger.ONE)).add(BigInteger.ONE));
+        return keys;
+    }
+
+    private static ECPoint publicPointFromPrivateInJava(BigInteger privKey) {
+        return new FixedPointCombMultiplier().multiply(ECKey.CURVE.getG(), privKey.mod(N)).normalize();
+    }
+
+    @Test
+    public void publicPointFromPrivate() {
+        for (BigInteger privKey : privateKeys())
+            assertEquals(publicPointFromPrivateInJava(privKey), ECKey.publicPointFromPrivate(privKey).normalize());
+    }
+
+    @Test
+    public void publicDerivation() {
+        DeterministicKey master = HDKeyDerivation.createMasterPrivateKey(new byte[32]);
+        DeterministicKey watching = master.dropPrivateBytes().dropParent();
+        for (int i = 0; i < 50; i++) {
+            ChildNumber childNumber = new ChildNumber(i);
+            byte[] expected = HDKeyDerivation.deriveChildKey(master, childNumber).getPubKey();
+            HDKeyDerivation.RawKeyBytes normal = HDKeyDerivation.deriveChildKeyBytesFromPublic(watching, childNumber,
+                    HDKeyDerivation.PublicDeriveMode.NORMAL);
+            HDKeyDerivation.RawKeyBytes inversion = HDKeyDerivation.deriveChildKeyBytesFromPublic(watching, childNumber,
+                    HDKeyDerivation.PublicDeriveMode.WITH_INVERSION);
+            assertArrayEquals(expected, normal.keyBytes);
+            assertArrayEquals(expected, inversion.keyBytes);
+            assertArrayEquals(normal.chainCode, inversion.chainCode);
+        }
+    }
+
+    @Test
+    public void decompression() {
+        for (BigInteger privKey : privateKeys()) {
+            ECPoint expected = publicPointFromPrivateInJava(privKey);
+            byte[] compressed = expected.getEncoded(true);
+            assertEquals(expected, new LazyECPoint(ECKey.CURVE.getCurve(), compressed).get());
+            byte[] uncompressed = expected.getEncoded(false);
+            assertEquals(expected, new LazyECPoint(ECKey.CURVE.getCurve(), uncompressed).get());
+        }
+    }
+
+    @Test
+    public void decompressionOfInvalidPoint() {
+        // x = 5 is not on the curve
+        byte[] bits = new byte[33];
+        bits[0] = 2;
+        bits[32] = 5;
+        try {
+            new LazyECPoint(ECKey.CURVE.getCurve(), bits).get();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void nativeLibrary() throws Exception {
+        assumeTrue(Secp256k1Context.isEnabled());
+        for (BigInteger privKey : privateKeys()) {
+            if (privKey.compareTo(N) >= 0)
+                continue;
+            ECPoint expected = publicPointFromPrivateInJava(privKey);
+            assertArrayEquals(expected.getEncoded(false), NativeSecp256k1.computePubkey(Utils.bigIntegerToBytes(privKey, 32)));
+            assertArrayEquals(expected.getEncoded(false), NativeSecp256k1.parsePubkey(expected.getEncoded(true)));
+            byte[] tweak = Utils.bigIntegerToBytes(BigInteger.valueOf(3), 32);
+            ECPoint tweaked = expected.add(ECKey.CURVE.getG().multiply(BigInteger.valueOf(3))).normalize();
+            assertArrayEquals(tweaked.getEncoded(false),
+                    ECKey.CURVE.getCurve().decodePoint(NativeSecp256k1.pubKeyTweakAdd(expected.getEncoded(true), tweak)).getEncoded(false));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.crypto;
+
+import org.bitcoinj.core.ECKey;
+import org.bitcoinj.core.Sha256Hash;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignatureCacheTest {
+    private final ECKey key = new ECKey();
+    private final Sha256Hash hash = Sha256Hash.of(new byte[]{1, 2, 3});
+    private final ECKey.ECDSASignature signature = key.sign(hash);
+
+    @Test
+    public void remembersValidSignatures() {
+        SignatureCache cache = new SignatureCache(10);
+        assertTrue(cache.verify(hash, signature, key.getPubKey()));
+        assertTrue(cache.verify(hash, signature, key.getPubKey()));
+        assertTrue(cache.verify(hash, signature, key.getPubKey()));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2.0 / 3, cache.getHitRate(), 0.0001);
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void doesNotRememberInvalidSignatures() {
+        SignatureCache cache = new SignatureCache(10);
+        Sha256Hash otherHash = Sha256Hash.of(new byte[]{4});
+        assertFalse(cache.verify(otherHash, signature, key.getPubKey()));
+        assertFalse(cache.verify(otherHash, signature, key.getPubKey()));
+        assertFalse(cache.verify(hash, signature, new ECKey().getPubKey()));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void bounded() {
+        SignatureCache cache = new SignatureCache(5);
+        for (int i = 0; i < 20; i++) {
+            Sha256Hash h = Sha256Hash.of(new byte[]{(byte) i});
+            assertTrue(cache.verify(h, key.sign(h), key.getPubKey()));
+        }
+        assertTrue(cache.size() <= 5);
+    }
+}
@@ -27,6 +27,7 @@ import static org.junit.Assert.*;
 
 import org.bitcoinj.params.TestNet3Params;
 import org.bitcoinj.params.WhiteRussianDevNetParams;
+import org.bitcoinj.quorums.LLMQParameters;
 import org.bitcoinj.quorums.SimplifiedQuorumList;
 import org.bitcoinj.store.BlockStoreException;
 import org.bitcoinj.store.FlatDB;
@@ -39,7 +40,13 @@ import java.net.InetAddress;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
+import java.util.TreeSet;
 
 /**
  * Created by hashengineering on 11/26/18.
@@ -131,6 +138,169 @@ public class SimplifiedMasternodesTest {
         assertEquals(expectedMerkleRoot, calculatedMerkleRoot);
     }
 
+    private static SimplifiedMasternodeListEntry createEntry(int i, int confirmed) {
+        // version 1 entry: proRegTxHash, confirmedHash, service, pubKeyOperator, keyIdVoting, isValid
+        byte[] payload = new byte[SimplifiedMasternodeListEntry.MESSAGE_SIZE];
+        System.arraycopy(Sha256Hash.of(Utils.HEX.decode(String.format("%08x", i))).getReversedBytes(), 0, payload, 0, 32);
+        payload[32] = (byte) confirmed;
+        payload[74] = (byte) 0xff;
+        payload[75] = (byte) 0xff;
+        payload[76] = 10;
+        payload[79] = (byte) i;
+        payload[80] = 0x27;
+        payload[81] = 0x0f;
+        payload[82] = (byte) i;
+        payload[150] = 1;
+        return new SimplifiedMasternodeListEntry(PARAMS, payload, 0,
+                NetworkParameters.ProtocolVersion.BLS_LEGACY.getBitcoinProtocolVersion());
+    }
+
+    private static Sha256Hash expectedMerkleRoot(Map<Sha256Hash, SimplifiedMasternodeListEntry> entries) {
+        List<Sha256Hash> hashes = new ArrayList<>();
+        for (Sha256Hash proTxHash : new TreeSet<>(entries.keySet()))
+            hashes.add(entries.get(proTxHash).getHash());
+        return SimplifiedQuorumList.calculateMerkleRoot(hashes);
+    }
+
+    @Test
+    public void merkleRootAfterChanges() {
+        Map<Sha256Hash, SimplifiedMasternodeListEntry> entries = new HashMap<>();
+        for (int i = 0; i < 37; i++) {
+            SimplifiedMasternodeListEntry entry = createEntry(i, 0);
+            entries.put(entry.getProRegTxHash(), entry);
+        }
+        SimplifiedMasternodeList list = new SimplifiedMasternodeList(PARAMS, new ArrayList<>(entries.values()),
+                NetworkParameters.ProtocolVersion.BLS_LEGACY.getBitcoinProtocolVersion());
+        assertEquals(expectedMerkleRoot(entries), list.calculateMerkleRoot());
+
+        Random random = new Random(1);
+        int next = 37;
+        for (int round = 0; round < 50; round++) {
+            SimplifiedMasternodeList previous = list;
+            Sha256Hash previousRoot = previous.calculateMerkleRoot();
+            list = new SimplifiedMasternodeList(previous, SimplifiedMasternodeListDiff.CURRENT_VERSION);
+            SimplifiedMasternodeList sibling = new SimplifiedMasternodeList(previous, SimplifiedMasternodeListDiff.CURRENT_VERSION);
+            int changes = 1 + random.nextInt(4);
+            for (int change = 0; change < changes; change++) {
+                List<Sha256Hash> proTxHashes = new ArrayList<>(entries.keySet());
+                Sha256Hash existing = proTxHashes.get(random.nextInt(proTxHashes.size()));
+                switch (random.nextInt(3)) {
+                    case 0:
+                        SimplifiedMasternodeListEntry added = createEntry(next++, 0);
+                        entries.put(added.getProRegTxHash(), added);
+                        list.addMN(added);
+                        break;
+                    case 1:
+                        if (entries.size() > 1) {
+                            entries.remove(existing);
+                            list.removeMN(existing);
+                        }
+                        break;
+                    default:
+                        SimplifiedMasternodeListEntry updated = createEntry(existingIndex(existing, next), round + 1);
+                        entries.put(updated.getProRegTxHash(), updated);
+                        list.addMN(updated);
+                        break;
+                }
+            }
+            assertEquals(expectedMerkleRoot(entries), list.calculateMerkleRoot());
+            // the lists sharing its tree are not affected
+            assertEquals(previousRoot, sibling.calculateMerkleRoot());
+            assertEquals(previousRoot, previous.calculateMerkleRoot());
+        }
+    }
+
+    private static int existingIndex(Sha256Hash proTxHash, int count) {
+        for (int i = 0; i < count; i++) {
+            if (Sha256Hash.of(Utils.HEX.decode(String.format("%08x", i))).equals(proTxHash))
+                return i;
+        }
+        throw new IllegalArgumentException();
+    }
+
+    @Test
+    public void scoreIndexMatchesSortedScores() throws Exception {
+        final Sha256Hash modifier = Sha256Hash.of(new byte[] { 7 });
+        ArrayList<SimplifiedMasternodeListEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            entries.add(createEntry(i, i % 5 == 0 ? 0 : 1));
+        SimplifiedMasternodeList list = new SimplifiedMasternodeList(PARAMS, entries,
+                NetworkParameters.ProtocolVersion.BLS_LEGACY.getBitcoinProtocolVersion());
+
+        // reference: sha256(confirmedHashWithProRegTxHash, modifier) of the confirmed masternodes, descending
+        final Map<Sha256Hash, Sha256Hash> scores = new HashMap<>();
+        List<SimplifiedMasternodeListEntry> expected = new ArrayList<>();
+        for (SimplifiedMasternodeListEntry entry : entries) {
+            if (entry.getConfirmedHash().isZero())
+                continue;
+            byte[] data = new byte[64];
+            System.arraycopy(entry.getConfirmedHashWithProRegTxHash().getReversedBytes(), 0, data, 0, 32);
+            System.arraycopy(modifier.getReversedBytes(), 0, data, 32, 32);
+            scores.put(entry.getProRegTxHash(), Sha256Hash.of(data));
+            expected.add(entry);
+        }
+        expected.sort((a, b) -> scores.get(b.getProRegTxHash()).compareTo(scores.get(a.getProRegTxHash())));
+
+        MasternodeScoreIndex index = list.getScoreIndex(modifier, false);
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getProRegTxHash(), index.get(i).getProRegTxHash());
+            assertEquals(i + 1, list.getMasternodeRank(expected.get(i).getProRegTxHash(), modifier, false));
+        }
+        // unconfirmed masternodes have no rank
+        assertEquals(-1, list.getMasternodeRank(entries.get(0).getProRegTxHash(), modifier, false));
+
+        ArrayList<Masternode> quorum = list.calculateQuorum(10, modifier);
+        assertEquals(10, quorum.size());
+        for (int i = 0; i < quorum.size(); i++)
+            assertEquals(expected.get(i).getProRegTxHash(), quorum.get(i).getProTxHash());
+
+        // the index is cached until the list changes
+        assertSame(index, list.getScoreIndex(modifier, false));
+        list.removeMN(expected.get(0).getProRegTxHash());
+        assertEquals(expected.get(1).getProRegTxHash(), list.getScoreIndex(modifier, false).get(0).getProRegTxHash());
+    }
+
+    @Test
+    public void quorumMembersSavedWithRotationState() {
+        // the masternode lists of the state are read as they are saved from version 2 on
+        SimplifiedMasternodeListManager manager = new SimplifiedMasternodeListManager(context);
+        manager.setFormatVersion(SimplifiedMasternodeListManager.SMLE_VERSION_FORMAT_VERSION);
+        context.setMasternodeListManager(manager);
+        QuorumRotationState state = new QuorumRotationState(context);
+        LLMQParameters.LLMQType llmqType = PARAMS.getLlmqDIP0024InstantSend();
+        ArrayList<Masternode> entries = new ArrayList<>();
+        for (int i = 0; i < 14; i++)
+            entries.add(createEntry(i, 1));
+        ArrayList<ArrayList<Masternode>> cycleMembers = new ArrayList<>();
+        for (int q = 0; q < 4; q++) {
+            // members overlap between the quorums of a cycle
+            ArrayList<Masternode> members = new ArrayList<>(entries.subList(q * 3, q * 3 + 5));
+            cycleMembers.add(members);
+        }
+        Sha256Hash cycleHash = Sha256Hash.of(new byte[] { 1 });
+        state.mapCycleQuorumMembers.put(llmqType, new LinkedHashMap<Sha256Hash, ArrayList<ArrayList<Masternode>>>());
+        state.mapCycleQuorumMembers.get(llmqType).put(cycleHash, cycleMembers);
+
+        byte[] bytes = state.bitcoinSerialize();
+        QuorumRotationState loaded = new QuorumRotationState(context, bytes, 0,
+                NetworkParameters.ProtocolVersion.CURRENT.getBitcoinProtocolVersion());
+        assertEquals(bytes.length, loaded.getMessageSize());
+        ArrayList<ArrayList<Masternode>> loadedMembers = loaded.mapCycleQuorumMembers.get(llmqType).get(cycleHash);
+        assertEquals(cycleMembers.size(), loadedMembers.size());
+        for (int q = 0; q < cycleMembers.size(); q++) {
+            assertEquals(cycleMembers.get(q).size(), loadedMembers.get(q).size());
+            for (int i = 0; i < cycleMembers.get(q).size(); i++) {
+                Masternode expected = cycleMembers.get(q).get(i);
+                Masternode actual = loadedMembers.get(q).get(i);
+                assertEquals(expected.getProTxHash(), actual.getProTxHash());
+                assertEquals(expected.getService(), actual.getService());
+            }
+        }
+        // an entry shared by two quorums is read back once
+        assertSame(loadedMembers.get(0).get(3), loadedMembers.get(1).get(0));
+    }
+
     @Test
     public void loadFromFile() throws Exception {
         loadFromFile("simplifiedmasternodelistmanager.dat", 2);
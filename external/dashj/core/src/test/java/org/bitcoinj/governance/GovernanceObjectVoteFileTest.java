@@ -0,0 +1,131 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.governance;
+
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.MasternodeSignature;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.TransactionOutPoint;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.bitcoinj.governance.GovernanceVote.VoteOutcome.VOTE_OUTCOME_NO;
+import static org.bitcoinj.governance.GovernanceVote.VoteOutcome.VOTE_OUTCOME_YES;
+import static org.bitcoinj.governance.GovernanceVote.VoteSignal.VOTE_SIGNAL_DELETE;
+import static org.bitcoinj.governance.GovernanceVote.VoteSignal.VOTE_SIGNAL_FUNDING;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GovernanceObjectVoteFileTest {
+    UnitTestParams PARAMS = UnitTestParams.get();
+    Sha256Hash parentHash = Sha256Hash.of(new byte[]{1});
+    List<GovernanceVote> votes;
+
+    @Before
+    public void setUp() {
+        new Context(PARAMS);
+        votes = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            TransactionOutPoint outpoint = new TransactionOutPoint(PARAMS, i % 3, Sha256Hash.of(new byte[]{(byte) (i / 3), (byte) (i / 3 >> 8)}));
+            GovernanceVote vote = new GovernanceVote(PARAMS, outpoint, parentHash,
+                    i % 2 == 0 ? VOTE_SIGNAL_FUNDING : VOTE_SIGNAL_DELETE, i % 5 == 0 ? VOTE_OUTCOME_NO : VOTE_OUTCOME_YES);
+            vote.setTime(1600000000L + i);
+            vote.updateHash();
+            byte[] signature = new byte[1 + 65];
+            signature[0] = 65;
+            signature[1 + i % 65] = (byte) i;
+            vote.setSignature(new MasternodeSignature(PARAMS, signature, 0));
+            votes.add(vote);
+        }
+    }
+
+    private static void assertSameVote(GovernanceVote expected, GovernanceVote actual) {
+        assertEquals(expected.getHash(), actual.getHash());
+        assertEquals(expected.getMasternodeOutpoint(), actual.getMasternodeOutpoint());
+        assertEquals(expected.getParentHash(), actual.getParentHash());
+        assertEquals(expected.getSignal(), actual.getSignal());
+        assertEquals(expected.getOutcome(), actual.getOutcome());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertArrayEquals(expected.getSignature().getBytes(), actual.getSignature().getBytes());
+    }
+
+    @Test
+    public void addAndLookup() {
+        GovernanceObjectVoteFile file = new GovernanceObjectVoteFile();
+        for (GovernanceVote vote : votes)
+            file.addVote(vote);
+        assertEquals(votes.size(), file.getVoteCount());
+
+        for (GovernanceVote vote : votes) {
+            assertTrue(file.hasVote(vote.getHash()));
+            assertSameVote(vote, file.getVote(vote.getHash()));
+        }
+        assertFalse(file.hasVote(parentHash));
+        assertNull(file.getVote(parentHash));
+
+        // most recently added first
+        ArrayList<GovernanceVote> fileVotes = file.getVotes();
+        ArrayList<Sha256Hash> hashes = file.getVoteHashes();
+        for (int i = 0; i < votes.size(); i++) {
+            assertSameVote(votes.get(votes.size() - 1 - i), fileVotes.get(i));
+            assertEquals(votes.get(votes.size() - 1 - i).getHash(), hashes.get(i));
+        }
+    }
+
+    @Test
+    public void removeVotesFromMasternode() {
+        GovernanceObjectVoteFile file = new GovernanceObjectVoteFile();
+        for (GovernanceVote vote : votes)
+            file.addVote(vote);
+        TransactionOutPoint removed = votes.get(4).getMasternodeOutpoint();
+        file.removeVotesFromMasternode(removed);
+
+        int remaining = 0;
+        for (GovernanceVote vote : votes) {
+            if (vote.getMasternodeOutpoint().equals(removed)) {
+                assertFalse(file.hasVote(vote.getHash()));
+            } else {
+                assertSameVote(vote, file.getVote(vote.getHash()));
+                remaining++;
+            }
+        }
+        assertEquals(remaining, file.getVoteCount());
+        assertEquals(votes.size() - 1, remaining);
+    }
+
+    @Test
+    public void roundTrip() {
+        GovernanceObjectVoteFile file = new GovernanceObjectVoteFile();
+        for (GovernanceVote vote : votes)
+            file.addVote(vote);
+        byte[] serialized = file.bitcoinSerialize();
+
+        GovernanceObjectVoteFile copy = new GovernanceObjectVoteFile(PARAMS, serialized, 0);
+        assertEquals(serialized.length, copy.getMessageSize());
+        assertEquals(votes.size(), copy.getVoteCount());
+        assertArrayEquals(serialized, copy.bitcoinSerialize());
+        for (GovernanceVote vote : votes)
+            assertSameVote(vote, copy.getVote(vote.getHash()));
+
+        assertArrayEquals(serialized, new GovernanceObjectVoteFile(file).bitcoinSerialize());
+    }
+}
@@ -80,10 +80,12 @@ public class ChainLocksHandlerTest {
     public void processChainLockTest() {
         chainLocksHandler.start();
         chainLocksHandler.processChainLockSignature(null, clsig);
+        // the CLSIG is verified on the executor, stopping waits for it
+        chainLocksHandler.stop();
         assertEquals(905775, chainLocksHandler.getBestChainLockBlockHeight());
         assertEquals(905775, chainLocksHandler.getBestChainLockBlock().getHeight());
         assertEquals(Sha256Hash.wrap("000000e832ac791591489ccfbb531ace828e1465b68b203158c9974c4c2b23b5"), chainLocksHandler.getBestChainLockBlock().getHeader().getHash());
-        chainLocksHandler.stop();
+        assertEquals(1, chainLocksHandler.getChainLockLatency().getCount());
     }
 
     @Test
@@ -80,6 +80,16 @@ public class QuorumRotationInfoTest {
         assertArrayEquals(payloadOne, quorumRotationInfo.bitcoinSerialize());
     }
 
+    @Test
+    public void qrinfo_70227_fromStream() throws IOException {
+        payloadOne = loadQRInfo("qrinfo-mainnet-0-1888473_70227.dat");
+        QuorumRotationInfo quorumRotationInfo = new QuorumRotationInfo(MAINNET,
+                Objects.requireNonNull(getClass().getResourceAsStream("qrinfo-mainnet-0-1888473_70227.dat")), 70227);
+        assertArrayEquals(payloadOne, quorumRotationInfo.bitcoinSerialize());
+        assertEquals(payloadOne.length, quorumRotationInfo.getMessageSize());
+        assertEquals(new QuorumRotationInfo(MAINNET, payloadOne, 70227).mnListDiffTip.blockHash, quorumRotationInfo.mnListDiffTip.blockHash);
+    }
+
     @Test
     public void qrinfo_70228_beforeActivation() throws IOException {
         BLSScheme.setLegacyDefault(true); // the qrinfo will set the scheme to basic
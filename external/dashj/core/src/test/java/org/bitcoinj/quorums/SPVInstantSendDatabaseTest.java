@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.quorums;
+
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SPVInstantSendDatabaseTest {
+    UnitTestParams PARAMS = UnitTestParams.get();
+    Context context;
+
+    byte[] isLockMsg = Utils.HEX.decode("011dbbda5861b12d7523f20aa5e0d42f52de3dcd2d5c2fe919ba67b59f050d206e00000000babb35d229d6bf5897a9fc3770755868d9730e022dc04c8a7a7e9df9f1caccbe8967c46529a967b3822e1ba8a173066296d02593f0f59b3a78a30a7eef9c8a120847729e62e4a32954339286b79fe7590221331cd28d576887a263f45b595d499272f656c3f5176987c976239cac16f972d796ad82931d532102a4f95eec7d80");
+    byte[] isdLockMsg = Utils.HEX.decode("0101a13402f343c05e8a6cd1255dc10446f9af507d02a366fbb1df4ef7130633c6b501000000f2a984e019605164b62b08a559789ac15e8d93ff6b041ffeef3457fb689413fc1c7c0b2ac5ebca64f80c0151a152612b23396193880b8f6856e9cbcc0501000082432a71e87357d9609c659d32cbf3bfb65ccce2337d08ab1485c32799491112509cd7c8e1cd40bdc814bf1eff868dc80f3fac74e37754eb19a5883d5721875a98dd3ea3112c3c52091852348351479b4d32a98d41200080532ed233a0aa355e");
+    InstantSendLock islock;
+    InstantSendLock isdlock;
+
+    @Before
+    public void setUp() {
+        context = new Context(PARAMS);
+        Utils.setMockClock();
+        islock = new InstantSendLock(PARAMS, isLockMsg, InstantSendLock.ISLOCK_VERSION);
+        isdlock = new InstantSendLock(PARAMS, isdLockMsg, InstantSendLock.ISDLOCK_VERSION);
+    }
+
+    @After
+    public void tearDown() {
+        Utils.resetMocking();
+    }
+
+    @Test
+    public void lookups() {
+        SPVInstantSendDatabase db = new SPVInstantSendDatabase(context);
+        db.writeNewInstantSendLock(islock.getHash(), islock);
+
+        assertEquals(islock, db.getInstantSendLockByHash(islock.getHash()));
+        assertEquals(islock, db.getInstantSendLockByTxid(islock.txid));
+        assertEquals(islock, db.getInstantSendLockByInput(islock.inputs.get(0)));
+
+        db.removeInstantSendLock(islock.getHash(), islock);
+        assertNull(db.getInstantSendLockByHash(islock.getHash()));
+        assertNull(db.getInstantSendLockByTxid(islock.txid));
+        assertNull(db.getInstantSendLockByInput(islock.inputs.get(0)));
+    }
+
+    @Test
+    public void removeConfirmed() {
+        SPVInstantSendDatabase db = new SPVInstantSendDatabase(context);
+        db.writeNewInstantSendLock(islock.getHash(), islock);
+        db.writeNewInstantSendLock(isdlock.getHash(), isdlock);
+        db.writeInstantSendLockMined(islock.getHash(), 100);
+        db.writeInstantSendLockMined(isdlock.getHash(), 110);
+
+        assertTrue(db.removeConfirmedInstantSendLocks(99).isEmpty());
+        HashMap<Sha256Hash, InstantSendLock> removed = db.removeConfirmedInstantSendLocks(105);
+        assertEquals(1, removed.size());
+        assertEquals(islock, removed.get(islock.getHash()));
+        assertNull(db.getInstantSendLockByTxid(islock.txid));
+
+        // no longer mined, so it stays
+        db.removeInstantSendLockMined(isdlock.getHash(), 110);
+        assertTrue(db.removeConfirmedInstantSendLocks(200).isEmpty());
+        assertEquals(isdlock, db.getInstantSendLockByTxid(isdlock.txid));
+    }
+
+    @Test
+    public void removeExpired() {
+        SPVInstantSendDatabase db = new SPVInstantSendDatabase(context);
+        db.writeNewInstantSendLock(islock.getHash(), islock);
+        Utils.rollMockClock((int) SPVInstantSendDatabase.MAX_INSTANTSEND_LOCK_AGE / 2);
+        db.writeNewInstantSendLock(isdlock.getHash(), isdlock);
+        Utils.rollMockClock((int) SPVInstantSendDatabase.MAX_INSTANTSEND_LOCK_AGE / 2 + 1);
+
+        db.checkAndRemove();
+        assertNull(db.getInstantSendLockByHash(islock.getHash()));
+        assertEquals(isdlock, db.getInstantSendLockByHash(isdlock.getHash()));
+    }
+
+    @Test
+    public void roundTrip() {
+        SPVInstantSendDatabase db = new SPVInstantSendDatabase(context);
+        db.writeNewInstantSendLock(islock.getHash(), islock);
+        db.writeNewInstantSendLock(isdlock.getHash(), isdlock);
+        db.writeInstantSendLockMined(isdlock.getHash(), 110);
+
+        SPVInstantSendDatabase copy = new SPVInstantSendDatabase(context);
+        copy.load(db.bitcoinSerialize(), 0);
+
+        assertEquals(islock.getHash(), copy.getInstantSendLockByTxid(islock.txid).getHash());
+        assertEquals(isdlock.getHash(), copy.getInstantSendLockByInput(isdlock.inputs.get(0)).getHash());
+        assertTrue(copy.getInstantSendLockByHash(isdlock.getHash()).isDeterministic());
+        assertEquals(1, copy.removeConfirmedInstantSendLocks(110).size());
+        assertEquals(islock.getHash(), copy.getInstantSendLockByHash(islock.getHash()).getHash());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.store;
+
+import org.bitcoinj.core.AbstractManager;
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.ProtocolException;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.core.VarInt;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FlatDBTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = new Context(UnitTestParams.get());
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        TestManager manager = new TestManager(context);
+        for (long i = 0; i < 100000; i++)
+            manager.values.add(i * 31);
+        File file = new File(folder.getRoot(), "test.dat");
+        manager.saveToFile(file);
+
+        TestManager loaded = new TestManager(context);
+        FlatDB<TestManager> flatDB = new FlatDB<>(context, file.getAbsolutePath(), true);
+        assertEquals(FlatDB.ReadResult.Ok, flatDB.read(loaded));
+        assertEquals(manager.values, loaded.values);
+
+        // the checksum is the double SHA-256 of everything before it
+        byte[] data = Files.readAllBytes(file.toPath());
+        byte[] content = Arrays.copyOfRange(data, 0, data.length - 32);
+        byte[] checksum = Arrays.copyOfRange(data, data.length - 32, data.length);
+        assertArrayEquals(Sha256Hash.twiceOf(content).getReversedBytes(), checksum);
+    }
+
+    @Test
+    public void corruptedFileIsRejected() throws IOException {
+        TestManager manager = new TestManager(context);
+        manager.values.add(1L);
+        File file = new File(folder.getRoot(), "test.dat");
+        manager.saveToFile(file);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length() - 40);
+        raf.write(0xff);
+        raf.close();
+
+        FlatDB<TestManager> flatDB = new FlatDB<>(context, file.getAbsolutePath(), true);
+        assertEquals(FlatDB.ReadResult.IncorrectHash, flatDB.read(new TestManager(context)));
+    }
+
+    @Test
+    public void failedSaveKeepsPreviousFile() throws IOException {
+        TestManager manager = new TestManager(context);
+        manager.values.add(1L);
+        File file = new File(folder.getRoot(), "test.dat");
+        manager.saveToFile(file);
+        byte[] previous = Files.readAllBytes(file.toPath());
+
+        manager.failSerialization = true;
+        try {
+            manager.saveToFile(file);
+            fail();
+        } catch (IOException x) {
+            // expected
+        }
+        assertArrayEquals(previous, Files.readAllBytes(file.toPath()));
+        assertEquals(1, folder.getRoot().listFiles().length);
+    }
+
+    @Test
+    public void missingFile() {
+        File file = new File(folder.getRoot(), "missing.dat");
+        FlatDB<TestManager> flatDB = new FlatDB<>(context, file.getAbsolutePath(), true);
+        assertEquals(FlatDB.ReadResult.FileError, flatDB.read(new TestManager(context)));
+        assertTrue(!file.exists());
+    }
+
+    static class TestManager extends AbstractManager {
+        List<Long> values = new ArrayList<>();
+        boolean failSerialization;
+
+        TestManager(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void parse() throws ProtocolException {
+            values = new ArrayList<>();
+            int size = (int) readVarInt();
+            for (int i = 0; i < size; i++)
+                values.add(readInt64());
+            length = cursor - offset;
+        }
+
+        @Override
+        protected void bitcoinSerializeToStream(OutputStream stream) throws IOException {
+            if (failSerialization)
+                throw new IOException("failed");
+            stream.write(new VarInt(values.size()).encode());
+            for (long value : values)
+                Utils.int64ToByteStreamLE(value, stream);
+        }
+
+        @Override
+        public int calculateMessageSizeInBytes() {
+            return 0;
+        }
+
+        @Override
+        public void checkAndRemove() {
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+        }
+
+        @Override
+        public AbstractManager createEmpty() {
+            return new TestManager(Context.get());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.utils;
+
+import org.bitcoinj.core.Context;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.Utils;
+import org.bitcoinj.params.UnitTestParams;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CacheMapTest {
+
+    @Before
+    public void setUp() {
+        new Context(UnitTestParams.get());
+    }
+
+    private static List<Integer> keys(Iterable<CacheItem<Integer, String>> items) {
+        List<Integer> keys = new ArrayList<>();
+        for (CacheItem<Integer, String> item : items)
+            keys.add(item.key);
+        return keys;
+    }
+
+    @Test
+    public void evictsOldest() {
+        CacheMap<Integer, String> map = new CacheMap<>(3);
+        for (int i = 0; i < 5; i++)
+            map.insert(i, "v" + i);
+        assertEquals(3, map.getSize());
+        assertFalse(map.hasKey(1));
+        assertEquals("v4", map.get(4).value);
+        assertEquals(Arrays.asList(4, 3, 2), keys(map.getItemList()));
+
+        // updating a value does not change the order
+        map.insert(2, "w2");
+        assertEquals("w2", map.get(2).value);
+        assertEquals(Arrays.asList(4, 3, 2), keys(map.getItemList()));
+    }
+
+    @Test
+    public void erase() {
+        CacheMap<Integer, String> map = new CacheMap<>(10);
+        for (int i = 0; i < 5; i++)
+            map.insert(i, "v" + i);
+        map.erase(0);
+        map.erase(2);
+        map.erase(4);
+        map.erase(7);
+        assertEquals(2, map.getSize());
+        assertEquals(Arrays.asList(3, 1), keys(map.getItemList()));
+
+        Iterator<CacheItem<Integer, String>> it = map.getItemList().iterator();
+        it.next();
+        it.remove();
+        assertFalse(map.hasKey(3));
+        assertNull(map.get(3));
+        assertEquals(1, map.getSize());
+
+        CacheMap<Integer, String> copy = new CacheMap<>(map);
+        copy.insert(5, "v5");
+        assertEquals(Arrays.asList(1), keys(map.getItemList()));
+        assertEquals(Arrays.asList(5, 1), keys(copy.getItemList()));
+    }
+
+    @Test
+    public void multiMap() {
+        CacheMultiMap<Integer, String> map = new CacheMultiMap<>(4);
+        assertTrue(map.insert(1, "a"));
+        assertTrue(map.insert(1, "b"));
+        assertFalse(map.insert(1, "b"));
+        assertTrue(map.insert(2, "c"));
+        assertEquals(3, map.getSize());
+
+        ArrayList<String> values = new ArrayList<>();
+        assertTrue(map.getAll(1, values));
+        assertEquals(2, values.size());
+
+        map.erase(1, "a");
+        assertEquals(2, map.getSize());
+        assertEquals("b", map.get(1));
+        map.erase(1);
+        assertFalse(map.hasKey(1));
+        assertEquals(1, map.getSize());
+
+        assertTrue(map.insert(3, "d"));
+        assertTrue(map.insert(4, "e"));
+        assertTrue(map.insert(5, "f"));
+        assertTrue(map.insert(6, "g"));
+        // 2 was the oldest
+        assertFalse(map.hasKey(2));
+        assertEquals(4, map.getSize());
+
+        Iterator<CacheItem<Integer, String>> it = map.getItemList().iterator();
+        while (it.hasNext()) {
+            if (it.next().key % 2 == 0)
+                it.remove();
+        }
+        assertEquals(Arrays.asList(5, 3), keys(map.getItemList()));
+        assertFalse(map.hasKey(4));
+        assertFalse(map.hasKey(6));
+    }
+
+    @Test
+    public void serializationFormat() throws IOException {
+        CacheMap<Sha256Hash, Sha256Hash> map = new CacheMap<>(100);
+        Sha256Hash one = Sha256Hash.of(new byte[]{1});
+        Sha256Hash two = Sha256Hash.of(new byte[]{2});
+        map.insert(one, two);
+        map.insert(two, one);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        Utils.int64ToByteStreamLE(100, expected);
+        Utils.int64ToByteStreamLE(2, expected);
+        expected.write(2);
+        // most recently added first
+        expected.write(two.getReversedBytes());
+        expected.write(one.getReversedBytes());
+        expected.write(one.getReversedBytes());
+        expected.write(two.getReversedBytes());
+        assertArrayEquals(expected.toByteArray(), map.bitcoinSerialize());
+    }
+}
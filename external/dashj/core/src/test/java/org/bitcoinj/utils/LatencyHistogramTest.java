@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.utils;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMillis(), DELTA);
+        assertEquals(0, histogram.getPercentileMillis(50), DELTA);
+        assertEquals(0, histogram.getMaxMillis(), DELTA);
+    }
+
+    @Test
+    public void meanAndMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10, TimeUnit.MILLISECONDS);
+        histogram.record(30, TimeUnit.MILLISECONDS);
+        histogram.record(-5, TimeUnit.MILLISECONDS);
+        assertEquals(3, histogram.getCount());
+        assertEquals(40.0 / 3, histogram.getMeanMillis(), DELTA);
+        assertEquals(30, histogram.getMaxMillis(), DELTA);
+    }
+
+    @Test
+    public void percentilesWithinFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i, TimeUnit.MILLISECONDS);
+
+        double p50 = histogram.getPercentileMillis(50);
+        assertTrue(p50 >= 50 && p50 <= 100);
+        double p90 = histogram.getPercentileMillis(90);
+        assertTrue(p90 >= 90 && p90 <= 180);
+        // never more than the largest sample
+        assertEquals(100, histogram.getPercentileMillis(100), DELTA);
+        assertTrue(histogram.getPercentileMillis(0) <= 2);
+    }
+
+    @Test
+    public void longLatenciesGoToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(2, TimeUnit.HOURS);
+        assertEquals(TimeUnit.HOURS.toMillis(2), histogram.getPercentileMillis(50), DELTA);
+    }
+
+    @Test
+    public void reset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1, TimeUnit.SECONDS);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMillis(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPercentile() {
+        new LatencyHistogram().getPercentileMillis(101);
+    }
+}
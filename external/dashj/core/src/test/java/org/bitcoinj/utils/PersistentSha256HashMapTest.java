@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bitcoinj.utils;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class PersistentSha256HashMapTest {
+
+    private static Sha256Hash hash(int i) {
+        return Sha256Hash.of(new byte[] { (byte) i, (byte) (i >> 8) });
+    }
+
+    private static void assertSameContents(TreeMap<Sha256Hash, Integer> expected, PersistentSha256HashMap<Integer> map) {
+        assertEquals(expected.size(), map.size());
+        Iterator<Map.Entry<Sha256Hash, Integer>> iterator = map.iterator();
+        int index = 0;
+        for (Map.Entry<Sha256Hash, Integer> entry : expected.entrySet()) {
+            Map.Entry<Sha256Hash, Integer> actual = iterator.next();
+            assertEquals(entry, actual);
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+            assertEquals(index, map.indexOf(entry.getKey()));
+            assertEquals(entry.getValue(), map.valueAt(index));
+            index++;
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void plusAndMinus() {
+        Random random = new Random(1);
+        TreeMap<Sha256Hash, Integer> expected = new TreeMap<>();
+        PersistentSha256HashMap<Integer> map = PersistentSha256HashMap.empty();
+        List<PersistentSha256HashMap<Integer>> versions = new ArrayList<>();
+        List<TreeMap<Sha256Hash, Integer>> expectedVersions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Sha256Hash key = hash(random.nextInt(1000));
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.minus(key);
+            } else {
+                expected.put(key, i);
+                map = map.plus(key, i);
+            }
+            if (i % 100 == 0) {
+                versions.add(map);
+                expectedVersions.add(new TreeMap<>(expected));
+            }
+        }
+        assertSameContents(expected, map);
+        assertSameContents(expected, PersistentSha256HashMap.copyOf(expected));
+        // earlier versions are not affected by later changes
+        for (int i = 0; i < versions.size(); i++)
+            assertSameContents(expectedVersions.get(i), versions.get(i));
+    }
+
+    @Test
+    public void indexOfMissingKey() {
+        PersistentSha256HashMap<Integer> map = PersistentSha256HashMap.empty();
+        TreeMap<Sha256Hash, Integer> expected = new TreeMap<>();
+        for (int i = 0; i < 100; i += 2) {
+            map = map.plus(hash(i), i);
+            expected.put(hash(i), i);
+        }
+        for (int i = 1; i < 100; i += 2) {
+            int insertionPoint = expected.headMap(hash(i)).size();
+            assertEquals(-insertionPoint - 1, map.indexOf(hash(i)));
+            assertFalse(map.containsKey(hash(i)));
+            assertNull(map.get(hash(i)));
+        }
+    }
+
+    @Test
+    public void iteratorFromIndex() {
+        PersistentSha256HashMap<Integer> map = PersistentSha256HashMap.empty();
+        for (int i = 0; i < 50; i++)
+            map = map.plus(hash(i), i);
+        for (int from = 0; from <= map.size(); from++) {
+            Iterator<Map.Entry<Sha256Hash, Integer>> iterator = map.iterator(from);
+            for (int i = from; i < map.size(); i++)
+                assertEquals(map.valueAt(i), iterator.next().getValue());
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void unchangedMapIsReturned() {
+        PersistentSha256HashMap<Integer> map = PersistentSha256HashMap.<Integer>empty().plus(hash(1), 1);
+        assertSame(map, map.plus(hash(1), map.get(hash(1))));
+        assertSame(map, map.minus(hash(2)));
+        assertTrue(map.minus(hash(1)).isEmpty());
+    }
+}
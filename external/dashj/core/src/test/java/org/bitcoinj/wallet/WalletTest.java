@@ -180,6 +180,22 @@ public class WalletTest extends TestWithWallet {
         basicSpendingCommon(encryptedWallet, myEncryptedAddress, OTHER_ADDRESS, encryptedWallet);
     }
 
+    @Test
+    public void emptyEncryptedWalletWithManyInputs() throws Exception {
+        Wallet encryptedWallet = new Wallet(UNITTEST);
+        encryptedWallet.encrypt(PASSWORD1);
+        for (int i = 0; i < 20; i++)
+            sendMoneyToWallet(encryptedWallet, AbstractBlockChain.NewBlockType.BEST_CHAIN, CENT,
+                    encryptedWallet.freshReceiveAddress());
+        SendRequest req = SendRequest.emptyWallet(OTHER_ADDRESS);
+        req.aesKey = encryptedWallet.getKeyCrypter().deriveKey(PASSWORD1);
+        encryptedWallet.completeTx(req);
+        // enough inputs to be signed in parallel
+        assertEquals(20, req.tx.getInputs().size());
+        for (TransactionInput input : req.tx.getInputs())
+            input.verify(input.getConnectedOutput());
+    }
+
     @Test
     public void encryptDecryptWalletWithArbitraryPathAndScriptType() throws Exception {
         final byte[] ENTROPY = Sha256Hash.hash("don't use a string seed like this in real life".getBytes());
@@ -37,6 +37,8 @@ public class AutoLogout {
 
     private OnLogoutListener onLogoutListener;
 
+    private final EncryptionKeyCache encryptionKeyCache = new EncryptionKeyCache();
+
     @SuppressWarnings("FieldCanBeLocal")
     private SharedPreferences.OnSharedPreferenceChangeListener configListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
         @Override
@@ -66,6 +68,7 @@ public class AutoLogout {
     public void startTimer() {
         lockTimerClock.postDelayed(timerTask, LOCK_TIMER_TICK_MS);
         timerActive = true;
+        encryptionKeyCache.setEnabled(true);
     }
 
     private Runnable timerTask = new Runnable() {
@@ -73,6 +76,7 @@ public class AutoLogout {
         public void run() {
             tickCounter += LOCK_TIMER_TICK_MS;
             if (shouldLogout()) {
+                encryptionKeyCache.setEnabled(false);
                 if (onLogoutListener != null) {
                     onLogoutListener.onLogout(appInBackground);
                 }
@@ -92,6 +96,7 @@ public class AutoLogout {
     public void stopTimer() {
         lockTimerClock.removeCallbacksAndMessages(null);
         timerActive = false;
+        encryptionKeyCache.setEnabled(false);
         resetTimer();
     }
 
@@ -117,6 +122,13 @@ public class AutoLogout {
         return timerActive;
     }
 
+    /**
+     * The keys derived from the wallet password are only cached while the timer runs, and forgotten on logout.
+     */
+    public EncryptionKeyCache getEncryptionKeyCache() {
+        return encryptionKeyCache;
+    }
+
     interface OnLogoutListener {
         void onLogout(boolean isAppInBackground);
     }
@@ -143,6 +143,9 @@ public final class Constants {
 
         public static final String MNLIST_BOOTSTRAP_FILENAME = "mnlistdiff" + FILENAME_NETWORK_SUFFIX + ".dat";
 
+        /** Filename of the address book of peers, used to reconnect quickly. */
+        public static final String PEERS_FILENAME = "peers" + FILENAME_NETWORK_SUFFIX + ".dat";
+
         /** Filename of the fees files. */
         public static final String FEES_FILENAME = "fees" + FILENAME_NETWORK_SUFFIX + ".txt";
 
@@ -246,6 +249,9 @@ public final class Constants {
     public static final int SCRYPT_ITERATIONS_TARGET = 65536;
     public static final int SCRYPT_ITERATIONS_TARGET_LOWRAM = 32768/2;
 
+    /** Time that deriving the spending PIN may take with scrypt parameters calibrated on the device */
+    public static final long SCRYPT_DERIVATION_TARGET_MS = 1000;
+
     /** Default ports for Electrum servers */
     public static final int ELECTRUM_SERVER_DEFAULT_PORT_TCP = NETWORK_PARAMETERS.getId()
             .equals(NetworkParameters.ID_MAINNET) ? 50001 : 51001;
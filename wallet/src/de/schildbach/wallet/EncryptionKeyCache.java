@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.schildbach.wallet;
+
+import com.google.common.base.Charsets;
+
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.crypto.KeyCrypter;
+import org.bitcoinj.wallet.Wallet;
+import org.bouncycastle.crypto.params.KeyParameter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Keeps the last encryption key that was derived from the wallet password, so that unlocking the wallet again does
+ * not run scrypt again. The key is only kept while it is enabled by {@link AutoLogout}, that is for as long as the
+ * app is not logged out.
+ */
+public class EncryptionKeyCache {
+
+    private boolean enabled = false;
+    private KeyCrypter keyCrypter;
+    private Sha256Hash passwordHash;
+    private KeyParameter key;
+
+    /**
+     * Returns the key for the password, derived by the key crypter of the wallet unless it was cached. A key that
+     * does not decrypt the wallet is returned but not cached.
+     */
+    public KeyParameter deriveKey(final Wallet wallet, final String password) {
+        final KeyCrypter keyCrypter = checkNotNull(wallet.getKeyCrypter());
+        final Sha256Hash passwordHash = Sha256Hash.of(password.getBytes(Charsets.UTF_8));
+        synchronized (this) {
+            if (key != null && keyCrypter.equals(this.keyCrypter) && passwordHash.equals(this.passwordHash))
+                return key;
+        }
+
+        // Key derivation takes time.
+        final KeyParameter key = keyCrypter.deriveKey(password);
+        if (wallet.checkAESKey(key)) {
+            synchronized (this) {
+                if (enabled) {
+                    this.keyCrypter = keyCrypter;
+                    this.passwordHash = passwordHash;
+                    this.key = key;
+                }
+            }
+        }
+        return key;
+    }
+
+    /** Returns true if the password decrypts the wallet. */
+    public boolean checkPassword(final Wallet wallet, final String password) {
+        checkState(wallet.isEncrypted(), "Not encrypted");
+        return wallet.checkAESKey(deriveKey(wallet, password));
+    }
+
+    public synchronized void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled)
+            clear();
+    }
+
+    public synchronized void clear() {
+        keyCrypter = null;
+        passwordHash = null;
+        key = null;
+    }
+}
@@ -50,6 +50,7 @@ import org.bitcoinj.core.CoinDefinition;
 import org.bitcoinj.core.Transaction;
 import org.bitcoinj.core.VerificationException;
 import org.bitcoinj.core.VersionMessage;
+import org.bitcoinj.crypto.KeyCrypterScrypt;
 import org.bitcoinj.crypto.LinuxSecureRandom;
 import org.bitcoinj.crypto.MnemonicCode;
 import org.bitcoinj.utils.Threading;
@@ -272,6 +273,10 @@ public class WalletApplication extends MultiDexApplication {
         autoLogout.resetTimerIfActive();
     }
 
+    public EncryptionKeyCache getEncryptionKeyCache() {
+        return autoLogout.getEncryptionKeyCache();
+    }
+
     @TargetApi(Build.VERSION_CODES.O)
     private void createNotificationChannels() {
         //Transactions
@@ -656,6 +661,16 @@ public class WalletApplication extends MultiDexApplication {
         return (isLowRamDevice() || !is64bitABI) ? Constants.SCRYPT_ITERATIONS_TARGET_LOWRAM : Constants.SCRYPT_ITERATIONS_TARGET;
     }
 
+    /**
+     * Creates the key crypter for encrypting the wallet with a new password. The scrypt parameters are calibrated on
+     * this device: all cores that fit into memory derive in parallel, and the iterations go up from
+     * {@link #scryptIterationsTarget()} for as long as a derivation stays within
+     * {@link Constants#SCRYPT_DERIVATION_TARGET_MS}.
+     */
+    public KeyCrypterScrypt newKeyCrypter() {
+        return KeyCrypterScrypt.calibrate(scryptIterationsTarget(), Constants.SCRYPT_DERIVATION_TARGET_MS);
+    }
+
     public static void scheduleStartBlockchainService(final Context context) {
         final Configuration config = new Configuration(PreferenceManager.getDefaultSharedPreferences(context),
                 context.getResources());
@@ -757,6 +772,7 @@ public class WalletApplication extends MultiDexApplication {
     }
 
     private void lockTheApp(Context context, Activity activity) {
+        autoLogout.getEncryptionKeyCache().clear();
         if (!isSpecialActivity(activity)) {
             context = context.getApplicationContext();
             Intent lockScreenIntent = LockScreenActivity.createIntentAsNewTask(context);
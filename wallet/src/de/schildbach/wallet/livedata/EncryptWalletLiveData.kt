@@ -25,7 +25,6 @@ import de.schildbach.wallet.WalletApplication
 import de.schildbach.wallet.ui.security.SecurityGuard
 import de.schildbach.wallet.util.FingerprintHelper
 import org.bitcoinj.crypto.KeyCrypterException
-import org.bitcoinj.crypto.KeyCrypterScrypt
 import org.bitcoinj.wallet.Wallet
 import org.slf4j.LoggerFactory
 
@@ -36,7 +35,6 @@ class EncryptWalletLiveData(application: Application) : MutableLiveData<Resource
     private var encryptWalletTask: EncryptWalletTask? = null
     private var decryptWalletTask: DecryptWalletTask? = null
 
-    private var scryptIterationsTarget: Int = Constants.SCRYPT_ITERATIONS_TARGET
     private var walletApplication = application as WalletApplication
     private var fingerprintHelper = FingerprintHelper(application)
 
@@ -46,9 +44,8 @@ class EncryptWalletLiveData(application: Application) : MutableLiveData<Resource
         securityGuard.savePin(pin)
     }
 
-    fun encrypt(scryptIterationsTarget: Int) {
+    fun encrypt() {
         if (encryptWalletTask == null) {
-            this.scryptIterationsTarget = scryptIterationsTarget
             encryptWalletTask = EncryptWalletTask()
             encryptWalletTask!!.execute()
         }
@@ -86,8 +83,8 @@ class EncryptWalletLiveData(application: Application) : MutableLiveData<Resource
 
             return try {
                 org.bitcoinj.core.Context.propagate(Constants.CONTEXT)
-                // For the new key, we create a new key crypter according to the desired parameters.
-                val keyCrypter = KeyCrypterScrypt(scryptIterationsTarget)
+                // For the new key, we create a new key crypter calibrated to this device.
+                val keyCrypter = walletApplication.newKeyCrypter()
                 val newKey = keyCrypter.deriveKey(password)
                 wallet.encrypt(keyCrypter, newKey)
 
@@ -95,7 +92,7 @@ class EncryptWalletLiveData(application: Application) : MutableLiveData<Resource
 
                 securityGuard.savePassword(password)
 
-                log.info("wallet successfully encrypted, using key derived by new spending password (${keyCrypter.scryptParameters.n} scrypt iterations)")
+                log.info("wallet successfully encrypted, using key derived by new spending password (${keyCrypter.scryptParameters.n} scrypt iterations, ${keyCrypter.scryptParameters.p} lanes)")
 
                 Resource.success(wallet)
             } catch (x: KeyCrypterException) {
@@ -52,6 +52,7 @@ import org.bitcoinj.core.CheckpointManager;
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.core.FilteredBlock;
 import org.bitcoinj.core.Peer;
+import org.bitcoinj.core.PeerAddressBook;
 import org.bitcoinj.core.PeerGroup;
 import org.bitcoinj.core.Sha256Hash;
 import org.bitcoinj.core.SporkMessage;
@@ -482,6 +483,9 @@ public class BlockchainServiceImpl extends LifecycleService implements Blockchai
                 peerGroup.setMaxConnections(connectTrustedPeerOnly ? 1 : maxConnectedPeers);
                 peerGroup.setConnectTimeoutMillis(Constants.PEER_TIMEOUT_MS);
                 peerGroup.setPeerDiscoveryTimeoutMillis(Constants.PEER_DISCOVERY_TIMEOUT_MS);
+                if (!connectTrustedPeerOnly)
+                    peerGroup.setAddressBook(new PeerAddressBook(Constants.NETWORK_PARAMETERS,
+                            new File(getDir("blockstore", Context.MODE_PRIVATE), Constants.Files.PEERS_FILENAME)));
 
                 peerGroup.addPeerDiscovery(new PeerDiscovery() {
                     //Keep Original code here for now
@@ -24,6 +24,8 @@ import org.bitcoinj.core.ECKey;
 import org.bitcoinj.crypto.BIP38PrivateKey;
 import org.bitcoinj.wallet.Wallet;
 
+import de.schildbach.wallet.WalletApplication;
+
 public abstract class CheckWalletPasswordTask {
     private final Handler backgroundHandler;
     private final Handler callbackHandler;
@@ -37,7 +39,7 @@ public abstract class CheckWalletPasswordTask {
         backgroundHandler.post(new Runnable() {
             @Override
             public void run() {
-                if (wallet.checkPassword(password)) {
+                if (WalletApplication.getInstance().getEncryptionKeyCache().checkPassword(wallet, password)) {
                     callbackHandler.post(new Runnable() {
                         @Override
                         public void run() {
@@ -302,8 +302,8 @@ public class EncryptKeysDialogFragment extends DialogFragment {
                 // place.
                 final KeyParameter oldKey = oldPassword != null ? wallet.getKeyCrypter().deriveKey(oldPassword) : null;
 
-                // For the new key, we create a new key crypter according to the desired parameters.
-                final KeyCrypterScrypt keyCrypter = new KeyCrypterScrypt(application.scryptIterationsTarget());
+                // For the new key, we create a new key crypter calibrated to this device.
+                final KeyCrypterScrypt keyCrypter = application.newKeyCrypter();
                 final KeyParameter newKey = keyCrypter.deriveKey(newPassword);
 
                 handler.post(new Runnable() {
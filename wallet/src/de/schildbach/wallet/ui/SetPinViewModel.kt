@@ -53,7 +53,7 @@ class SetPinViewModel(application: Application) : AndroidViewModel(application)
 
     private fun encryptWallet() {
         if (!walletApplication.wallet.isEncrypted) {
-            encryptWalletLiveData.encrypt(walletApplication.scryptIterationsTarget())
+            encryptWalletLiveData.encrypt()
         } else {
             log.warn("Trying to encrypt already encrypted wallet")
         }
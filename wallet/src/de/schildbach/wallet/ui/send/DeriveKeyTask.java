@@ -29,6 +29,8 @@ import org.slf4j.LoggerFactory;
 import org.bouncycastle.crypto.params.KeyParameter;
 
 import de.schildbach.wallet.Constants;
+import de.schildbach.wallet.EncryptionKeyCache;
+import de.schildbach.wallet.WalletApplication;
 
 import android.os.Handler;
 import android.os.Looper;
@@ -58,19 +60,25 @@ public abstract class DeriveKeyTask {
             public void run() {
                 org.bitcoinj.core.Context.propagate(Constants.CONTEXT);
 
-                // Key derivation takes time.
-                KeyParameter key = keyCrypter.deriveKey(password);
+                // Key derivation takes time, unless the key was derived since the last logout.
+                final EncryptionKeyCache keyCache = WalletApplication.getInstance().getEncryptionKeyCache();
+                KeyParameter key = keyCache.deriveKey(wallet, password);
                 boolean wasChanged = false;
 
                 // If the key isn't derived using the desired parameters, derive a new key.
                 if (keyCrypter instanceof KeyCrypterScrypt) {
-                    final long scryptIterations = ((KeyCrypterScrypt) keyCrypter).getScryptParameters().getN();
+                    final KeyCrypterScrypt keyCrypterScrypt = (KeyCrypterScrypt) keyCrypter;
+                    final long scryptIterations = keyCrypterScrypt.getScryptParameters().getN();
 
-                    if (scryptIterations != scryptIterationsTarget) {
+                    // Calibrated parameters may go beyond the target. Parameters beyond the target are only brought
+                    // down to it if they need more memory than this device has, e.g. for a restored wallet.
+                    if (scryptIterations < scryptIterationsTarget || (scryptIterations > scryptIterationsTarget
+                            && !keyCrypterScrypt.fitsMemoryBudget())) {
                         log.info("upgrading scrypt iterations from {} to {}; re-encrypting wallet", scryptIterations,
                                 scryptIterationsTarget);
 
-                        final KeyCrypterScrypt newKeyCrypter = new KeyCrypterScrypt(scryptIterationsTarget);
+                        final KeyCrypterScrypt newKeyCrypter = KeyCrypterScrypt.calibrate(scryptIterationsTarget,
+                                Constants.SCRYPT_DERIVATION_TARGET_MS);
                         final KeyParameter newKey = newKeyCrypter.deriveKey(password);
 
                         // Re-encrypt wallet with new key.